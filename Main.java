@@ -1,50 +1,166 @@
-import bayesball.BayesBall;
-import bayesball.BayesBallQuery;
-import bayesball.BayesBallQueryParser;
+import batch.BatchQueryExecutor;
 import core.BayesianNetwork;
 import core.BayesianNetworkParser;
-import inference.VariableElimination;
-import inference.VariableEliminationQuery;
-import inference.VariableEliminationQueryParser;
+import core.BinaryNetworkLoader;
+import inference.MemoryBudget;
+import inference.QueryResultCache;
+import junctiontree.JunctionTree;
+import junctiontree.JunctionTreeCompiler;
+import metrics.MetricsRegistry;
+import metrics.PrometheusExporter;
+import metrics.QueryMetrics;
+import sampling.LikelihoodWeighting;
+import sampling.SamplingModel;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args)  {
 
 
         BayesianNetwork network = null;
+        // With --junction-tree the network is compiled once and every P(...) query is answered from the calibrated tree
+        boolean useJunctionTree = Arrays.asList(args).contains("--junction-tree");
+        JunctionTree junctionTree = null;
+        // With --cache=<size> the results of repeated P(...) queries are reused, whatever their evidence and elimination order
+        long cacheSize = Arrays.stream(args)
+                               .filter(arg -> arg.startsWith("--cache="))
+                               .mapToLong(arg -> Long.parseLong(arg.substring("--cache=".length())))
+                               .findFirst()
+                               .orElse(0);
+        QueryResultCache queryResultCache = null;
+        // With --batch all the queries are parsed first and executed in parallel, on --threads=<n> threads
+        boolean useBatch = Arrays.asList(args).contains("--batch");
+        int threads = Arrays.stream(args)
+                            .filter(arg -> arg.startsWith("--threads="))
+                            .mapToInt(arg -> Integer.parseInt(arg.substring("--threads=".length())))
+                            .findFirst()
+                            .orElse(Runtime.getRuntime().availableProcessors());
+        // With --parallel-kernels large factor products and sums of variable elimination are split across the common fork-join pool
+        boolean useParallelKernels = Arrays.asList(args).contains("--parallel-kernels");
+        // With --memory-budget=<megabytes> intermediate factors larger than that are stored in memory-mapped temporary files
+        long memoryBudgetMegabytes = Arrays.stream(args)
+                                           .filter(arg -> arg.startsWith("--memory-budget="))
+                                           .mapToLong(arg -> Long.parseLong(arg.substring("--memory-budget=".length())))
+                                           .findFirst()
+                                           .orElse(-1);
+        // With --max-factor-entries=<n> queries whose plan is predicted to build a larger factor are rejected instead of executed
+        double maxFactorEntries = Arrays.stream(args)
+                                        .filter(arg -> arg.startsWith("--max-factor-entries="))
+                                        .mapToDouble(arg -> Double.parseDouble(arg.substring("--max-factor-entries=".length())))
+                                        .findFirst()
+                                        .orElse(0);
+        // With --sampling every P(...) query is estimated by likelihood weighting, and with --sampling-fallback only the queries
+        // rejected by --max-factor-entries are. --samples=<n> sets the number of samples, and --sampling-half-width=<w> stops
+        // sampling earlier once the 95% confidence interval is that narrow
+        boolean useSampling = Arrays.asList(args).contains("--sampling");
+        boolean useSamplingFallback = Arrays.asList(args).contains("--sampling-fallback");
+        long samples = Arrays.stream(args)
+                             .filter(arg -> arg.startsWith("--samples="))
+                             .mapToLong(arg -> Long.parseLong(arg.substring("--samples=".length())))
+                             .findFirst()
+                             .orElse(100_000);
+        double samplingHalfWidth = Arrays.stream(args)
+                                         .filter(arg -> arg.startsWith("--sampling-half-width="))
+                                         .mapToDouble(arg -> Double.parseDouble(arg.substring("--sampling-half-width=".length())))
+                                         .findFirst()
+                                         .orElse(0);
+        // With --metrics-file=<path> the query metrics are written there in the Prometheus text format when all the queries are done
+        String metricsFile = Arrays.stream(args)
+                                   .filter(arg -> arg.startsWith("--metrics-file="))
+                                   .map(arg -> arg.substring("--metrics-file=".length()))
+                                   .findFirst()
+                                   .orElse(null);
+        // With --metrics-port=<port> the query metrics are served on http://127.0.0.1:<port>/metrics while the queries run
+        int metricsPort = Arrays.stream(args)
+                                .filter(arg -> arg.startsWith("--metrics-port="))
+                                .mapToInt(arg -> Integer.parseInt(arg.substring("--metrics-port=".length())))
+                                .findFirst()
+                                .orElse(-1);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        PrometheusExporter metricsExporter = new PrometheusExporter(metricsRegistry);
+        BatchQueryExecutor executor = null;
+        List<String> batchLines = new ArrayList<>();
         String inputFilePath = "UniversityExample.txt";
         String outputFilePath = "output.txt";
         int lineIndex = 0;
+        try {
+            if (metricsPort >= 0) {
+                metricsExporter.start(metricsPort);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         try(BufferedReader bufferedReader = new BufferedReader(new FileReader(inputFilePath));
             BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(outputFilePath))){
 
             String line;
             while((line = bufferedReader.readLine()) != null){
                 if(lineIndex == 0){
-                    BayesianNetworkParser parser = new BayesianNetworkParser();
-                    parser.parseBayesianNetwork(line);
-                    network = parser.getBayesianNetwork();
-                    lineIndex++;
-                } else{
-                    if(line.startsWith("P(")) {
-                        VariableEliminationQueryParser variableEliminationQueryParser = new VariableEliminationQueryParser(network);
-                        VariableEliminationQuery variableEliminationQuery = variableEliminationQueryParser.parseQuery(line);
-                        VariableElimination ve = new VariableElimination(network, variableEliminationQuery);
-                        ve.executeQuery();
-                        bufferedWriter.write(ve.getResult()+"\n");
+                    // A binary network file is memory-mapped instead of parsed, see core.BinaryNetworkWriter to convert an XML file
+                    if (line.endsWith(BinaryNetworkLoader.FILE_EXTENSION)) {
+                        BinaryNetworkLoader loader = new BinaryNetworkLoader();
+                        loader.loadBayesianNetwork(line);
+                        network = loader.getBayesianNetwork();
                     } else {
-                        BayesBallQueryParser bayesBallQueryParser = new BayesBallQueryParser(network);
-                        BayesBallQuery bayesBallQuery = bayesBallQueryParser.parseQuery(line);
-                        BayesBall bayesBall = new BayesBall(bayesBallQuery);
-                        bayesBall.executeQuery();
-                        bufferedWriter.write(bayesBallQuery.isIndependent() ? "yes\n" : "no\n");
+                        BayesianNetworkParser parser = new BayesianNetworkParser();
+                        parser.parseBayesianNetwork(line);
+                        network = parser.getBayesianNetwork();
+                    }
+                    // Queries share one immutable snapshot of the network and keep their evidence to themselves
+                    network = network.snapshot();
+                    if (useJunctionTree) {
+                        junctionTree = new JunctionTreeCompiler().compile(network);
+                    }
+                    if (cacheSize > 0) {
+                        queryResultCache = new QueryResultCache(network, cacheSize);
+                    }
+                    executor = new BatchQueryExecutor(network, junctionTree, queryResultCache);
+                    if (useParallelKernels) {
+                        executor.setKernelPool(ForkJoinPool.commonPool());
                     }
+                    if (memoryBudgetMegabytes >= 0) {
+                        executor.setMemoryBudget(new MemoryBudget(memoryBudgetMegabytes << 20));
+                    }
+                    executor.setMaxPredictedFactorEntries(maxFactorEntries);
+                    if (useSampling || useSamplingFallback) {
+                        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+                        sampler.setPool(ForkJoinPool.commonPool());
+                        sampler.setSampleCount(samples);
+                        sampler.setStoppingRule(samplingHalfWidth, 0.95);
+                        if (useSampling) {
+                            executor.setSampler(sampler);
+                        } else {
+                            executor.setFallbackSampler(sampler);
+                        }
+                    }
+                    if (metricsFile != null || metricsPort >= 0) {
+                        executor.setQueryMetrics(new QueryMetrics(metricsRegistry));
+                    }
+                    lineIndex++;
+                } else if (useBatch) {
+                    batchLines.add(line);
+                } else {
+                    bufferedWriter.write(executor.executeLine(line) + "\n");
                 }
             }
+            if (useBatch && executor != null) {
+                for (String output : executor.executeAll(batchLines, threads)) {
+                    bufferedWriter.write(output + "\n");
+                }
+            }
+            if (metricsFile != null) {
+                metricsExporter.writeToFile(Path.of(metricsFile));
+            }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            metricsExporter.stop();
         }
     }
 
@@ -0,0 +1,410 @@
+package batch;
+
+import bayesball.BayesBall;
+import bayesball.BayesBallQuery;
+import bayesball.BayesBallQueryParser;
+import core.BayesianNetwork;
+import inference.MemoryBudget;
+import inference.QueryExplanation;
+import inference.QueryResult;
+import inference.QueryResultCache;
+import inference.QuerySignature;
+import inference.VariableElimination;
+import inference.VariableEliminationQuery;
+import inference.VariableEliminationQueryParser;
+import junctiontree.JunctionTree;
+import junctiontree.JunctionTreeEngine;
+import metrics.QueryMetrics;
+import sampling.LikelihoodWeighting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * This class executes the query lines of an input file on one Bayesian Network.
+ * Lines of the form P(...) are probabilistic queries, every other line is a Bayes-Ball independence query.
+ * A probabilistic query prefixed with EXPLAIN is not answered: its output is the cost predicted by variable elimination.
+ * A batch is parsed completely first and then executed on a fork-join pool, and the outputs are returned in input order.
+ * A line that cannot be parsed or executed reports the error, and its output is the error message, so the other
+ * lines of the batch still run.
+ */
+public class BatchQueryExecutor {
+    public static final String EXPLAIN_PREFIX = "EXPLAIN "; // Prefix of a query line whose predicted cost is output instead of its answer
+    public static final String REJECTED_PREFIX = "rejected: "; // Prefix of the output of a query that is predicted to be too expensive
+    public static final String ERROR_PREFIX = "error: "; // Prefix of the output of a line that could not be parsed or executed
+    private final BayesianNetwork network; // The Bayesian Network
+    private final JunctionTree junctionTree; // The compiled junction tree, or null to use variable elimination
+    private final QueryResultCache queryResultCache; // The cache of probabilistic query results, or null
+    private final ThreadLocal<JunctionTreeEngine> junctionTreeEngines; // One engine per thread, since an engine holds its calibration
+    private ForkJoinPool kernelPool; // Pool that variable elimination splits large factor operations across, or null
+    private MemoryBudget memoryBudget; // Decides which factors of variable elimination are spilled to disk, or null
+    private LikelihoodWeighting sampler; // Answers every probabilistic query approximately, or null
+    private LikelihoodWeighting fallbackSampler; // Answers the queries rejected for their predicted cost, or null
+    private double maxPredictedFactorEntries; // Queries predicted to build a larger factor are rejected, 0 runs every query
+    private QueryMetrics queryMetrics; // The metrics the queries are recorded in, or null
+
+    /**
+     * Constructor for BatchQueryExecutor.
+     *
+     * @param network          the Bayesian Network
+     * @param junctionTree     the compiled junction tree of the network, or null to use variable elimination
+     * @param queryResultCache the cache of probabilistic query results, or null
+     */
+    public BatchQueryExecutor(BayesianNetwork network, JunctionTree junctionTree, QueryResultCache queryResultCache) {
+        this.network = network;
+        this.junctionTree = junctionTree;
+        this.queryResultCache = queryResultCache;
+        this.junctionTreeEngines = ThreadLocal.withInitial(() -> new JunctionTreeEngine(junctionTree));
+    }
+
+    /**
+     * Sets the fork-join pool that variable elimination splits large factor products and sums across.
+     *
+     * @param kernelPool the pool, or null to compute every factor on the thread running its query
+     */
+    public void setKernelPool(ForkJoinPool kernelPool) {
+        this.kernelPool = kernelPool;
+    }
+
+    /**
+     * Sets the memory budget of variable elimination, above which intermediate factors are stored in memory-mapped files.
+     *
+     * @param memoryBudget the memory budget, or null to keep every factor on the heap
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Sets the likelihood weighting sampler that answers every probabilistic query, instead of an exact engine.
+     *
+     * @param sampler the sampler, or null to answer the queries exactly
+     */
+    public void setSampler(LikelihoodWeighting sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Sets the likelihood weighting sampler that answers the queries rejected by
+     * {@link #setMaxPredictedFactorEntries(double)}, instead of outputting the rejection.
+     *
+     * @param fallbackSampler the sampler, or null to reject the queries
+     */
+    public void setFallbackSampler(LikelihoodWeighting fallbackSampler) {
+        this.fallbackSampler = fallbackSampler;
+    }
+
+    /**
+     * Sets the size of the largest factor product variable elimination may build. A query is explained before it is
+     * executed, and if it is predicted to build a larger factor it is not executed and its output is the rejection
+     * with the explanation, unless a fallback sampler answers it. Queries answered from a junction tree or by sampling are not checked.
+     *
+     * @param maxPredictedFactorEntries the number of entries, or 0 to execute every query
+     */
+    public void setMaxPredictedFactorEntries(double maxPredictedFactorEntries) {
+        this.maxPredictedFactorEntries = maxPredictedFactorEntries;
+    }
+
+    /**
+     * Sets the metrics that the latency, the arithmetic and the peak factor size of every query are recorded in.
+     *
+     * @param queryMetrics the metrics, or null to record nothing
+     */
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    /**
+     * Parses and executes a single query line.
+     *
+     * @param line the query line
+     * @return the output line, without a line separator
+     */
+    public String executeLine(String line) {
+        return parseGuardedLine(line).get();
+    }
+
+    /**
+     * Parses all the query lines and then executes them on a fork-join pool.
+     *
+     * @param lines       the query lines
+     * @param parallelism the number of worker threads
+     * @return the output lines, without line separators, in the order of the query lines
+     */
+    public List<String> executeAll(List<String> lines, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return executeAll(lines, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Parses all the query lines and then executes them on a given fork-join pool, which is left running,
+     * so a caller executing many batches starts the worker threads once.
+     *
+     * @param lines the query lines
+     * @param pool  the pool to execute the queries on
+     * @return the output lines, without line separators, in the order of the query lines
+     */
+    public List<String> executeAll(List<String> lines, ForkJoinPool pool) {
+        List<Supplier<String>> queries = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            queries.add(parseGuardedLine(line));
+        }
+
+        String[] outputs = new String[queries.size()];
+        try {
+            pool.submit(() -> IntStream.range(0, outputs.length).parallel().forEach(i -> outputs[i] = queries.get(i).get())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing the query batch", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error executing the query batch: " + e.getCause().getMessage(), e.getCause());
+        }
+        return Arrays.asList(outputs);
+    }
+
+    /**
+     * Parses a query line into a task that executes it, turning a failure to parse or to execute the line
+     * into its error output.
+     *
+     * @param line the query line
+     * @return the task, which returns the output line and does not throw
+     */
+    private Supplier<String> parseGuardedLine(String line) {
+        Supplier<String> query;
+        try {
+            query = parseLine(line);
+        } catch (RuntimeException e) {
+            return () -> failure(line, e);
+        }
+        return () -> {
+            try {
+                return query.get();
+            } catch (RuntimeException e) {
+                return failure(line, e);
+            }
+        };
+    }
+
+    /**
+     * Reports the failure of a query line.
+     *
+     * @param line the query line
+     * @param e    the failure
+     * @return the output line of the failed query
+     */
+    private static String failure(String line, RuntimeException e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.toString();
+        System.err.println("Error executing query line " + line + ": " + message);
+        return ERROR_PREFIX + message;
+    }
+
+    /**
+     * Parses a query line into a task that executes it.
+     *
+     * @param line the query line
+     * @return the task, which returns the output line
+     */
+    private Supplier<String> parseLine(String line) {
+        if (line.startsWith(EXPLAIN_PREFIX)) {
+            String query = line.substring(EXPLAIN_PREFIX.length()).trim();
+            if (!query.startsWith("P(")) {
+                throw new IllegalArgumentException("Only probabilistic queries can be explained: " + line);
+            }
+            VariableEliminationQuery variableEliminationQuery = new VariableEliminationQueryParser(network).parseQuery(query);
+            return () -> new VariableElimination(network, variableEliminationQuery).explain().toString();
+        }
+
+        if (line.startsWith("P(")) {
+            VariableEliminationQuery variableEliminationQuery = new VariableEliminationQueryParser(network).parseQuery(line);
+            String engine = junctionTree != null ? QueryMetrics.JUNCTION_TREE
+                    : sampler != null ? QueryMetrics.LIKELIHOOD_WEIGHTING : QueryMetrics.VARIABLE_ELIMINATION;
+            if (maxPredictedFactorEntries > 0 && engine.equals(QueryMetrics.VARIABLE_ELIMINATION)) {
+                Supplier<String> fallback = fallbackSampler == null ? null
+                        : timed(QueryMetrics.LIKELIHOOD_WEIGHTING, () -> executeSamplingQuery(fallbackSampler, variableEliminationQuery).toString());
+                return () -> executeCheckedQuery(variableEliminationQuery, fallback);
+            }
+            return parseProbabilityQuery(variableEliminationQuery, engine);
+        }
+
+        BayesBallQuery bayesBallQuery = new BayesBallQueryParser(network).parseQuery(line);
+        return timed(QueryMetrics.BAYES_BALL, () -> {
+            BayesBall bayesBall = new BayesBall(bayesBallQuery, network.getGraph());
+            bayesBall.executeQuery();
+            return bayesBallQuery.isIndependent() ? "yes" : "no";
+        });
+    }
+
+    /**
+     * Creates the task that answers a probabilistic query, from the cache if there is one.
+     *
+     * @param variableEliminationQuery the query
+     * @param engine                   the engine that answers the query
+     * @return the task, which returns the output line
+     */
+    private Supplier<String> parseProbabilityQuery(VariableEliminationQuery variableEliminationQuery, String engine) {
+        if (queryResultCache != null) {
+            return timed(engine, () -> {
+                boolean[] computed = new boolean[1];
+                QueryResult result = queryResultCache.getOrCompute(QuerySignature.of(variableEliminationQuery), () -> {
+                    computed[0] = true;
+                    return executeProbabilityQuery(variableEliminationQuery);
+                });
+                if (!computed[0] && queryMetrics != null) {
+                    queryMetrics.recordCacheHit();
+                }
+                return result.toString();
+            });
+        }
+        return timed(engine, () -> executeProbabilityQuery(variableEliminationQuery).toString());
+    }
+
+    /**
+     * Wraps a query task so that its latency is recorded in the query metrics, if there are any.
+     *
+     * @param engine the engine that answers the query
+     * @param query  the query task
+     * @return the wrapped task
+     */
+    private Supplier<String> timed(String engine, Supplier<String> query) {
+        return () -> {
+            if (queryMetrics == null) {
+                return query.get();
+            }
+            long start = System.nanoTime();
+            try {
+                String output = query.get();
+                queryMetrics.recordQuery(engine, System.nanoTime() - start);
+                return output;
+            } catch (RuntimeException e) {
+                queryMetrics.recordFailure(engine);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Executes a probabilistic query with the junction tree engine of the current thread if there is a junction tree,
+     * with the sampler if there is one, or with variable elimination.
+     *
+     * @param variableEliminationQuery the query
+     * @return the result of the query
+     */
+    private QueryResult executeProbabilityQuery(VariableEliminationQuery variableEliminationQuery) {
+        if (junctionTree != null) {
+            QueryResult result = junctionTreeEngines.get().executeQuery(variableEliminationQuery);
+            if (queryMetrics != null) {
+                queryMetrics.recordOperations(QueryMetrics.JUNCTION_TREE, result.getMultiplicationOperations(), result.getAdditionOperations());
+            }
+            return result;
+        }
+        if (sampler != null) {
+            return executeSamplingQuery(sampler, variableEliminationQuery);
+        }
+        return executeVariableElimination(createVariableElimination(variableEliminationQuery));
+    }
+
+    /**
+     * Answers a probabilistic query with variable elimination unless it is predicted to build a factor larger than
+     * the maximum. The query is looked up in the cache first, so a cached query is not explained. Otherwise it is
+     * explained and, if it is not rejected, executed by the same variable elimination, which reuses the restricted,
+     * filtered and ordered factors and the plan of the explanation.
+     *
+     * @param variableEliminationQuery the query
+     * @param fallback                 answers the query if it is rejected, or null to output the rejection
+     * @return the output line
+     */
+    private String executeCheckedQuery(VariableEliminationQuery variableEliminationQuery, Supplier<String> fallback) {
+        QueryExplanation rejection = null; // The explanation of the query if it is rejected
+        long start = System.nanoTime();
+        try {
+            QuerySignature signature = queryResultCache == null ? null : QuerySignature.of(variableEliminationQuery);
+            QueryResult result = signature == null ? null : queryResultCache.get(signature);
+            if (result != null) {
+                if (queryMetrics != null) {
+                    queryMetrics.recordCacheHit();
+                }
+            } else {
+                VariableElimination ve = createVariableElimination(variableEliminationQuery);
+                QueryExplanation explanation = ve.explain();
+                if (explanation.getLargestFactorEntries() > maxPredictedFactorEntries) {
+                    rejection = explanation;
+                } else {
+                    long version = network.getVersion();
+                    result = executeVariableElimination(ve);
+                    if (signature != null && network.getVersion() == version) { // As in QueryResultCache.getOrCompute
+                        queryResultCache.put(signature, result);
+                    }
+                }
+            }
+            if (result != null) {
+                if (queryMetrics != null) {
+                    queryMetrics.recordQuery(QueryMetrics.VARIABLE_ELIMINATION, System.nanoTime() - start);
+                }
+                return result.toString();
+            }
+        } catch (RuntimeException e) {
+            if (queryMetrics != null) {
+                queryMetrics.recordFailure(QueryMetrics.VARIABLE_ELIMINATION);
+            }
+            throw e;
+        }
+
+        if (queryMetrics != null) {
+            queryMetrics.recordRejection(QueryMetrics.VARIABLE_ELIMINATION);
+        }
+        return fallback != null ? fallback.get() : REJECTED_PREFIX + rejection;
+    }
+
+    /**
+     * Creates the variable elimination of a query, with the kernel pool and the memory budget of the executor.
+     *
+     * @param variableEliminationQuery the query
+     * @return the variable elimination, not executed yet
+     */
+    private VariableElimination createVariableElimination(VariableEliminationQuery variableEliminationQuery) {
+        VariableElimination ve = new VariableElimination(network, variableEliminationQuery);
+        ve.setKernelPool(kernelPool);
+        ve.setMemoryBudget(memoryBudget);
+        return ve;
+    }
+
+    /**
+     * Executes a variable elimination and records its arithmetic and its largest factor in the query metrics.
+     *
+     * @param ve the variable elimination, which may already be explained
+     * @return the result of the query
+     */
+    private QueryResult executeVariableElimination(VariableElimination ve) {
+        ve.executeQuery();
+        QueryResult result = ve.getQueryResult();
+        if (queryMetrics != null) {
+            queryMetrics.recordOperations(QueryMetrics.VARIABLE_ELIMINATION, result.getMultiplicationOperations(), result.getAdditionOperations());
+            queryMetrics.recordIntermediateFactorSize(ve.getLargestIntermediateFactorSize());
+        }
+        return result;
+    }
+
+    /**
+     * Executes a probabilistic query approximately with a likelihood weighting sampler.
+     *
+     * @param likelihoodWeighting      the sampler
+     * @param variableEliminationQuery the query
+     * @return the result of the query
+     */
+    private QueryResult executeSamplingQuery(LikelihoodWeighting likelihoodWeighting, VariableEliminationQuery variableEliminationQuery) {
+        QueryResult result = likelihoodWeighting.executeQuery(variableEliminationQuery);
+        if (queryMetrics != null) {
+            queryMetrics.recordOperations(QueryMetrics.LIKELIHOOD_WEIGHTING, result.getMultiplicationOperations(), result.getAdditionOperations());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,119 @@
+package batch;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import inference.VariableElimination;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sampling.LikelihoodWeighting;
+import sampling.SamplingModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BatchQueryExecutorTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private static final String[] PROBABILITY_QUERIES = {"P(B=T|J=T,M=T) A-E", "P(J=T|B=F) A-E-M", "P(E=T|A=T) B-J-M",
+                                                         "P(M=T)", "P(A=F|J=T) B-E-M", "P(B=F|E=T,M=F) A-J"};
+    private static final String[] INDEPENDENCE_QUERIES = {"J-M|A=T", "J-M|", "B-E|", "B-E|J=T", "B-M|A=F", "E-J|B=T"};
+    private static final String[] INDEPENDENCE_OUTPUTS = {"yes", "no", "yes", "no", "yes", "no"};
+
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork().snapshot();
+    }
+
+    private String eliminate(String line) {
+        VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line));
+        ve.executeQuery();
+        return ve.getResult();
+    }
+
+    @Test
+    public void testOutputsAreInInputOrder() {
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < PROBABILITY_QUERIES.length; i++) {
+                lines.add(PROBABILITY_QUERIES[(i + round) % PROBABILITY_QUERIES.length]);
+                expected.add(eliminate(lines.get(lines.size() - 1)));
+                lines.add(INDEPENDENCE_QUERIES[(i + 2 * round) % INDEPENDENCE_QUERIES.length]);
+                expected.add(INDEPENDENCE_OUTPUTS[(i + 2 * round) % INDEPENDENCE_QUERIES.length]);
+            }
+        }
+
+        assertEquals(expected, new BatchQueryExecutor(network, null, null).executeAll(lines, 4));
+    }
+
+    @Test
+    public void testExplainLineOutputsThePrediction() {
+        BatchQueryExecutor executor = new BatchQueryExecutor(network, null, null);
+        String explanation = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery("P(B=T|J=T,M=T) A-E"))
+                .explain().toString();
+
+        List<String> outputs = executor.executeAll(List.of("EXPLAIN P(B=T|J=T,M=T) A-E", "P(B=T|J=T,M=T) A-E", "EXPLAIN J-M|"), 2);
+        assertEquals(explanation, outputs.get(0));
+        assertEquals(eliminate("P(B=T|J=T,M=T) A-E"), outputs.get(1));
+        assertEquals(BatchQueryExecutor.ERROR_PREFIX + "Only probabilistic queries can be explained: EXPLAIN J-M|", outputs.get(2));
+    }
+
+    @Test
+    public void testExpensiveQueriesAreRejected() {
+        String line = "P(B=T|J=T,M=T) A-E";
+        String explanation = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line)).explain().toString();
+        BatchQueryExecutor executor = new BatchQueryExecutor(network, null, null);
+
+        executor.setMaxPredictedFactorEntries(1e6);
+        assertEquals(eliminate(line), executor.executeLine(line));
+
+        executor.setMaxPredictedFactorEntries(2);
+        assertEquals(BatchQueryExecutor.REJECTED_PREFIX + explanation, executor.executeLine(line));
+        assertEquals("yes", executor.executeLine("J-M|A=T"));
+
+        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+        sampler.setSampleCount(200_000);
+        executor.setFallbackSampler(sampler);
+        String estimate = executor.executeLine(line);
+        assertEquals(sampler.executeQuery(new VariableEliminationQueryParser(network).parseQuery(line)).toString(), estimate);
+        assertEquals(Double.parseDouble(eliminate(line).split(",")[0]), Double.parseDouble(estimate.split(",")[0]), 0.01);
+    }
+
+    @Test
+    public void testFailingLineDoesNotStopTheBatch() {
+        List<String> outputs = new BatchQueryExecutor(network, null, null)
+                .executeAll(List.of("P(B=T|J=T,M=T) A-E", "P(B=bogus|J=T) A-E-M", "X-B|", "J-M|A=T"), 4);
+
+        assertEquals(eliminate("P(B=T|J=T,M=T) A-E"), outputs.get(0));
+        assertEquals(BatchQueryExecutor.ERROR_PREFIX + "Unknown outcome bogus of variable B", outputs.get(1));
+        assertEquals(BatchQueryExecutor.ERROR_PREFIX + "Unknown variable X", outputs.get(2));
+        assertEquals("yes", outputs.get(3));
+    }
+}
@@ -1,5 +1,6 @@
 package bayesball;
 
+import core.NetworkGraph;
 import inference.Variable;
 
 import java.util.*;
@@ -7,121 +8,161 @@ import java.util.*;
 /**
  * This class implements the Bayes-Ball algorithm to determine conditional independence
  * between two variables in a Bayesian Network.
+ * The ball is passed from the start variable following Shachter's rules, and every variable is marked
+ * when the ball is passed on to its parents (top) or to its children (bottom). Each variable passes the ball
+ * in each direction at most once, so a query runs in time linear in the number of variables and edges.
+ * The ball runs on the compiled graph of the network, with the marks kept in bitsets.
  */
 public class BayesBall {
     private final BayesBallQuery bayesBallQuery; // The Bayes Ball query object
-    private final Map<Variable, VisitCount> visitCountMap; // Map to keep track of visit counts for variables
+    private final NetworkGraph graph; // The compiled graph the ball runs on
+    private final BitSet top = new BitSet(); // Variables that passed the ball to their parents
+    private final BitSet bottom = new BitSet(); // Variables that passed the ball to their children
+    private final BitSet reachable = new BitSet(); // Variables that are not d-separated from the start variables
 
     /**
-     * Constructor initializes the Bayes Ball query and the visit count map.
+     * Constructor for a query on variables that are not part of a compiled network.
+     * The graph of the variables connected to the start variables is compiled for this query.
      *
      * @param query the Bayes Ball query object
      */
     public BayesBall(BayesBallQuery query) {
+        this(query, NetworkGraph.ofComponent(query.getStartVariables()));
+    }
+
+    /**
+     * Constructor for a query on the compiled graph of a network.
+     *
+     * @param query the Bayes Ball query object
+     * @param graph the compiled graph of the network of the query variables
+     */
+    public BayesBall(BayesBallQuery query, NetworkGraph graph) {
         this.bayesBallQuery = query;
-        this.visitCountMap = new HashMap<>();
+        this.graph = graph;
     }
 
     /**
-     * Initiates the search for all paths between the start and destination variables.
+     * Passes the ball from the start variable and decides the independence of the destination variable.
+     * Kept under its old name, it no longer enumerates paths.
      */
     public void findAllPaths() {
-        List<Variable> currentPath = new ArrayList<>();
-        findPathsDFS(bayesBallQuery.getStartVariable(), currentPath, null, false);
+        passBall();
+        int endIndex = bayesBallQuery.getEndVariable() == null ? -1 : graph.indexOf(bayesBallQuery.getEndVariable());
+        bayesBallQuery.setIndependent(endIndex < 0 || !reachable.get(endIndex));
     }
 
     /**
-     * Performs a depth-first search to find paths between the start and destination variables.
-     *
-     * @param currentVariable   the current variable in the path
-     * @param currentPath       the current path of variables
-     * @param previousVariable  the previous variable in the path
-     * @param fromChild         indicates if the current variable was reached from a child
+     * Passes the ball through the network, starting from the start variables as if it had come from a child.
+     * A start variable passes the ball both ways whether or not it is evidence.
+     * <ul>
+     *     <li>A variable that is not evidence passes a ball from a child to its parents and children,
+     *     and a ball from a parent to its children.</li>
+     *     <li>An evidence variable bounces a ball from a parent back to its parents, and blocks a ball from a child.</li>
+     * </ul>
      */
-    private void findPathsDFS(Variable currentVariable, List<Variable> currentPath, Variable previousVariable, boolean fromChild) {
-        if (!bayesBallQuery.isIndependent()) return; // Stop if independence has already been disproven
-
-        VisitCount visitCount = visitCountMap.getOrDefault(currentVariable, new VisitCount());
+    private void passBall() {
+        BitSet startVariables = toIndexes(bayesBallQuery.getStartVariables());
+        BitSet evidence = toIndexes(bayesBallQuery.getEvidenceVariables());
+        evidence.andNot(startVariables);
+
+        // Every variable schedules its parents and its children at most once, so the schedule holds every edge twice at most
+        int[] schedule = new int[2 * graph.getNumEdges() + startVariables.cardinality()];
+        boolean[] fromChild = new boolean[schedule.length];
+        int tail = 0;
+        for (int start = startVariables.nextSetBit(0); start >= 0; start = startVariables.nextSetBit(start + 1)) {
+            schedule[tail] = start;
+            fromChild[tail++] = true;
+        }
 
-        if (previousVariable != null) {
-            if (!fromChild) {
-                if (visitCount.getFromParentCount() >= 1) return; // Stop if visited from parent already
-                visitCount.incrementFromParent();
+        for (int head = 0; head < tail; head++) {
+            int variable = schedule[head];
+            boolean isEvidence = evidence.get(variable);
+            if (fromChild[head]) {
+                if (!isEvidence) {
+                    reachable.set(variable);
+                    tail = passToParents(variable, schedule, fromChild, tail);
+                    tail = passToChildren(variable, schedule, fromChild, tail);
+                }
             } else {
-                if (visitCount.getFromChildCount() >= 1) return; // Stop if visited from child already
-                visitCount.incrementFromChild();
+                reachable.set(variable);
+                if (isEvidence) {
+                    tail = passToParents(variable, schedule, fromChild, tail);
+                } else {
+                    tail = passToChildren(variable, schedule, fromChild, tail);
+                }
             }
         }
+    }
 
-        visitCountMap.put(currentVariable, visitCount);
-        currentPath.add(currentVariable);
-
-        if (currentVariable.equals(bayesBallQuery.getEndVariable())) {
-            validatePath(new ArrayList<>(currentPath)); // Check if the current path shows (in)dependence
-        } else {
-            explorePaths(currentVariable, currentPath); // Continue exploring paths
+    /**
+     * Passes the ball from a variable to its parents, unless it was passed up from this variable before.
+     *
+     * @param variable  the index of the variable
+     * @param schedule  the variables to visit
+     * @param fromChild for each scheduled visit, true if the ball comes from a child
+     * @param tail      the number of scheduled visits
+     * @return the new number of scheduled visits
+     */
+    private int passToParents(int variable, int[] schedule, boolean[] fromChild, int tail) {
+        if (!top.get(variable)) {
+            top.set(variable);
+            for (int parent : graph.getParents(variable)) {
+                schedule[tail] = parent;
+                fromChild[tail++] = true;
+            }
         }
-
-        currentPath.remove(currentPath.size() - 1);
-        adjustVisitCount(visitCount, fromChild);
-        visitCountMap.put(currentVariable, visitCount);
+        return tail;
     }
 
     /**
-     * Explores the paths from the current variable to its parents and children.
+     * Passes the ball from a variable to its children, unless it was passed down from this variable before.
      *
-     * @param currentVariable the current variable in the path
-     * @param currentPath     the current path of variables
+     * @param variable  the index of the variable
+     * @param schedule  the variables to visit
+     * @param fromChild for each scheduled visit, true if the ball comes from a child
+     * @param tail      the number of scheduled visits
+     * @return the new number of scheduled visits
      */
-    private void explorePaths(Variable currentVariable, List<Variable> currentPath) {
-        for (Variable child : currentVariable.getChildren()) {
-            findPathsDFS(child, currentPath, currentVariable, false);
-        }
-        for (Variable parent : currentVariable.getParents()) {
-            findPathsDFS(parent, currentPath, currentVariable, true);
+    private int passToChildren(int variable, int[] schedule, boolean[] fromChild, int tail) {
+        if (!bottom.get(variable)) {
+            bottom.set(variable);
+            for (int child : graph.getChildren(variable)) {
+                schedule[tail] = child;
+                fromChild[tail++] = false;
+            }
         }
+        return tail;
     }
 
     /**
-     * Adjusts the visit count for the current variable based on the direction of traversal.
+     * Converts variables to their indexes in the graph, skipping the ones that are not in it.
      *
-     * @param visitCount the visit count for the current variable
-     * @param fromChild  indicates if the current variable was reached from a child
+     * @param variables the variables
+     * @return the set of indexes
      */
-    private void adjustVisitCount(VisitCount visitCount, boolean fromChild) {
-        if (!fromChild) {
-            visitCount.decrementFromParent();
-        } else {
-            visitCount.decrementFromChild();
+    private BitSet toIndexes(Collection<Variable> variables) {
+        BitSet indexes = new BitSet(graph.size());
+        for (Variable variable : variables) {
+            int index = variable == null ? -1 : graph.indexOf(variable);
+            if (index >= 0) {
+                indexes.set(index);
+            }
         }
+        return indexes;
     }
 
     /**
-     * Validates if the current path shows independence between the start and destination variables.
+     * Converts a set of indexes in the graph to the variables.
      *
-     * @param path the current path of variables
+     * @param indexes the set of indexes
+     * @return the variables, in the order of their indexes
      */
-    private void validatePath(List<Variable> path) {
-        for (int i = 0; i < path.size() - 1; i++) {
-            Variable prev = path.get(i);
-            Variable current = path.get(i + 1);
-            Variable next = (i + 2 < path.size()) ? path.get(i + 2) : null;
-
-            boolean directionUp = prev.isParentOf(current);
-
-            if (bayesBallQuery.includesEvidence(current)) {
-                if (directionUp && next != null && !next.isParentOf(current)) {
-                    return;
-                } else if (!directionUp) {
-                    return;
-                }
-            } else {
-                if (directionUp && next != null && !next.isChildOf(current)) {
-                    return;
-                }
-            }
+    private Set<Variable> toVariables(BitSet indexes) {
+        Set<Variable> variables = new LinkedHashSet<>();
+        for (int index = indexes.nextSetBit(0); index >= 0; index = indexes.nextSetBit(index + 1)) {
+            variables.add(graph.getVariable(index));
         }
-        bayesBallQuery.setIndependent(false); // If path is valid, set independence to false
+        return variables;
     }
 
     /**
@@ -134,41 +175,49 @@ public class BayesBall {
     }
 
     /**
-     * Executes the Bayes Ball query to determine conditional independence.
+     * Gets the variables that are not d-separated from the start variables given the evidence, including the start
+     * variables themselves. An evidence variable is reachable when the ball reaches it from a parent.
+     *
+     * @return the reachable variables, in the order of the graph
      */
-    public void executeQuery() {
-        findAllPaths();
+    public Set<Variable> getReachableVariables() {
+        return toVariables(reachable);
     }
 
     /**
-     * Inner class to track the number of times a variable is visited from parents and children.
+     * Gets the indexes in the graph of the variables that are not d-separated from the start variables.
+     * The set is owned by this object and must not be modified.
+     *
+     * @return the reachable variables as a set of indexes
      */
-    private static class VisitCount {
-        private int fromParentCount = 0; // Number of times visited from a parent
-        private int fromChildCount = 0; // Number of times visited from a child
-
-        public void incrementFromParent() {
-            fromParentCount++;
-        }
-
-        public void incrementFromChild() {
-            fromChildCount++;
-        }
-
-        public void decrementFromParent() {
-            fromParentCount--;
-        }
+    public BitSet getReachable() {
+        return reachable;
+    }
 
-        public void decrementFromChild() {
-            fromChildCount--;
-        }
+    /**
+     * Gets the variables that passed the ball on to their parents. When the ball starts from the query variable,
+     * these are the variables whose CPT is needed to compute the query given the evidence.
+     *
+     * @return the variables marked on top, in the order of the graph
+     */
+    public Set<Variable> getTopMarkedVariables() {
+        return toVariables(top);
+    }
 
-        public int getFromParentCount() {
-            return fromParentCount;
-        }
+    /**
+     * Gets the indexes in the graph of the variables that passed the ball on to their parents.
+     * The set is owned by this object and must not be modified.
+     *
+     * @return the variables marked on top as a set of indexes
+     */
+    public BitSet getTopMarked() {
+        return top;
+    }
 
-        public int getFromChildCount() {
-            return fromChildCount;
-        }
+    /**
+     * Executes the Bayes Ball query to determine conditional independence.
+     */
+    public void executeQuery() {
+        findAllPaths();
     }
 }
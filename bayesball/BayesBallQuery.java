@@ -3,14 +3,16 @@ package bayesball;
 import inference.Variable;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * This class represents a query for the Bayes Ball algorithm.
  * It contains the start and end variables, evidence variables, and the independence result.
+ * The ball can also be started from several variables at once, to find everything d-separated from a set.
  */
 public class BayesBallQuery {
-    private Variable startVariable; // The start variable in the Bayes Ball query
+    private final Set<Variable> startVariables; // The start variables in the Bayes Ball query, the first one is the start variable
     private Variable endVariable; // The end variable in the Bayes Ball query
     private final Set<Variable> evidenceVariables; // The set of evidence variables
     private boolean isIndependent; // The result of the independence check
@@ -19,6 +21,7 @@ public class BayesBallQuery {
      * Constructor initializes the evidence variables set and sets the independence result to true by default.
      */
     public BayesBallQuery() {
+        startVariables = new LinkedHashSet<>();
         evidenceVariables = new HashSet<>();
         isIndependent = true;
     }
@@ -29,7 +32,7 @@ public class BayesBallQuery {
      * @return the start variable
      */
     public Variable getStartVariable() {
-        return startVariable;
+        return startVariables.isEmpty() ? null : startVariables.iterator().next();
     }
 
     /**
@@ -38,7 +41,26 @@ public class BayesBallQuery {
      * @param startVariable the start variable to set
      */
     public void setStartVariable(Variable startVariable) {
-        this.startVariable = startVariable;
+        this.startVariables.clear();
+        this.startVariables.add(startVariable);
+    }
+
+    /**
+     * Adds a variable the ball starts from, in addition to the start variable.
+     *
+     * @param startVariable the start variable to add
+     */
+    public void addStartVariable(Variable startVariable) {
+        this.startVariables.add(startVariable);
+    }
+
+    /**
+     * Gets all the variables the ball starts from.
+     *
+     * @return the start variables
+     */
+    public Set<Variable> getStartVariables() {
+        return startVariables;
     }
 
     /**
@@ -86,6 +108,15 @@ public class BayesBallQuery {
         this.isIndependent = isIndependent;
     }
 
+    /**
+     * Gets the evidence variables.
+     *
+     * @return the evidence variables
+     */
+    public Set<Variable> getEvidenceVariables() {
+        return evidenceVariables;
+    }
+
     /**
      * Checks if a variable is included in the evidence variables set.
      *
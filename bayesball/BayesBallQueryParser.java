@@ -1,6 +1,7 @@
 package bayesball;
 
 import core.BayesianNetwork;
+import inference.Variable;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,7 +50,7 @@ public class BayesBallQueryParser {
         Matcher matcher = pattern.matcher(part);
         while (matcher.find()) {
             String evidenceVariable = matcher.group(1);
-            bayesBallQuery.addEvidenceVariable(network.getVariableMap().get(evidenceVariable)); // Add the evidence variable to the query
+            bayesBallQuery.addEvidenceVariable(getVariable(evidenceVariable)); // Add the evidence variable to the query
         }
     }
 
@@ -60,7 +61,22 @@ public class BayesBallQueryParser {
      */
     private void parseStartAndEndVariables(String part) {
         String[] variables = part.split("-");
-        bayesBallQuery.setStartVariable(network.getVariableMap().get(variables[0])); // Set the start variable
-        bayesBallQuery.setEndVariable(network.getVariableMap().get(variables[1])); // Set the end variable
+        bayesBallQuery.setStartVariable(getVariable(variables[0])); // Set the start variable
+        bayesBallQuery.setEndVariable(getVariable(variables[1])); // Set the end variable
+    }
+
+    /**
+     * Gets a variable of the network by name.
+     *
+     * @param name the name of the variable
+     * @return the variable
+     * @throws IllegalArgumentException if the network has no variable of that name
+     */
+    private Variable getVariable(String name) {
+        Variable variable = network.getVariableMap().get(name);
+        if (variable == null) {
+            throw new IllegalArgumentException("Unknown variable " + name);
+        }
+        return variable;
     }
 }
@@ -5,7 +5,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -131,4 +133,23 @@ public class BayesBallTest {
         bayesBall.findAllPaths();
         assertFalse(bayesBall.isIndependent(), "A and E should not be independent given A");
     }
+
+    @Test
+    public void testReachableVariablesFromE() {
+        BayesBallQuery query = new BayesBallQuery();
+        query.setStartVariable(E);
+        BayesBall bayesBall = new BayesBall(query);
+        bayesBall.executeQuery();
+        assertEquals(Set.of(E, A, J, M), bayesBall.getReachableVariables(), "B should be d-separated from E");
+    }
+
+    @Test
+    public void testReachableVariablesFromEGivenJ() {
+        BayesBallQuery query = new BayesBallQuery();
+        query.setStartVariable(E);
+        query.addEvidenceVariable(J);
+        BayesBall bayesBall = new BayesBall(query);
+        bayesBall.executeQuery();
+        assertEquals(Set.of(E, A, B, J, M), bayesBall.getReachableVariables(), "Observing J should connect E and B");
+    }
 }
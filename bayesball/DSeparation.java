@@ -0,0 +1,135 @@
+package bayesball;
+
+import core.BayesianNetwork;
+import core.NetworkGraph;
+import inference.Variable;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * This class answers many d-separation queries on one Bayesian Network with one evidence set.
+ * A single Bayes-Ball pass from a source finds every variable that is d-separated from it, instead of one pass
+ * per pair of variables.
+ * As in the irrelevant set of Bayes-Ball, the evidence variables are never in the d-separated sets: d-separation
+ * is only defined for variables that are not observed.
+ */
+public class DSeparation {
+    private final BayesianNetwork network; // The Bayesian Network
+
+    /**
+     * Constructor for DSeparation.
+     *
+     * @param network the Bayesian Network
+     */
+    public DSeparation(BayesianNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Finds the variables that are d-separated from a source variable given the evidence.
+     *
+     * @param source   the source variable
+     * @param evidence the evidence variables
+     * @return the d-separated variables that are not evidence, in the order of the network
+     */
+    public Set<Variable> findDSeparated(Variable source, Collection<Variable> evidence) {
+        return findDSeparated(Set.of(source), evidence);
+    }
+
+    /**
+     * Finds the variables that are d-separated from every variable of a source set given the evidence.
+     *
+     * @param sources  the source variables
+     * @param evidence the evidence variables
+     * @return the d-separated variables that are not evidence, in the order of the network
+     */
+    public Set<Variable> findDSeparated(Collection<Variable> sources, Collection<Variable> evidence) {
+        NetworkGraph graph = network.getGraph();
+        BitSet dSeparated = findDSeparatedIds(sources, evidence);
+
+        Set<Variable> dSeparatedVariables = new LinkedHashSet<>();
+        for (int id = dSeparated.nextSetBit(0); id >= 0; id = dSeparated.nextSetBit(id + 1)) {
+            dSeparatedVariables.add(graph.getVariable(id));
+        }
+        return dSeparatedVariables;
+    }
+
+    /**
+     * Computes the independence of every pair of variables given the evidence, with one Bayes-Ball pass
+     * per variable. The passes run in parallel on a fork-join pool supplied by the caller, which is left running,
+     * so a caller computing many matrices starts the worker threads once.
+     * Every row holds the answer of {@link #findDSeparated(Variable, Collection)} for its variable, so the entries
+     * of the evidence variables are always false.
+     *
+     * @param evidence the evidence variables
+     * @param pool     the pool to run the passes on
+     * @return a matrix indexed by variable id, true at [i][j] if variable j is d-separated from variable i
+     */
+    public boolean[][] computeIndependenceMatrix(Collection<Variable> evidence, ForkJoinPool pool) {
+        NetworkGraph graph = network.getGraph();
+        boolean[][] independent = new boolean[graph.size()][];
+        try {
+            pool.submit(() -> IntStream.range(0, independent.length).parallel().forEach(sourceId -> {
+                BitSet dSeparated = findDSeparatedIds(Set.of(graph.getVariable(sourceId)), evidence);
+                independent[sourceId] = new boolean[graph.size()];
+                for (int variableId = dSeparated.nextSetBit(0); variableId >= 0; variableId = dSeparated.nextSetBit(variableId + 1)) {
+                    independent[sourceId][variableId] = true;
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing the independence matrix", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error computing the independence matrix: " + e.getCause().getMessage(), e.getCause());
+        }
+        return independent;
+    }
+
+    /**
+     * Finds the ids of the variables that are d-separated from every source given the evidence.
+     *
+     * @param sources  the source variables
+     * @param evidence the evidence variables
+     * @return the ids of the d-separated variables that are not evidence
+     */
+    private BitSet findDSeparatedIds(Collection<Variable> sources, Collection<Variable> evidence) {
+        NetworkGraph graph = network.getGraph();
+        BitSet dSeparated = new BitSet(graph.size());
+        dSeparated.set(0, graph.size());
+        dSeparated.andNot(findReachable(sources, evidence));
+        for (Variable variable : evidence) {
+            int id = graph.indexOf(variable);
+            if (id >= 0) {
+                dSeparated.clear(id);
+            }
+        }
+        return dSeparated;
+    }
+
+    /**
+     * Passes the Bayes-Ball from the sources and collects the variables it reaches.
+     *
+     * @param sources  the source variables
+     * @param evidence the evidence variables
+     * @return the ids of the variables that are not d-separated from the sources
+     */
+    private BitSet findReachable(Collection<Variable> sources, Collection<Variable> evidence) {
+        BayesBallQuery bayesBallQuery = new BayesBallQuery();
+        for (Variable source : sources) {
+            bayesBallQuery.addStartVariable(source);
+        }
+        for (Variable variable : evidence) {
+            bayesBallQuery.addEvidenceVariable(variable);
+        }
+
+        BayesBall bayesBall = new BayesBall(bayesBallQuery, network.getGraph());
+        bayesBall.executeQuery();
+        return bayesBall.getReachable();
+    }
+}
@@ -0,0 +1,130 @@
+package bayesball;
+
+import core.BayesianNetwork;
+import core.VariableRegistry;
+import inference.Variable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DSeparationTest {
+
+    private Variable E;
+    private Variable B;
+    private Variable A;
+    private Variable J;
+    private Variable M;
+    private DSeparation dSeparation;
+
+    @BeforeEach
+    public void setUpAlarmNetwork() {
+        E = new Variable(0, "E", List.of("T", "F"));
+        B = new Variable(1, "B", List.of("T", "F"));
+        A = new Variable(2, "A", List.of("T", "F"));
+        J = new Variable(3, "J", List.of("T", "F"));
+        M = new Variable(4, "M", List.of("T", "F"));
+
+        A.addParent(E);
+        A.addParent(B);
+        E.addChild(A);
+        B.addChild(A);
+        J.addParent(A);
+        A.addChild(J);
+        M.addParent(A);
+        A.addChild(M);
+
+        Map<String, Variable> variableMap = new LinkedHashMap<>();
+        for (Variable variable : List.of(E, B, A, J, M)) {
+            variableMap.put(variable.getName(), variable);
+        }
+        BayesianNetwork network = new BayesianNetwork();
+        network.setVariableMap(variableMap);
+        network.setRegistry(new VariableRegistry(variableMap.values()));
+        dSeparation = new DSeparation(network);
+    }
+
+    @Test
+    public void testDSeparatedFromJGivenA() {
+        assertEquals(Set.of(E, B, M), dSeparation.findDSeparated(J, Set.of(A)));
+    }
+
+    @Test
+    public void testEvidenceIsNeverDSeparated() {
+        // The ball from E never reaches B, which is still left out as it is observed
+        assertEquals(Set.of(), dSeparation.findDSeparated(E, Set.of(B)));
+        assertEquals(Set.of(E, B), dSeparation.findDSeparated(Set.of(J, M), Set.of(A)));
+
+        // The independence matrix agrees, although the Bayes-Ball query of the pair calls the observed B independent of E
+        assertFalse(computeIndependenceMatrix(Set.of(B), 1)[E.getId()][B.getId()]);
+    }
+
+    @Test
+    public void testDSeparatedFromSourceSet() {
+        assertEquals(Set.of(), dSeparation.findDSeparated(Set.of(E, B), Set.of()));
+        assertEquals(Set.of(M), dSeparation.findDSeparated(Set.of(E, J), Set.of(A)));
+    }
+
+    @Test
+    public void testIndependenceMatrixMatchesBayesBall() {
+        boolean[][] independent = computeIndependenceMatrix(Set.of(J), 2);
+        assertFalse(independent[E.getId()][B.getId()], "E and B should not be independent given J");
+
+        List<Variable> variables = List.of(E, B, A, J, M);
+        for (Variable start : variables) {
+            for (Variable end : List.of(E, B, A, M)) {
+                BayesBallQuery query = new BayesBallQuery();
+                query.setStartVariable(start);
+                query.setEndVariable(end);
+                query.addEvidenceVariable(J);
+                new BayesBall(query).executeQuery();
+                assertEquals(query.isIndependent(), independent[start.getId()][end.getId()],
+                             start.getName() + "-" + end.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testIndependenceMatrixMatchesFindDSeparated() {
+        List<Variable> variables = List.of(E, B, A, J, M);
+        for (Set<Variable> evidence : List.of(Set.<Variable>of(), Set.of(A), Set.of(B), Set.of(J), Set.of(A, E), Set.of(J, M))) {
+            boolean[][] independent = computeIndependenceMatrix(evidence, 3);
+            for (Variable source : variables) {
+                Set<Variable> dSeparated = dSeparation.findDSeparated(source, evidence);
+                for (Variable variable : variables) {
+                    assertEquals(dSeparated.contains(variable), independent[source.getId()][variable.getId()],
+                                 source.getName() + "-" + variable.getName() + " given " + evidence);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndependenceMatrixLeavesThePoolRunning() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            dSeparation.computeIndependenceMatrix(Set.of(A), pool);
+            assertFalse(pool.isShutdown());
+            assertTrue(dSeparation.computeIndependenceMatrix(Set.of(A), pool)[J.getId()][E.getId()]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private boolean[][] computeIndependenceMatrix(Set<Variable> evidence, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return dSeparation.computeIndependenceMatrix(evidence, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import batch.BatchQueryExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many query lines per second the batch executor answers, with a mix of probabilistic
+ * and independence queries, on one thread and on several threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchThroughputBenchmark {
+    private static final int BATCH_SIZE = 128; // The number of query lines of a batch, see NetworkState
+
+    @Param({"1", "4"})
+    public int threads; // The number of threads executing the batch
+
+    private List<String> lines; // The batch, the probabilistic and independence queries of the network interleaved
+    private BatchQueryExecutor executor; // The executor of the batch
+    private ForkJoinPool pool; // The pool the batch runs on, started once so its startup is not measured
+
+    /**
+     * Builds the batch, the executor and its pool.
+     *
+     * @param state the benchmark network
+     */
+    @Setup(Level.Trial)
+    public void setUp(NetworkState state) {
+        lines = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < state.probabilityQueries.size(); i++) {
+            lines.add(state.probabilityQueries.get(i));
+            lines.add(state.independenceQueries.get(i));
+        }
+        executor = new BatchQueryExecutor(state.network, null, null);
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Shuts the pool down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Executes the batch of query lines.
+     *
+     * @return the output lines
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<String> executeBatch() {
+        return executor.executeAll(lines, pool);
+    }
+}
@@ -0,0 +1,95 @@
+package benchmarks;
+
+import bayesball.BayesBall;
+import bayesball.BayesBallQuery;
+import bayesball.BayesBallQueryParser;
+import bayesball.DSeparation;
+import inference.Variable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures d-separation: a single Bayes-Ball query, and all the variables d-separated from a source at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DSeparationBenchmark {
+
+    /**
+     * The parsed queries and the position of the next one, for each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        List<BayesBallQuery> queries; // The parsed queries
+        DSeparation dSeparation; // The bulk d-separation API over the benchmark network
+        int next; // The index of the next query to run
+
+        /**
+         * Parses the queries of the benchmark network.
+         *
+         * @param state the benchmark network
+         */
+        @Setup(Level.Trial)
+        public void setUp(NetworkState state) {
+            queries = state.independenceQueries.stream()
+                                               .map(line -> new BayesBallQueryParser(state.network).parseQuery(line))
+                                               .collect(Collectors.toList());
+            dSeparation = new DSeparation(state.network);
+        }
+
+        /**
+         * Gets the next query.
+         *
+         * @return the query
+         */
+        BayesBallQuery nextQuery() {
+            BayesBallQuery query = queries.get(next);
+            next = (next + 1) % queries.size();
+            return query;
+        }
+    }
+
+    /**
+     * Answers the next Bayes-Ball query.
+     *
+     * @param state   the benchmark network
+     * @param queries the parsed queries
+     * @return true if the variables of the query are independent
+     */
+    @Benchmark
+    public boolean bayesBall(NetworkState state, Queries queries) {
+        BayesBallQuery query = queries.nextQuery();
+        BayesBall bayesBall = new BayesBall(query, state.network.getGraph());
+        bayesBall.executeQuery();
+        return bayesBall.isIndependent();
+    }
+
+    /**
+     * Finds every variable d-separated from the start variable of the next query given its evidence.
+     *
+     * @param queries the parsed queries
+     * @return the d-separated variables
+     */
+    @Benchmark
+    public Set<Variable> findDSeparated(Queries queries) {
+        BayesBallQuery query = queries.nextQuery();
+        return queries.dSeparation.findDSeparated(query.getStartVariable(), query.getEvidenceVariables());
+    }
+}
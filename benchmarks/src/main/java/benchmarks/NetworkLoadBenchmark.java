@@ -0,0 +1,51 @@
+package benchmarks;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import core.BinaryNetworkLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to load a network, from its XML file and from its binary file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkLoadBenchmark {
+
+    /**
+     * Parses the network XML file.
+     *
+     * @param state the benchmark network
+     * @return the parsed network
+     */
+    @Benchmark
+    public BayesianNetwork parseXml(NetworkState state) {
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(state.xmlPath.toString());
+        return parser.getBayesianNetwork();
+    }
+
+    /**
+     * Memory-maps the network binary file.
+     *
+     * @param state the benchmark network
+     * @return the loaded network
+     */
+    @Benchmark
+    public BayesianNetwork loadBinary(NetworkState state) {
+        BinaryNetworkLoader loader = new BinaryNetworkLoader();
+        loader.loadBayesianNetwork(state.binaryPath.toString());
+        return loader.getBayesianNetwork();
+    }
+}
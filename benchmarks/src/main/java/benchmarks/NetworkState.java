@@ -0,0 +1,104 @@
+package benchmarks;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import core.BinaryNetworkWriter;
+import generator.NetworkGenerator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The network shared by the benchmarks, with a fixed set of queries on it.
+ * The network is generated with a fixed seed and a bounded treewidth, written to a temporary XML file and
+ * converted to the binary format, so every run of a benchmark works on the same network and the same queries.
+ */
+@State(Scope.Benchmark)
+public class NetworkState {
+    private static final long SEED = 42; // The seed of the network and the queries
+    private static final int NUM_QUERIES = 64; // The number of queries of each kind
+
+    @Param({"small", "medium", "large"})
+    public String size; // The size of the network
+
+    public Path xmlPath; // The network XML file
+    public Path binaryPath; // The network binary file
+    public BayesianNetwork network; // The parsed network snapshot
+    public List<String> probabilityQueries; // Query lines for variable elimination, without an elimination order
+    public List<String> independenceQueries; // Query lines for Bayes-Ball
+    private Path directory; // The temporary directory holding the network files
+
+    /**
+     * Writes the network files, parses the network and generates the queries.
+     *
+     * @throws IOException if the network files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        NetworkGenerator generator = new NetworkGenerator(SEED);
+        switch (size) {
+            case "small" -> {
+                generator.setNumVariables(20);
+                generator.setMaxParents(2);
+                generator.setCardinality(2);
+                generator.setTreewidth(3);
+            }
+            case "medium" -> {
+                generator.setNumVariables(200);
+                generator.setMaxParents(3);
+                generator.setCardinality(3);
+                generator.setTreewidth(4);
+            }
+            case "large" -> {
+                generator.setNumVariables(2000);
+                generator.setMaxParents(4);
+                generator.setCardinality(3);
+                generator.setTreewidth(5);
+            }
+            default -> throw new IllegalArgumentException("Unknown network size " + size);
+        }
+        generator.generate();
+
+        directory = Files.createTempDirectory("bayesnet-benchmark");
+        xmlPath = directory.resolve(size + ".xml");
+        binaryPath = directory.resolve(size + ".bnet");
+        generator.writeNetwork(xmlPath.toString());
+
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(xmlPath.toString());
+        network = parser.getBayesianNetwork().snapshot();
+        new BinaryNetworkWriter().write(network, binaryPath.toString());
+
+        probabilityQueries = generator.generateProbabilityQueries(NUM_QUERIES);
+        independenceQueries = generator.generateIndependenceQueries(NUM_QUERIES);
+    }
+
+    /**
+     * Deletes the network files.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import inference.QueryResult;
+import inference.VariableElimination;
+import inference.VariableEliminationQuery;
+import inference.VariableEliminationQueryParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the latency of a single probabilistic query answered by variable elimination.
+ * Every invocation runs the next query of a fixed list, so the score is the average over the whole list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableEliminationBenchmark {
+
+    /**
+     * The parsed queries and the position of the next one, for each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Queries {
+        List<VariableEliminationQuery> queries; // The parsed queries
+        int next; // The index of the next query to run
+
+        /**
+         * Parses the queries of the benchmark network.
+         *
+         * @param state the benchmark network
+         */
+        @Setup(Level.Trial)
+        public void setUp(NetworkState state) {
+            VariableEliminationQueryParser parser = new VariableEliminationQueryParser(state.network);
+            queries = state.probabilityQueries.stream().map(parser::parseQuery).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Runs the next query.
+     *
+     * @param state   the benchmark network
+     * @param queries the parsed queries
+     * @return the result of the query
+     */
+    @Benchmark
+    public QueryResult singleQuery(NetworkState state, Queries queries) {
+        VariableEliminationQuery query = queries.queries.get(queries.next);
+        queries.next = (queries.next + 1) % queries.queries.size();
+        VariableElimination ve = new VariableElimination(state.network, query);
+        ve.executeQuery();
+        return ve.getQueryResult();
+    }
+}
@@ -3,13 +3,20 @@ package core;
 import inference.Factor;
 import inference.Variable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This class represents a Bayesian Network.
  * A Bayesian Network is a probabilistic graphical model that represents a set of variables
  * and their conditional dependencies via a directed acyclic graph (DAG).
+ * A network is built up by the parser and can then be frozen into an immutable snapshot with {@link #snapshot()},
+ * which any number of threads can query at the same time.
  */
 public class BayesianNetwork {
 
@@ -21,6 +28,19 @@ public class BayesianNetwork {
     // Factors are functions over a subset of variables, representing the probability distributions.
     private List<Factor> factorList;
 
+    // The registry of dense integer ids for the variables and their outcomes.
+    private VariableRegistry registry;
+
+    // The compiled graph of the variables, built with the registry.
+    private NetworkGraph graph;
+
+    // Incremented whenever the variables or the CPTs of the network change, so that cached results can be invalidated.
+    // Atomic, since a CPT edited on one thread must be seen by the cache lookups of the batch worker threads.
+    private final AtomicLong version = new AtomicLong();
+
+    // True for a snapshot, whose variables, CPTs and registry can no longer be replaced.
+    private boolean immutable;
+
     /**
      * Default constructor for the BayesianNetwork class.
      * Initializes an empty Bayesian Network.
@@ -41,7 +61,9 @@ public class BayesianNetwork {
      * @param variableMap A map where the key is the variable name and the value is the corresponding Variable object.
      */
     public void setVariableMap(Map<String, Variable> variableMap) {
+        checkMutable();
         this.variableMap = variableMap;
+        this.version.incrementAndGet();
     }
 
     /**
@@ -57,6 +79,123 @@ public class BayesianNetwork {
      * @param factorList A list of Factor objects representing the probability distributions over subsets of variables.
      */
     public void setFactorList(List<Factor> factorList) {
+        checkMutable();
         this.factorList = factorList;
+        for (Factor factor : factorList) {
+            factor.setChangeListener(() -> this.version.incrementAndGet());
+        }
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Gets the registry of dense integer ids for the variables of the Bayesian Network.
+     * @return The variable registry.
+     */
+    public VariableRegistry getRegistry() {
+        return this.registry;
+    }
+
+    /**
+     * Sets the registry of dense integer ids for the variables of the Bayesian Network and compiles their graph.
+     * The parents and children of the variables must be linked before the registry is set.
+     * @param registry The variable registry.
+     */
+    public void setRegistry(VariableRegistry registry) {
+        checkMutable();
+        this.registry = registry;
+        this.graph = new NetworkGraph(registry);
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Gets the compiled graph of the Bayesian Network, indexed by variable id.
+     * @return The network graph, or null if the registry is not set.
+     */
+    public NetworkGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Gets the version of the Bayesian Network, which changes whenever its variables or CPTs change.
+     * @return The version of the network.
+     */
+    public long getVersion() {
+        return this.version.get();
+    }
+
+    /**
+     * Marks the CPTs of the Bayesian Network as changed.
+     * Replacing the table of a factor of the list, or setting one of its values, already changes the version.
+     * Code that changes the factors any other way, such as through a copy of a table, must call this so that cached results are invalidated.
+     */
+    public void notifyFactorsChanged() {
+        checkMutable();
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Checks if the Bayesian Network is an immutable snapshot.
+     * @return True if the network is a snapshot, false otherwise.
+     */
+    public boolean isImmutable() {
+        return this.immutable;
+    }
+
+    /**
+     * Creates an immutable snapshot of the Bayesian Network.
+     * The snapshot owns frozen copies of the variables and read-only copies of the CPTs (read-only CPTs are shared), its variable map
+     * and factor list cannot be modified, and queries only read it, so it can be shared by concurrent queries without locks.
+     * Changing this network afterwards does not change the snapshot. The snapshot keeps the version of this network.
+     * @return The snapshot, or this network if it is already a snapshot.
+     */
+    public BayesianNetwork snapshot() {
+        if (this.immutable) {
+            return this;
+        }
+        Map<String, Variable> variables = copyVariables(this.variableMap);
+        BayesianNetwork snapshot = new BayesianNetwork();
+        snapshot.variableMap = Collections.unmodifiableMap(variables);
+        snapshot.factorList = this.factorList.stream().map(factor -> Factor.readOnlyCopy(factor, variables)).collect(Collectors.toUnmodifiableList());
+        if (this.registry != null) {
+            snapshot.registry = new VariableRegistry(IntStream.range(0, this.registry.size())
+                                                              .mapToObj(id -> variables.get(this.registry.getVariable(id).getName()))
+                                                              .collect(Collectors.toList()));
+            snapshot.graph = new NetworkGraph(snapshot.registry);
+        }
+        snapshot.version.set(this.version.get());
+        snapshot.immutable = true;
+        return snapshot;
+    }
+
+    /**
+     * Copies variables with their parents and children, linking the copies to each other, and freezes the copies.
+     * @param variableMap The variables to copy, by name.
+     * @return The frozen copies, by name, in the same order.
+     */
+    private static Map<String, Variable> copyVariables(Map<String, Variable> variableMap) {
+        Map<String, Variable> copies = new LinkedHashMap<>();
+        for (Variable variable : variableMap.values()) {
+            copies.put(variable.getName(), new Variable(variable.getId(), variable.getName(), List.copyOf(variable.getOutcomes())));
+        }
+        for (Variable variable : variableMap.values()) {
+            Variable copy = copies.get(variable.getName());
+            for (Variable parent : variable.getParents()) {
+                copy.addParent(copies.get(parent.getName()));
+            }
+            for (Variable child : variable.getChildren()) {
+                copy.addChild(copies.get(child.getName()));
+            }
+        }
+        copies.values().forEach(Variable::freeze);
+        return copies;
+    }
+
+    /**
+     * Throws if the Bayesian Network is an immutable snapshot.
+     */
+    private void checkMutable() {
+        if (this.immutable) {
+            throw new IllegalStateException("Cannot modify an immutable Bayesian Network snapshot");
+        }
     }
 }
@@ -1,23 +1,25 @@
 package core;
 
+import inference.DenseFactor;
 import inference.Factor;
-import inference.FactorRow;
 import inference.Variable;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * This class parses a Bayesian Network from an XML file and creates the corresponding BayesianNetwork object.
- * It also parses queries from strings.
+ * The file is read in a single streaming pass, and the numbers of every TABLE are parsed straight into a primitive
+ * array, so the memory used by the parser is bounded by the largest CPT rather than by the size of the document.
+ * The VARIABLE elements must come before the DEFINITION elements that use them, as in the XMLBIF format.
  */
 public class BayesianNetworkParser {
     private final Map<String, Variable> variablesMap = new LinkedHashMap<>(); // Map of variable names to Variable objects
@@ -39,127 +41,245 @@ public class BayesianNetworkParser {
      * @param xmlPath the path to the XML file
      */
     public void parseBayesianNetwork(String xmlPath) {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(xmlPath);
-            parseVariables(doc);
-            parseDefinitions(doc);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(xmlPath))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(xmlPath, inputStream);
+            try {
+                parseElements(reader);
+            } finally {
+                reader.close();
+            }
 
             bayesianNetwork.setVariableMap(variablesMap);
             bayesianNetwork.setFactorList(factorList);
+            bayesianNetwork.setRegistry(new VariableRegistry(variablesMap.values()));
 
-        } catch (ParserConfigurationException | IOException | SAXException e) {
+        } catch (XMLStreamException | IOException | IllegalArgumentException e) {
             throw new RuntimeException("Error parsing Bayesian Network XML file: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Parses the definitions of the Bayesian Network from the XML document.
+     * Reads the document and parses every VARIABLE and DEFINITION element as soon as it ends.
      *
-     * @param doc the XML document
+     * @param reader the XML stream reader
+     * @throws XMLStreamException if the document is not well-formed
      */
-    private void parseDefinitions(Document doc) {
-        NodeList definitionList = doc.getElementsByTagName("DEFINITION");
+    private void parseElements(XMLStreamReader reader) throws XMLStreamException {
+        String variableName = null; // The name of the variable being parsed
+        List<String> outcomes = null; // The outcomes of the variable being parsed, null outside a VARIABLE element
+        String definitionFor = null; // The variable of the definition being parsed
+        List<String> givens = null; // The parents of the definition being parsed, null outside a DEFINITION element
+        double[] table = null; // The table of the definition being parsed
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "VARIABLE" -> {
+                        variableName = null;
+                        outcomes = new ArrayList<>();
+                    }
+                    case "DEFINITION" -> {
+                        definitionFor = null;
+                        givens = new ArrayList<>();
+                        table = null;
+                    }
+                    case "NAME" -> {
+                        if (outcomes != null) {
+                            variableName = reader.getElementText().trim();
+                        }
+                    }
+                    case "OUTCOME" -> {
+                        if (outcomes != null) {
+                            outcomes.add(reader.getElementText().trim());
+                        }
+                    }
+                    case "FOR" -> {
+                        if (givens != null) {
+                            definitionFor = reader.getElementText().trim();
+                        }
+                    }
+                    case "GIVEN" -> {
+                        if (givens != null) {
+                            givens.add(reader.getElementText().trim());
+                        }
+                    }
+                    case "TABLE" -> {
+                        if (givens != null) {
+                            table = parseTable(reader, expectedTableSize(definitionFor, givens));
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (reader.getLocalName().equals("VARIABLE")) {
+                    addVariable(variableName, outcomes);
+                    outcomes = null;
+                } else if (reader.getLocalName().equals("DEFINITION")) {
+                    addDefinition(definitionFor, givens, table);
+                    givens = null;
+                }
+            }
+        }
+    }
 
-        for (int i = 0; i < definitionList.getLength(); ++i) {
-            Element definitionElement = (Element) definitionList.item(i);
-            parseSingleDefinition(definitionElement);
+    /**
+     * Adds a parsed variable to the network.
+     *
+     * @param name     the name of the variable
+     * @param outcomes the outcomes of the variable
+     */
+    private void addVariable(String name, List<String> outcomes) {
+        if (name == null) {
+            throw new IllegalArgumentException("VARIABLE element without a NAME");
         }
+        variablesMap.put(name, new Variable(variablesMap.size(), name, outcomes));
     }
 
     /**
-     * Parses a single definition element and adds the corresponding factor to the factor list.
+     * Adds a parsed definition to the network: links the variable to its parents and adds its CPT to the factor list.
      *
-     * @param definitionElement the definition element
+     * @param variableName the name of the variable of the definition
+     * @param givens       the names of the parents of the variable
+     * @param table        the probability table
      */
-    private void parseSingleDefinition(Element definitionElement) {
-        Variable newVariable = variablesMap.get(definitionElement.getElementsByTagName("FOR").item(0).getTextContent());
+    private void addDefinition(String variableName, List<String> givens, double[] table) {
+        Variable newVariable = getDeclaredVariable(variableName);
         List<Variable> variableList = new ArrayList<>();
-        NodeList parentsElementList = definitionElement.getElementsByTagName("GIVEN");
 
-        for (int j = 0; j < parentsElementList.getLength(); ++j) {
-            Variable parentVariable = variablesMap.get(parentsElementList.item(j).getTextContent());
+        for (String given : givens) {
+            Variable parentVariable = getDeclaredVariable(given);
             newVariable.addParent(parentVariable);
             parentVariable.addChild(newVariable);
             variableList.add(parentVariable);
         }
 
-        List<Double> table = Arrays.stream(definitionElement.getElementsByTagName("TABLE").item(0).getTextContent().split(" "))
-                                   .map(Double::parseDouble)
-                                   .collect(Collectors.toList());
+        if (table == null) {
+            throw new IllegalArgumentException("DEFINITION of " + variableName + " without a TABLE");
+        }
         variableList.add(newVariable);
-        List<FactorRow> factorRows = generateRows(variableList, table);
-        factorList.add(new Factor(newVariable, variableList.stream().collect(Collectors.toMap(Variable::getName, variable -> variable, (existing, replacement) -> existing, LinkedHashMap::new)), factorRows));
+        DenseFactor factorTable = generateTable(variableList, table);
+        factorList.add(new Factor(newVariable, variableList.stream().collect(Collectors.toMap(Variable::getName, variable -> variable, (existing, replacement) -> existing, LinkedHashMap::new)), factorTable));
     }
 
     /**
-     * Generates factor rows based on the variables and their probability table.
+     * Gets a variable that was declared by a VARIABLE element.
      *
-     * @param variables       the list of variables
-     * @param probabilityTable the probability table
-     * @return the list of factor rows
+     * @param name the name of the variable
+     * @return the variable
      */
-    private List<FactorRow> generateRows(List<Variable> variables, List<Double> probabilityTable) {
-        List<FactorRow> result = new ArrayList<>();
-        int[] probabilityTableIndex = new int[]{0};
-        generateRowsHelper(variables, probabilityTable, new HashMap<>(), result, 0, probabilityTableIndex);
-        return result;
+    private Variable getDeclaredVariable(String name) {
+        Variable variable = variablesMap.get(name);
+        if (variable == null) {
+            throw new IllegalArgumentException("DEFINITION uses the undeclared variable " + name);
+        }
+        return variable;
     }
 
     /**
-     * Helper method to recursively generate factor rows.
+     * Computes the size of the table of a definition from the cardinalities of its variables.
      *
-     * @param variables           the list of variables
-     * @param probabilityTable    the probability table
-     * @param currentStateMap     the current state map of variable outcomes
-     * @param result              the resulting list of factor rows
-     * @param index               the current index in the variable list
-     * @param probabilityTableIndex the index in the probability table
+     * @param variableName the name of the variable of the definition, or null if it was not parsed yet
+     * @param givens       the names of the parents of the variable parsed so far
+     * @return the number of entries of the table, or -1 if it is not known yet
      */
-    private void generateRowsHelper(List<Variable> variables, List<Double> probabilityTable, Map<String, String> currentStateMap, List<FactorRow> result, int index, int[] probabilityTableIndex) {
-        if (index == variables.size()) {
-            result.add(new FactorRow(new HashMap<>(currentStateMap), probabilityTable.get(probabilityTableIndex[0])));
-            probabilityTableIndex[0]++;
-        } else {
-            Variable currentVariable = variables.get(index);
-            for (String outcome : currentVariable.getOutcomes()) {
-                currentStateMap.put(currentVariable.getName(), outcome);
-                generateRowsHelper(variables, probabilityTable, currentStateMap, result, index + 1, probabilityTableIndex);
-                currentStateMap.remove(currentVariable.getName());
+    private int expectedTableSize(String variableName, List<String> givens) {
+        if (variableName == null) {
+            return -1;
+        }
+        int size = getDeclaredVariable(variableName).getCardinality();
+        for (String given : givens) {
+            size = Math.multiplyExact(size, getDeclaredVariable(given).getCardinality());
+        }
+        return size;
+    }
+
+    /**
+     * Parses the whitespace separated numbers of a TABLE element into a primitive array, reading the text
+     * in the chunks delivered by the stream reader. Only the current number is buffered as characters.
+     *
+     * @param reader       the XML stream reader, positioned on the start of the TABLE element
+     * @param expectedSize the number of entries of the table, or -1 if it is not known
+     * @return the probability table
+     * @throws XMLStreamException if the document is not well-formed
+     */
+    private double[] parseTable(XMLStreamReader reader, int expectedSize) throws XMLStreamException {
+        double[] table = new double[expectedSize >= 0 ? expectedSize : 16];
+        int size = 0;
+        StringBuilder number = new StringBuilder();
+
+        int event = reader.next();
+        while (event != XMLStreamConstants.END_ELEMENT) {
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                char[] characters = reader.getTextCharacters();
+                int end = reader.getTextStart() + reader.getTextLength();
+                for (int i = reader.getTextStart(); i < end; i++) {
+                    if (!Character.isWhitespace(characters[i])) {
+                        number.append(characters[i]);
+                    } else if (number.length() > 0) {
+                        table = append(table, size++, parseNumber(number), expectedSize);
+                        number.setLength(0);
+                    }
+                }
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element " + reader.getLocalName() + " in TABLE", reader.getLocation());
             }
+            event = reader.next();
+        }
+        if (number.length() > 0) {
+            table = append(table, size++, parseNumber(number), expectedSize);
         }
+
+        return size == table.length ? table : Arrays.copyOf(table, size);
     }
 
     /**
-     * Parses the variables of the Bayesian Network from the XML document.
+     * Stores a number at the end of a table, growing the table only when its size is not known.
      *
-     * @param doc the XML document
+     * @param table        the table
+     * @param index        the index of the number
+     * @param value        the number
+     * @param expectedSize the number of entries of the table, or -1 if it is not known
+     * @return the table holding the number
      */
-    private void parseVariables(Document doc) {
-        NodeList variableElementsList = doc.getElementsByTagName("VARIABLE");
-
-        for (int i = 0; i < variableElementsList.getLength(); ++i) {
-            Element variableElement = (Element) variableElementsList.item(i);
-            String name = variableElement.getElementsByTagName("NAME").item(0).getTextContent();
-            List<String> outcomes = parseOutcomes(variableElement);
-            variablesMap.put(name, new Variable(name, outcomes));
+    private double[] append(double[] table, int index, double value, int expectedSize) {
+        if (index == table.length) {
+            if (expectedSize >= 0) {
+                throw new IllegalArgumentException("TABLE has more than the " + expectedSize + " expected values");
+            }
+            table = Arrays.copyOf(table, table.length * 2);
         }
+        table[index] = value;
+        return table;
     }
 
     /**
-     * Parses the outcomes of a variable from the XML element.
+     * Parses a number of a TABLE element.
      *
-     * @param variableElement the variable element
-     * @return the list of outcomes
+     * @param number the characters of the number
+     * @return the number
      */
-    private List<String> parseOutcomes(Element variableElement) {
-        List<String> outcomes = new ArrayList<>();
-        NodeList outcomesListElement = variableElement.getElementsByTagName("OUTCOME");
-        for (int j = 0; j < outcomesListElement.getLength(); ++j) {
-            outcomes.add(outcomesListElement.item(j).getTextContent());
+    private double parseNumber(CharSequence number) {
+        try {
+            return Double.parseDouble(number.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in TABLE: " + number, e);
         }
-        return outcomes;
+    }
+
+    /**
+     * Generates the dense factor table based on the variables and their probability table.
+     * The probability table lists the outcomes of the last variable fastest, which is the row-major order of the dense table.
+     *
+     * @param variables        the list of variables
+     * @param probabilityTable the probability table
+     * @return the dense factor table
+     */
+    private DenseFactor generateTable(List<Variable> variables, double[] probabilityTable) {
+        return new DenseFactor(variables.toArray(new Variable[0]), probabilityTable);
     }
 
 }
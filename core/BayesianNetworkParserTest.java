@@ -0,0 +1,80 @@
+package core;
+
+import inference.Factor;
+import inference.Variable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BayesianNetworkParserTest {
+
+    private static final String NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME> A </NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>B</NAME><OUTCOME>x</OUTCOME><OUTCOME>y</OUTCOME><OUTCOME>z</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>A</FOR><TABLE>0.25
+                0.75</TABLE></DEFINITION>
+            <DEFINITION><FOR>B</FOR><GIVEN>A</GIVEN><TABLE>0.1 0.2<!-- comment --> 0.7 <![CDATA[0.3 0.3]]>  0.4 </TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setDirectory(@TempDir Path directory) {
+        this.directory = directory;
+    }
+
+    private BayesianNetwork parse(String xml) throws IOException {
+        Path networkFile = Files.createTempFile(directory, "network", ".xml");
+        Files.writeString(networkFile, xml);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        return parser.getBayesianNetwork();
+    }
+
+    private void assertParseError(String xml, String message) throws IOException {
+        RuntimeException e = assertThrows(RuntimeException.class, () -> parse(xml));
+        assertTrue(e.getMessage().startsWith("Error parsing Bayesian Network XML file"), e.getMessage());
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+
+    @Test
+    public void testTablesAreReadAcrossTextChunks() throws IOException {
+        BayesianNetwork network = parse(NETWORK);
+        Variable a = network.getVariableMap().get("A");
+        Variable b = network.getVariableMap().get("B");
+
+        assertEquals(List.of("A", "B"), List.copyOf(network.getVariableMap().keySet()));
+        assertEquals(List.of("x", "y", "z"), b.getOutcomes());
+        assertEquals(List.of(a), b.getParents());
+        assertEquals(List.of(b), a.getChildren());
+
+        Factor factor = network.getFactorList().get(1);
+        assertEquals(List.of("A", "B"), List.copyOf(factor.getVariablesMap().keySet()));
+        double[] expected = {0.1, 0.2, 0.7, 0.3, 0.3, 0.4};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], factor.getTable().getValue(i));
+        }
+        assertEquals(0.75, network.getFactorList().get(0).getTable().getValue(1));
+    }
+
+    @Test
+    public void testMalformedDefinitionsAreReported() throws IOException {
+        assertParseError(NETWORK.replace("<GIVEN>A</GIVEN>", "<GIVEN>C</GIVEN>"), "undeclared variable C");
+        assertParseError(NETWORK.replace("<TABLE>0.25\n    0.75</TABLE>", ""), "DEFINITION of A without a TABLE");
+        assertParseError(NETWORK.replace("0.4 </TABLE>", "0.4 0.5</TABLE>"), "more than the 6 expected values");
+        assertParseError(NETWORK.replace("0.4 </TABLE>", "</TABLE>"), "expects 6 values but got 5");
+        assertParseError(NETWORK.replace("0.7", "0.7x"), "Invalid number in TABLE: 0.7x");
+        assertParseError(NETWORK.replace("</NETWORK>", ""), "");
+    }
+}
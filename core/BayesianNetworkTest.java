@@ -0,0 +1,130 @@
+package core;
+
+import inference.DenseFactor;
+import inference.Factor;
+import inference.Variable;
+import inference.VariableElimination;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BayesianNetworkTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private static final String[] QUERIES = {"P(B=T|J=T,M=T) A-E", "P(J=T|B=F) A-E-M", "P(E=T|A=T) B-J-M", "P(M=T)"};
+
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork();
+    }
+
+    private static List<String> answer(BayesianNetwork network) {
+        List<String> results = new ArrayList<>();
+        for (String line : QUERIES) {
+            VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line));
+            ve.executeQuery();
+            results.add(ve.getResult());
+        }
+        return results;
+    }
+
+    @Test
+    public void testChangingTheSourceDoesNotChangeTheSnapshot() {
+        BayesianNetwork snapshot = network.snapshot();
+        List<String> before = answer(snapshot);
+
+        DenseFactor prior = network.getFactorList().get(0).getTable();
+        prior.setValue(0, 0.6);
+        prior.setValue(1, 0.4);
+        Factor alarm = network.getFactorList().get(2);
+        alarm.setTable(new DenseFactor(alarm.getTable().getVariables(), new double[]{0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5, 0.5}));
+        Variable j = network.getVariableMap().get("J");
+        Variable m = network.getVariableMap().get("M");
+        j.addChild(m);
+        m.addParent(j);
+
+        assertEquals(before, answer(snapshot));
+        assertTrue(!before.equals(answer(network)));
+        assertEquals(List.of(snapshot.getVariableMap().get("A")), snapshot.getVariableMap().get("M").getParents());
+    }
+
+    @Test
+    public void testConcurrentEditsAreAllCounted() throws Exception {
+        DenseFactor prior = network.getFactorList().get(0).getTable();
+        long version = network.getVersion();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> edits = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                edits.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        prior.setValue(0, 0.2);
+                    }
+                }));
+            }
+            for (Future<?> edit : edits) {
+                edit.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(version + 40_000, network.getVersion());
+    }
+
+    @Test
+    public void testSnapshotCannotBeModified() {
+        BayesianNetwork snapshot = network.snapshot();
+        Factor factor = snapshot.getFactorList().get(2);
+        Variable variable = snapshot.getVariableMap().get("J");
+
+        assertSame(snapshot, snapshot.snapshot());
+        assertNotSame(network.getVariableMap().get("J"), variable);
+        assertSame(variable, snapshot.getRegistry().getVariable(variable.getId()));
+        assertTrue(factor.getTable().isReadOnly());
+        assertThrows(IllegalStateException.class, () -> factor.getTable().setValue(0, 1));
+        assertThrows(IllegalStateException.class, () -> factor.getTable().restrict(0, 0).setValue(0, 1));
+        assertThrows(IllegalStateException.class, () -> factor.setTable(factor.getTable().copy()));
+        assertThrows(IllegalStateException.class, () -> factor.restrict(variable.getId(), 0));
+        assertThrows(UnsupportedOperationException.class, () -> factor.getVariablesMap().remove("A"));
+        assertThrows(IllegalStateException.class, () -> variable.addParent(snapshot.getVariableMap().get("M")));
+        assertThrows(IllegalStateException.class, () -> variable.addChild(snapshot.getVariableMap().get("M")));
+        assertThrows(IllegalStateException.class, snapshot::notifyFactorsChanged);
+    }
+}
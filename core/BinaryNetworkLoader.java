@@ -0,0 +1,272 @@
+package core;
+
+import inference.DenseFactor;
+import inference.Factor;
+import inference.Variable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * This class loads a Bayesian Network from the compact binary format written by {@link BinaryNetworkWriter}.
+ * The file is memory-mapped, and every CPT is a read-only view over its region of the mapping,
+ * so loading does not copy or parse the probabilities and the operating system pages them in on first use.
+ * A single mapping holds at most 2 GiB, so the probabilities are mapped in blocks of 2^BLOCK_SHIFT values:
+ * a CPT inside one block is a view over it, and a CPT that crosses blocks gets its own blocks, starting at its first value.
+ * <p>
+ * The format is little-endian:
+ * <pre>
+ * int    magic number "BNET" and format version
+ * int    number of names, then for each name its length in bytes and its UTF-8 bytes
+ * int    number of variables, then for each variable in id order:
+ *        the index of its name, its number of outcomes and the index of the name of each outcome
+ * int    number of CPTs, then for each CPT:
+ *        the id of its variable, the number of variables in its scope and their ids in scope order
+ * double the values of every CPT in row-major order, one after the other, starting at a multiple of 8 bytes
+ * </pre>
+ * Names are interned, so the outcome names shared by many variables are stored once.
+ */
+public class BinaryNetworkLoader {
+    public static final String FILE_EXTENSION = ".bnet"; // The extension of binary network files
+    static final int MAGIC = 0x424E4554; // "BNET"
+    static final int FORMAT_VERSION = 1; // The version of the format written and read by this class
+    static final int BLOCK_SHIFT = 27; // Base 2 logarithm of the number of values mapped at a time, 1 GiB of doubles
+
+    private final BayesianNetwork bayesianNetwork = new BayesianNetwork(); // The Bayesian Network
+
+    /**
+     * Gets the loaded Bayesian Network.
+     *
+     * @return the Bayesian Network
+     */
+    public BayesianNetwork getBayesianNetwork() {
+        return bayesianNetwork;
+    }
+
+    /**
+     * Loads the Bayesian network from a binary file.
+     *
+     * @param path the path to the binary file
+     */
+    public void loadBayesianNetwork(String path) {
+        loadBayesianNetwork(path, BLOCK_SHIFT);
+    }
+
+    /**
+     * Loads the Bayesian network from a binary file, mapping the probabilities in blocks of a given size.
+     *
+     * @param path       the path to the binary file
+     * @param blockShift the base 2 logarithm of the number of values mapped at a time, at most BLOCK_SHIFT
+     */
+    void loadBayesianNetwork(String path, int blockShift) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            // The mappings stay valid after the channel is closed, for as long as the CPTs reference them
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE))
+                                       .order(ByteOrder.LITTLE_ENDIAN);
+            load(channel, header, blockShift);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | ArithmeticException e) {
+            throw new RuntimeException("Error loading binary Bayesian Network file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the network from the file.
+     *
+     * @param channel    the open file
+     * @param mapping    the mapping of the start of the file
+     * @param blockShift the base 2 logarithm of the number of values mapped at a time
+     * @throws IOException if a block of probabilities cannot be mapped
+     */
+    private void load(FileChannel channel, ByteBuffer mapping, int blockShift) throws IOException {
+        if (mapping.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a binary Bayesian Network file");
+        }
+        int formatVersion = mapping.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + formatVersion);
+        }
+
+        String[] names = readNames(mapping);
+        Map<String, Variable> variablesMap = readVariables(mapping, names);
+        Variable[] variables = variablesMap.values().toArray(new Variable[0]);
+
+        int numFactors = readCount(mapping, 2 * Integer.BYTES, "CPTs");
+        Variable[] factorVariables = new Variable[numFactors];
+        Variable[][] scopes = new Variable[numFactors][];
+        for (int i = 0; i < numFactors; i++) {
+            factorVariables[i] = variables[readIndex(mapping, variables.length, "variable")];
+            scopes[i] = new Variable[readCount(mapping, Integer.BYTES, "scope variables")];
+            for (int j = 0; j < scopes[i].length; j++) {
+                scopes[i][j] = variables[readIndex(mapping, variables.length, "variable")];
+            }
+        }
+
+        long valuesStart = align(mapping.position());
+        long numValues = Math.max(0, (channel.size() - valuesStart) / Double.BYTES);
+        DoubleBuffer[] blocks = new DoubleBuffer[(int) ((numValues + (1L << blockShift) - 1) >>> blockShift)];
+        List<Factor> factorList = new ArrayList<>(numFactors);
+        long offset = 0;
+        for (int i = 0; i < numFactors; i++) {
+            for (Variable variable : scopes[i]) {
+                if (!variable.equals(factorVariables[i])) {
+                    factorVariables[i].addParent(variable);
+                    variable.addChild(factorVariables[i]);
+                }
+            }
+
+            int size = DenseFactor.tableSize(scopes[i]);
+            if (offset + size > numValues) {
+                throw new IllegalArgumentException("CPT of " + factorVariables[i].getName() + " is truncated");
+            }
+            DenseFactor table = mapTable(channel, blocks, valuesStart, numValues, offset, scopes[i], blockShift);
+            Map<String, Variable> scopeMap = new LinkedHashMap<>();
+            for (Variable variable : scopes[i]) {
+                scopeMap.putIfAbsent(variable.getName(), variable);
+            }
+            factorList.add(new Factor(factorVariables[i], scopeMap, table));
+            offset += size;
+        }
+
+        bayesianNetwork.setVariableMap(variablesMap);
+        bayesianNetwork.setFactorList(factorList);
+        bayesianNetwork.setRegistry(new VariableRegistry(variablesMap.values()));
+    }
+
+    /**
+     * Maps the table of a CPT. A table inside one block is a view over the block, which is mapped on first use,
+     * and a table that crosses blocks is mapped in blocks of its own.
+     *
+     * @param channel     the open file
+     * @param blocks      the blocks of probabilities mapped so far, null for the blocks not mapped yet
+     * @param valuesStart the position of the first probability in the file
+     * @param numValues   the number of probabilities in the file
+     * @param offset      the index of the first value of the table among the probabilities
+     * @param scope       the ordered scope of the table
+     * @param blockShift  the base 2 logarithm of the number of values of a block
+     * @return the read-only table
+     * @throws IOException if a block cannot be mapped
+     */
+    private static DenseFactor mapTable(FileChannel channel, DoubleBuffer[] blocks, long valuesStart, long numValues, long offset,
+                                        Variable[] scope, int blockShift) throws IOException {
+        int size = DenseFactor.tableSize(scope);
+        int block = (int) (offset >>> blockShift);
+        int start = (int) (offset & ((1L << blockShift) - 1));
+        if (start + (long) size <= 1L << blockShift) {
+            if (blocks[block] == null) {
+                long first = (long) block << blockShift;
+                blocks[block] = map(channel, valuesStart + first * Double.BYTES, (int) Math.min(1L << blockShift, numValues - first));
+            }
+            return new DenseFactor(scope, blocks[block].slice(start, size));
+        }
+
+        DoubleBuffer[] tableBlocks = new DoubleBuffer[(int) ((size + (1L << blockShift) - 1) >>> blockShift)];
+        for (int j = 0; j < tableBlocks.length; j++) {
+            long first = (long) j << blockShift;
+            tableBlocks[j] = map(channel, valuesStart + (offset + first) * Double.BYTES, (int) Math.min(1L << blockShift, size - first));
+        }
+        return new DenseFactor(scope, tableBlocks, blockShift);
+    }
+
+    /**
+     * Maps a read-only run of probabilities.
+     *
+     * @param channel  the open file
+     * @param position the position of the first probability in the file
+     * @param count    the number of probabilities
+     * @return the probabilities
+     * @throws IOException if the run cannot be mapped
+     */
+    private static DoubleBuffer map(FileChannel channel, long position, int count) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * Reads the number of entries of a list, each taking at least a given number of bytes of the rest of the file.
+     *
+     * @param mapping    the mapped file
+     * @param entryBytes the least number of bytes of an entry
+     * @param what       the name of the entries, for the error message
+     * @return the number of entries
+     */
+    private static int readCount(ByteBuffer mapping, int entryBytes, String what) {
+        int count = mapping.getInt();
+        if (count < 0 || count > mapping.remaining() / entryBytes) {
+            throw new IllegalArgumentException("corrupt number of " + what + ": " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads an index into a table of the file.
+     *
+     * @param mapping the mapped file
+     * @param length  the length of the table
+     * @param what    the name of the entries of the table, for the error message
+     * @return the index
+     */
+    private static int readIndex(ByteBuffer mapping, int length, String what) {
+        int index = mapping.getInt();
+        if (index < 0 || index >= length) {
+            throw new IllegalArgumentException("corrupt " + what + " index " + index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the table of interned names.
+     *
+     * @param mapping the mapped file
+     * @return the names, indexed by their position in the table
+     */
+    private String[] readNames(ByteBuffer mapping) {
+        String[] names = new String[readCount(mapping, Integer.BYTES, "names")];
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[readCount(mapping, 1, "name bytes")];
+            mapping.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    /**
+     * Reads the variables, in the order of their ids.
+     *
+     * @param mapping the mapped file
+     * @param names   the interned names
+     * @return the map of variable names to variables, in the order of their ids
+     */
+    private Map<String, Variable> readVariables(ByteBuffer mapping, String[] names) {
+        int numVariables = readCount(mapping, 2 * Integer.BYTES, "variables");
+        Map<String, Variable> variablesMap = new LinkedHashMap<>();
+        for (int id = 0; id < numVariables; id++) {
+            String name = names[readIndex(mapping, names.length, "name")];
+            List<String> outcomes = new ArrayList<>();
+            int numOutcomes = readCount(mapping, Integer.BYTES, "outcomes");
+            for (int j = 0; j < numOutcomes; j++) {
+                outcomes.add(names[readIndex(mapping, names.length, "name")]);
+            }
+            if (variablesMap.put(name, new Variable(id, name, outcomes)) != null) {
+                throw new IllegalArgumentException("duplicate variable " + name);
+            }
+        }
+        return variablesMap;
+    }
+
+    /**
+     * Rounds a position in the file up to the next multiple of the size of a double.
+     *
+     * @param position the position in bytes
+     * @return the aligned position
+     */
+    static long align(long position) {
+        return (position + Double.BYTES - 1) & -Double.BYTES;
+    }
+}
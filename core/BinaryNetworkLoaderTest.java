@@ -0,0 +1,167 @@
+package core;
+
+import inference.DenseFactor;
+import inference.Factor;
+import inference.Variable;
+import inference.VariableElimination;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryNetworkLoaderTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME><OUTCOME>U</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.8 0.1 0.1 0.05 0.9 0.05</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private static final String[] QUERIES = {"P(B=T|J=T,M=T) A-E", "P(J=U|B=F) A-E-M", "P(E=T|A=T) B-J-M", "P(M=T)"};
+
+    private Path directory;
+    private BayesianNetwork network;
+    private Path binaryFile;
+
+    @BeforeEach
+    public void writeAlarmNetwork(@TempDir Path directory) throws IOException {
+        this.directory = directory;
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork();
+        binaryFile = directory.resolve("alarm" + BinaryNetworkLoader.FILE_EXTENSION);
+        new BinaryNetworkWriter().write(network, binaryFile.toString());
+    }
+
+    private static BayesianNetwork load(Path path, int blockShift) {
+        BinaryNetworkLoader loader = new BinaryNetworkLoader();
+        loader.loadBayesianNetwork(path.toString(), blockShift);
+        return loader.getBayesianNetwork();
+    }
+
+    private static List<String> answer(BayesianNetwork network) {
+        List<String> results = new ArrayList<>();
+        for (String line : QUERIES) {
+            VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line));
+            ve.executeQuery();
+            results.add(ve.getResult());
+        }
+        return results;
+    }
+
+    private static List<String> names(List<Variable> variables) {
+        return variables.stream().map(Variable::getName).toList();
+    }
+
+    private void assertSameNetwork(BayesianNetwork loaded) {
+        assertEquals(List.copyOf(network.getVariableMap().keySet()), List.copyOf(loaded.getVariableMap().keySet()));
+        for (Variable variable : network.getVariableMap().values()) {
+            Variable loadedVariable = loaded.getVariableMap().get(variable.getName());
+            assertEquals(variable.getId(), loadedVariable.getId());
+            assertEquals(variable.getOutcomes(), loadedVariable.getOutcomes());
+            assertEquals(names(variable.getParents()), names(loadedVariable.getParents()));
+            assertEquals(names(variable.getChildren()), names(loadedVariable.getChildren()));
+        }
+
+        assertEquals(network.getFactorList().size(), loaded.getFactorList().size());
+        for (int i = 0; i < network.getFactorList().size(); i++) {
+            Factor factor = network.getFactorList().get(i);
+            Factor loadedFactor = loaded.getFactorList().get(i);
+            assertEquals(factor.getParentVariable().getName(), loadedFactor.getParentVariable().getName());
+            assertEquals(List.copyOf(factor.getVariablesMap().keySet()), List.copyOf(loadedFactor.getVariablesMap().keySet()));
+            assertArrayEquals(factor.getTable().getScope(), loadedFactor.getTable().getScope());
+            assertArrayEquals(values(factor.getTable()), values(loadedFactor.getTable()));
+            assertTrue(loadedFactor.getTable().isReadOnly());
+        }
+        assertEquals(answer(network), answer(loaded));
+    }
+
+    private static double[] values(DenseFactor table) {
+        double[] values = new double[table.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = table.getValue(i);
+        }
+        return values;
+    }
+
+    private Path writeCopy(byte[] bytes) throws IOException {
+        Path copy = Files.createTempFile(directory, "copy", BinaryNetworkLoader.FILE_EXTENSION);
+        Files.write(copy, bytes);
+        return copy;
+    }
+
+    @Test
+    public void testLoadedNetworkEqualsTheXmlNetwork() {
+        assertSameNetwork(load(binaryFile, BinaryNetworkLoader.BLOCK_SHIFT));
+    }
+
+    @Test
+    public void testTablesAcrossBlocksAreMappedInBlocks() {
+        // Blocks of 4 values: B and E share the first block, A crosses two blocks and J crosses a block boundary
+        BayesianNetwork loaded = load(binaryFile, 2);
+
+        assertSameNetwork(loaded);
+        assertTrue(loaded.getFactorList().get(2).getTable().isBuffered());
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(binaryFile);
+        for (int length = 0; length < bytes.length; length++) {
+            Path truncated = writeCopy(Arrays.copyOf(bytes, length));
+            assertThrows(RuntimeException.class, () -> load(truncated, BinaryNetworkLoader.BLOCK_SHIFT), "length " + length);
+        }
+    }
+
+    @Test
+    public void testCorruptHeaderIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(binaryFile);
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int variablesPosition = 3 * Integer.BYTES;
+        for (int i = 0; i < header.getInt(2 * Integer.BYTES); i++) {
+            variablesPosition += Integer.BYTES + header.getInt(variablesPosition);
+        }
+
+        int[][] corruptions = {
+                {0, 0x12345678}, // Magic number
+                {Integer.BYTES, BinaryNetworkLoader.FORMAT_VERSION + 1}, // Format version
+                {2 * Integer.BYTES, -1}, // Number of names
+                {2 * Integer.BYTES, 1_000_000}, // Number of names larger than the file
+                {3 * Integer.BYTES, Integer.MAX_VALUE}, // Length of the first name
+                {variablesPosition, Integer.MAX_VALUE}, // Number of variables
+                {variablesPosition + Integer.BYTES, 999}, // Index of the name of the first variable
+        };
+        for (int[] corruption : corruptions) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(corruption[0], corruption[1]);
+            Path corruptFile = writeCopy(corrupt);
+            RuntimeException e = assertThrows(RuntimeException.class, () -> load(corruptFile, BinaryNetworkLoader.BLOCK_SHIFT));
+            assertTrue(e.getMessage().startsWith("Error loading binary Bayesian Network file"), e.getMessage());
+        }
+    }
+}
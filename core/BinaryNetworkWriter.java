@@ -0,0 +1,172 @@
+package core;
+
+import inference.DenseFactor;
+import inference.Factor;
+import inference.Variable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * This class writes a Bayesian Network in the compact binary format read by {@link BinaryNetworkLoader},
+ * and converts network XML files to that format from the command line:
+ * <pre>
+ * java core.BinaryNetworkWriter network.xml network.bnet
+ * </pre>
+ */
+public class BinaryNetworkWriter {
+    private static final int BUFFER_SIZE = 1 << 16; // The number of bytes written to the file at a time
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN); // Bytes waiting to be written
+    private long position; // The number of bytes written or buffered so far
+
+    /**
+     * Converts a network XML file to the binary format.
+     *
+     * @param args the path to the XML file and the path to the binary file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java core.BinaryNetworkWriter <network.xml> <network" + BinaryNetworkLoader.FILE_EXTENSION + ">");
+            System.exit(1);
+        }
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(args[0]);
+        new BinaryNetworkWriter().write(parser.getBayesianNetwork(), args[1]);
+    }
+
+    /**
+     * Writes a Bayesian Network to a binary file.
+     *
+     * @param network the Bayesian Network
+     * @param path    the path to the binary file
+     */
+    public void write(BayesianNetwork network, String path) {
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            position = 0;
+            VariableRegistry registry = network.getRegistry();
+
+            putInt(channel, BinaryNetworkLoader.MAGIC);
+            putInt(channel, BinaryNetworkLoader.FORMAT_VERSION);
+            Map<String, Integer> nameIndexes = writeNames(channel, registry);
+
+            putInt(channel, registry.size());
+            for (int id = 0; id < registry.size(); id++) {
+                Variable variable = registry.getVariable(id);
+                putInt(channel, nameIndexes.get(variable.getName()));
+                putInt(channel, variable.getCardinality());
+                for (String outcome : variable.getOutcomes()) {
+                    putInt(channel, nameIndexes.get(outcome));
+                }
+            }
+
+            List<Factor> factorList = network.getFactorList();
+            putInt(channel, factorList.size());
+            for (Factor factor : factorList) {
+                putInt(channel, factor.getParentVariable().getId());
+                int[] scope = factor.getTable().getScope();
+                putInt(channel, scope.length);
+                for (int variableId : scope) {
+                    putInt(channel, variableId);
+                }
+            }
+
+            while (position != BinaryNetworkLoader.align(position)) {
+                ensureCapacity(channel, 1);
+                buffer.put((byte) 0);
+                position++;
+            }
+            for (Factor factor : factorList) {
+                DenseFactor table = factor.getTable().isContiguous() ? factor.getTable() : factor.getTable().copy();
+                for (int i = 0; i < table.size(); i++) {
+                    ensureCapacity(channel, Double.BYTES);
+                    buffer.putDouble(table.getValue(i));
+                    position += Double.BYTES;
+                }
+            }
+            flush(channel);
+
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing binary Bayesian Network file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the table of interned names: the names of the variables and of their outcomes, each one once.
+     *
+     * @param channel  the file
+     * @param registry the registry of the variables
+     * @return the index of each name in the table
+     * @throws IOException if the file cannot be written
+     */
+    private Map<String, Integer> writeNames(FileChannel channel, VariableRegistry registry) throws IOException {
+        Map<String, Integer> nameIndexes = new LinkedHashMap<>();
+        for (int id = 0; id < registry.size(); id++) {
+            Variable variable = registry.getVariable(id);
+            nameIndexes.putIfAbsent(variable.getName(), nameIndexes.size());
+            for (String outcome : variable.getOutcomes()) {
+                nameIndexes.putIfAbsent(outcome, nameIndexes.size());
+            }
+        }
+
+        putInt(channel, nameIndexes.size());
+        for (String name : nameIndexes.keySet()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            putInt(channel, bytes.length);
+            for (byte b : bytes) {
+                ensureCapacity(channel, 1);
+                buffer.put(b);
+            }
+            position += bytes.length;
+        }
+        return nameIndexes;
+    }
+
+    /**
+     * Writes an int.
+     *
+     * @param channel the file
+     * @param value   the int
+     * @throws IOException if the file cannot be written
+     */
+    private void putInt(FileChannel channel, int value) throws IOException {
+        ensureCapacity(channel, Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    /**
+     * Makes room in the buffer, writing it to the file if needed.
+     *
+     * @param channel the file
+     * @param bytes   the number of bytes to make room for
+     * @throws IOException if the file cannot be written
+     */
+    private void ensureCapacity(FileChannel channel, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the file.
+     *
+     * @param channel the file
+     * @throws IOException if the file cannot be written
+     */
+    private void flush(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,278 @@
+package core;
+
+import inference.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the compiled directed acyclic graph of a Bayesian Network.
+ * The variables are numbered by dense indexes, the parents and children of every variable are int arrays,
+ * and the parents, ancestors and descendants of every variable are bitsets computed once, so membership checks
+ * take constant time and sets of variables are combined a word at a time.
+ * For the graph of a network the index of a variable is its id in the registry.
+ */
+public class NetworkGraph {
+    private final Variable[] variables; // The variables, indexed by their index in the graph
+    private final Map<Variable, Integer> indexMap; // The index of each variable
+    private final int[][] parents; // The indexes of the parents of each variable
+    private final int[][] children; // The indexes of the children of each variable
+    private final BitSet[] parentSets; // The parents of each variable as a set
+    private final int[] topologicalOrder; // The indexes of the variables, every parent before its children
+    private final BitSet[] ancestors; // The strict ancestors of each variable
+    private final BitSet[] descendants; // The strict descendants of each variable
+    private final int numEdges; // The number of edges of the graph
+
+    /**
+     * Constructor for the graph of a network, where the index of every variable is its id.
+     *
+     * @param registry the registry of the variables of the network
+     */
+    public NetworkGraph(VariableRegistry registry) {
+        this(registryVariables(registry));
+    }
+
+    /**
+     * Constructor for the graph of the given variables, indexed by their position in the array.
+     * The parents and children of every variable must be in the array.
+     *
+     * @param variables the variables
+     */
+    private NetworkGraph(Variable[] variables) {
+        this.variables = variables;
+        this.indexMap = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            indexMap.put(variables[i], i);
+        }
+
+        this.parents = new int[variables.length][];
+        this.children = new int[variables.length][];
+        this.parentSets = new BitSet[variables.length];
+        int edges = 0;
+        for (int i = 0; i < variables.length; i++) {
+            parents[i] = variables[i].getParents().stream().mapToInt(indexMap::get).toArray();
+            children[i] = variables[i].getChildren().stream().mapToInt(indexMap::get).toArray();
+            parentSets[i] = new BitSet(variables.length);
+            for (int parent : parents[i]) {
+                parentSets[i].set(parent);
+            }
+            edges += parents[i].length;
+        }
+        this.numEdges = edges;
+
+        this.topologicalOrder = sortTopologically();
+        this.ancestors = new BitSet[variables.length];
+        for (int variable : topologicalOrder) {
+            ancestors[variable] = new BitSet(variables.length);
+            for (int parent : parents[variable]) {
+                ancestors[variable].or(ancestors[parent]);
+                ancestors[variable].set(parent);
+            }
+        }
+        this.descendants = new BitSet[variables.length];
+        for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            int variable = topologicalOrder[i];
+            descendants[variable] = new BitSet(variables.length);
+            for (int child : children[variable]) {
+                descendants[variable].or(descendants[child]);
+                descendants[variable].set(child);
+            }
+        }
+    }
+
+    /**
+     * Compiles the graph of the variables connected to the given ones, for variables that are not in a registry.
+     * The variables are indexed in the order they are found.
+     *
+     * @param startVariables the variables to start from
+     * @return the graph of the connected component of the variables
+     */
+    public static NetworkGraph ofComponent(Collection<Variable> startVariables) {
+        Map<Variable, Integer> found = new HashMap<>();
+        List<Variable> component = new ArrayList<>();
+        Deque<Variable> stack = new ArrayDeque<>();
+        for (Variable startVariable : startVariables) {
+            if (startVariable != null && found.putIfAbsent(startVariable, component.size()) == null) {
+                component.add(startVariable);
+                stack.push(startVariable);
+            }
+        }
+        while (!stack.isEmpty()) {
+            Variable variable = stack.pop();
+            List<Variable> neighbors = new ArrayList<>(variable.getParents());
+            neighbors.addAll(variable.getChildren());
+            for (Variable neighbor : neighbors) {
+                if (found.putIfAbsent(neighbor, component.size()) == null) {
+                    component.add(neighbor);
+                    stack.push(neighbor);
+                }
+            }
+        }
+        return new NetworkGraph(component.toArray(new Variable[0]));
+    }
+
+    /**
+     * Gets the number of variables in the graph.
+     *
+     * @return the number of variables
+     */
+    public int size() {
+        return this.variables.length;
+    }
+
+    /**
+     * Gets the number of edges in the graph.
+     *
+     * @return the number of edges
+     */
+    public int getNumEdges() {
+        return this.numEdges;
+    }
+
+    /**
+     * Gets the variable at the given index.
+     *
+     * @param index the index of the variable
+     * @return the variable
+     */
+    public Variable getVariable(int index) {
+        return this.variables[index];
+    }
+
+    /**
+     * Gets the index of a variable in the graph.
+     *
+     * @param variable the variable
+     * @return the index of the variable, or -1 if it is not in the graph
+     */
+    public int indexOf(Variable variable) {
+        return this.indexMap.getOrDefault(variable, -1);
+    }
+
+    /**
+     * Gets the parents of a variable.
+     *
+     * @param index the index of the variable
+     * @return the indexes of the parents
+     */
+    public int[] getParents(int index) {
+        return this.parents[index];
+    }
+
+    /**
+     * Gets the children of a variable.
+     *
+     * @param index the index of the variable
+     * @return the indexes of the children
+     */
+    public int[] getChildren(int index) {
+        return this.children[index];
+    }
+
+    /**
+     * Checks if a variable is a parent of another variable.
+     *
+     * @param parent the index of the candidate parent
+     * @param child  the index of the candidate child
+     * @return true if there is an edge from the parent to the child, false otherwise
+     */
+    public boolean isParentOf(int parent, int child) {
+        return this.parentSets[child].get(parent);
+    }
+
+    /**
+     * Gets the variables ordered so that every parent comes before its children.
+     *
+     * @return the indexes of the variables in topological order
+     */
+    public int[] getTopologicalOrder() {
+        return this.topologicalOrder;
+    }
+
+    /**
+     * Gets the strict ancestors of a variable. The set is shared and must not be modified.
+     *
+     * @param index the index of the variable
+     * @return the ancestors of the variable
+     */
+    public BitSet getAncestors(int index) {
+        return this.ancestors[index];
+    }
+
+    /**
+     * Gets the strict descendants of a variable. The set is shared and must not be modified.
+     *
+     * @param index the index of the variable
+     * @return the descendants of the variable
+     */
+    public BitSet getDescendants(int index) {
+        return this.descendants[index];
+    }
+
+    /**
+     * Finds the given variables together with all their ancestors.
+     *
+     * @param indexes the indexes of the variables
+     * @return a new set holding the variables and their ancestors
+     */
+    public BitSet getAncestralSet(int... indexes) {
+        BitSet ancestralSet = new BitSet(variables.length);
+        for (int index : indexes) {
+            ancestralSet.set(index);
+            ancestralSet.or(ancestors[index]);
+        }
+        return ancestralSet;
+    }
+
+    /**
+     * Orders the variables with Kahn's algorithm.
+     *
+     * @return the indexes of the variables in topological order
+     */
+    private int[] sortTopologically() {
+        int[] inDegrees = new int[variables.length];
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < variables.length; i++) {
+            inDegrees[i] = parents[i].length;
+            if (inDegrees[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int[] order = new int[variables.length];
+        int count = 0;
+        while (!ready.isEmpty()) {
+            int variable = ready.poll();
+            order[count++] = variable;
+            for (int child : children[variable]) {
+                if (--inDegrees[child] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (count != variables.length) {
+            throw new IllegalArgumentException("The Bayesian Network has a directed cycle");
+        }
+        return order;
+    }
+
+    /**
+     * Gets the variables of a registry in the order of their ids.
+     *
+     * @param registry the registry
+     * @return the variables, indexed by id
+     */
+    private static Variable[] registryVariables(VariableRegistry registry) {
+        Variable[] variables = new Variable[registry.size()];
+        for (int id = 0; id < variables.length; id++) {
+            variables[id] = registry.getVariable(id);
+        }
+        return variables;
+    }
+}
@@ -0,0 +1,89 @@
+package core;
+
+import inference.Variable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class interns the variables of a Bayesian Network as dense integer ids.
+ * The id of a variable is its index in the registry, and the outcomes of a variable are identified
+ * by their index in its list of outcomes. Names are only needed when parsing and printing.
+ */
+public class VariableRegistry {
+    private final Variable[] variables; // The variables, indexed by their id
+    private final int[] cardinalities; // The number of outcomes of each variable, indexed by id
+    private final Map<String, Integer> idMap; // Map of variable names to their ids
+
+    /**
+     * Constructor for the VariableRegistry class.
+     * The id of every variable must be its position in the given collection.
+     *
+     * @param variables the variables of the network, in the order of their ids
+     */
+    public VariableRegistry(Collection<Variable> variables) {
+        this.variables = variables.toArray(new Variable[0]);
+        this.cardinalities = new int[this.variables.length];
+        this.idMap = new HashMap<>();
+
+        for (int i = 0; i < this.variables.length; i++) {
+            if (this.variables[i].getId() != i) {
+                throw new IllegalArgumentException("Variable " + this.variables[i].getName() + " has id "
+                                                           + this.variables[i].getId() + " but is registered at " + i);
+            }
+            this.cardinalities[i] = this.variables[i].getCardinality();
+            this.idMap.put(this.variables[i].getName(), i);
+        }
+    }
+
+    /**
+     * Gets the number of variables in the registry.
+     *
+     * @return the number of variables
+     */
+    public int size() {
+        return this.variables.length;
+    }
+
+    /**
+     * Gets the id of a variable.
+     *
+     * @param name the name of the variable
+     * @return the id of the variable, or -1 if there is no such variable
+     */
+    public int getId(String name) {
+        return this.idMap.getOrDefault(name, -1);
+    }
+
+    /**
+     * Gets the variable with the given id.
+     *
+     * @param id the id of the variable
+     * @return the variable
+     */
+    public Variable getVariable(int id) {
+        return this.variables[id];
+    }
+
+    /**
+     * Gets the number of outcomes of the variable with the given id.
+     *
+     * @param id the id of the variable
+     * @return the number of outcomes
+     */
+    public int getCardinality(int id) {
+        return this.cardinalities[id];
+    }
+
+    /**
+     * Gets the index of an outcome of the variable with the given id.
+     *
+     * @param id      the id of the variable
+     * @param outcome the outcome
+     * @return the index of the outcome, or -1 if it is not an outcome of the variable
+     */
+    public int getOutcomeIndex(int id, String outcome) {
+        return this.variables[id].getOutcomeIndex(outcome);
+    }
+}
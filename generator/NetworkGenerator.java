@@ -0,0 +1,459 @@
+package generator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class generates random Bayesian Networks of controlled size, and random query files for them,
+ * for load and scaling tests. Everything is drawn from one seeded random generator, so the same seed and settings
+ * always produce the same files.
+ * <p>
+ * The variables are named V0, V1, ... and their outcomes s0, s1, .... When a treewidth target is set, the network
+ * is built on a random partial k-tree: the parents of every variable are taken from one k-clique of the k-tree,
+ * so the moral graph of the network is a subgraph of the k-tree and its treewidth is at most k.
+ * The evidence of the generated queries comes from a forward sample of the network, so it never has
+ * probability zero, even in sparse CPTs.
+ * <p>
+ * The generator can also be run from the command line, writing {@code <prefix>.xml} and {@code <prefix>.txt}:
+ * <pre>
+ * java generator.NetworkGenerator [--seed=N] [--variables=N] [--max-parents=N] [--cardinality=N] [--treewidth=N]
+ *                                 [--sparsity=X] [--max-evidence=N] [--queries=N] [--independence-queries=N]
+ *                                 [--elimination-orders] &lt;prefix&gt;
+ * </pre>
+ */
+public class NetworkGenerator {
+    private final Random random; // The source of all the randomness of the generator
+    private int numVariables = 20; // The number of variables of the network
+    private int maxParents = 3; // The maximum number of parents of a variable
+    private int cardinality = 2; // The number of outcomes of every variable
+    private int treewidth = 0; // The bound on the treewidth of the network, 0 for no bound
+    private double sparsity = 0; // The probability that an entry of a CPT is zero
+    private int maxEvidence = 3; // The maximum number of evidence variables of a query
+    private boolean eliminationOrders = false; // True to write a random elimination order after every probabilistic query
+    private int[][] parents; // The parents of each variable of the generated network, or null before it is generated
+    private double[][] tables; // The CPT of each variable, in the row-major order of the TABLE element
+
+    /**
+     * Constructor for NetworkGenerator.
+     *
+     * @param seed the seed of the random generator
+     */
+    public NetworkGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the number of variables of the network.
+     *
+     * @param numVariables the number of variables, at least 1
+     */
+    public void setNumVariables(int numVariables) {
+        if (numVariables < 1) {
+            throw new IllegalArgumentException("A network needs at least one variable");
+        }
+        this.numVariables = numVariables;
+    }
+
+    /**
+     * Sets the maximum number of parents of a variable.
+     *
+     * @param maxParents the maximum in-degree
+     */
+    public void setMaxParents(int maxParents) {
+        if (maxParents < 0) {
+            throw new IllegalArgumentException("The maximum number of parents cannot be negative");
+        }
+        this.maxParents = maxParents;
+    }
+
+    /**
+     * Sets the number of outcomes of every variable.
+     *
+     * @param cardinality the number of outcomes, at least 2
+     */
+    public void setCardinality(int cardinality) {
+        if (cardinality < 2) {
+            throw new IllegalArgumentException("A variable needs at least two outcomes");
+        }
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Sets the bound on the treewidth of the network.
+     * The number of parents of a variable is also bounded by the treewidth.
+     *
+     * @param treewidth the treewidth target, or 0 to choose parents among all the previous variables
+     */
+    public void setTreewidth(int treewidth) {
+        if (treewidth < 0) {
+            throw new IllegalArgumentException("The treewidth cannot be negative");
+        }
+        this.treewidth = treewidth;
+    }
+
+    /**
+     * Sets the sparsity of the CPTs. Every row of a CPT keeps at least one non-zero entry.
+     *
+     * @param sparsity the probability that an entry of a CPT is zero, in [0, 1)
+     */
+    public void setSparsity(double sparsity) {
+        if (sparsity < 0 || sparsity >= 1) {
+            throw new IllegalArgumentException("The sparsity must be in [0, 1)");
+        }
+        this.sparsity = sparsity;
+    }
+
+    /**
+     * Sets the maximum number of evidence variables of a query.
+     *
+     * @param maxEvidence the maximum number of evidence variables
+     */
+    public void setMaxEvidence(int maxEvidence) {
+        if (maxEvidence < 0) {
+            throw new IllegalArgumentException("The maximum number of evidence variables cannot be negative");
+        }
+        this.maxEvidence = maxEvidence;
+    }
+
+    /**
+     * Sets whether probabilistic queries are followed by an elimination order.
+     * Without one, variable elimination plans the order itself.
+     *
+     * @param eliminationOrders true to write a random order of the hidden variables after every probabilistic query
+     */
+    public void setEliminationOrders(boolean eliminationOrders) {
+        this.eliminationOrders = eliminationOrders;
+    }
+
+    /**
+     * Generates the structure and the CPTs of a new network with the current settings.
+     */
+    public void generate() {
+        parents = new int[numVariables][];
+        tables = new double[numVariables][];
+        List<int[]> cliques = new ArrayList<>(); // The k-cliques of the partial k-tree a new variable can attach to
+
+        for (int variable = 0; variable < numVariables; variable++) {
+            int[] candidates;
+            if (treewidth == 0) {
+                candidates = range(0, variable);
+            } else if (variable <= treewidth) {
+                // The first k+1 variables form the initial clique of the k-tree, whose k-cliques are its k-subsets
+                candidates = range(0, variable);
+                if (variable == treewidth) {
+                    for (int removed = 0; removed <= variable; removed++) {
+                        int[] clique = range(0, variable);
+                        if (removed < variable) {
+                            clique[removed] = variable;
+                        }
+                        cliques.add(clique);
+                    }
+                }
+            } else {
+                candidates = cliques.get(random.nextInt(cliques.size()));
+                for (int removed = 0; removed < candidates.length; removed++) {
+                    int[] clique = Arrays.copyOf(candidates, candidates.length);
+                    clique[removed] = variable;
+                    cliques.add(clique);
+                }
+            }
+
+            int numParents = random.nextInt(Math.min(maxParents, candidates.length) + 1);
+            parents[variable] = pick(candidates, numParents);
+            Arrays.sort(parents[variable]);
+            int numRows = 1;
+            for (int i = 0; i < numParents; i++) {
+                numRows = Math.multiplyExact(numRows, cardinality);
+            }
+            tables[variable] = generateTable(numRows);
+        }
+    }
+
+    /**
+     * Writes the generated network in the XML format read by the network parser.
+     *
+     * @param xmlPath the path to the XML file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeNetwork(String xmlPath) throws IOException {
+        checkGenerated();
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(xmlPath))) {
+            writer.write("<NETWORK>\n");
+            for (int variable = 0; variable < numVariables; variable++) {
+                writer.write("<VARIABLE>\n<NAME>" + name(variable) + "</NAME>\n");
+                for (int outcome = 0; outcome < cardinality; outcome++) {
+                    writer.write("<OUTCOME>" + outcome(outcome) + "</OUTCOME>\n");
+                }
+                writer.write("</VARIABLE>\n");
+            }
+
+            for (int variable = 0; variable < numVariables; variable++) {
+                writer.write("<DEFINITION>\n<FOR>" + name(variable) + "</FOR>\n");
+                for (int parent : parents[variable]) {
+                    writer.write("<GIVEN>" + name(parent) + "</GIVEN>\n");
+                }
+                writer.write("<TABLE>");
+                for (int i = 0; i < tables[variable].length; i++) {
+                    writer.write((i == 0 ? "" : " ") + tables[variable][i]);
+                }
+                writer.write("</TABLE>\n</DEFINITION>\n");
+            }
+            writer.write("</NETWORK>\n");
+        }
+    }
+
+    /**
+     * Writes a query file for the generated network in the input format of Main: the path to the network
+     * on the first line, then the probabilistic queries, then the independence queries.
+     *
+     * @param networkPath            the path to the network written on the first line
+     * @param queryPath              the path to the query file
+     * @param numProbabilityQueries  the number of probabilistic queries
+     * @param numIndependenceQueries the number of Bayes-Ball independence queries
+     * @throws IOException if the file cannot be written
+     */
+    public void writeQueries(String networkPath, String queryPath, int numProbabilityQueries, int numIndependenceQueries) throws IOException {
+        checkGenerated();
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(queryPath))) {
+            writer.write(networkPath + "\n");
+            for (String query : generateProbabilityQueries(numProbabilityQueries)) {
+                writer.write(query + "\n");
+            }
+            for (String query : generateIndependenceQueries(numIndependenceQueries)) {
+                writer.write(query + "\n");
+            }
+        }
+    }
+
+    /**
+     * Generates probabilistic query lines for the generated network.
+     *
+     * @param numQueries the number of queries
+     * @return the query lines
+     */
+    public List<String> generateProbabilityQueries(int numQueries) {
+        checkGenerated();
+        List<String> queries = new ArrayList<>(numQueries);
+        for (int i = 0; i < numQueries; i++) {
+            int[] sample = sample();
+            int[] variables = pick(range(0, numVariables), Math.min(numVariables, 1 + random.nextInt(maxEvidence + 1)));
+            StringBuilder query = new StringBuilder("P(").append(name(variables[0])).append('=').append(outcome(random.nextInt(cardinality)));
+            for (int j = 1; j < variables.length; j++) {
+                query.append(j == 1 ? '|' : ',').append(name(variables[j])).append('=').append(outcome(sample[variables[j]]));
+            }
+            query.append(')');
+
+            if (eliminationOrders) {
+                boolean[] observed = new boolean[numVariables];
+                for (int variable : variables) {
+                    observed[variable] = true;
+                }
+                List<String> hidden = new ArrayList<>();
+                for (int variable : pick(range(0, numVariables), numVariables)) {
+                    if (!observed[variable]) {
+                        hidden.add(name(variable));
+                    }
+                }
+                query.append(' ').append(String.join("-", hidden));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Generates Bayes-Ball independence query lines for the generated network.
+     *
+     * @param numQueries the number of queries
+     * @return the query lines
+     */
+    public List<String> generateIndependenceQueries(int numQueries) {
+        checkGenerated();
+        if (numQueries > 0 && numVariables < 2) {
+            throw new IllegalStateException("An independence query needs at least two variables");
+        }
+        List<String> queries = new ArrayList<>(numQueries);
+        for (int i = 0; i < numQueries; i++) {
+            int[] sample = sample();
+            int[] variables = pick(range(0, numVariables), Math.min(numVariables, 2 + random.nextInt(maxEvidence + 1)));
+            StringBuilder query = new StringBuilder(name(variables[0])).append('-').append(name(variables[1])).append('|');
+            for (int j = 2; j < variables.length; j++) {
+                query.append(j == 2 ? "" : ",").append(name(variables[j])).append('=').append(outcome(sample[variables[j]]));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Generates the CPT of a variable. Every row is a random distribution over the outcomes,
+     * with each entry zero with the probability given by the sparsity.
+     *
+     * @param numRows the number of rows of the CPT, one for each assignment of the parents
+     * @return the CPT in row-major order
+     */
+    private double[] generateTable(int numRows) {
+        double[] table = new double[numRows * cardinality];
+        double[] weights = new double[cardinality];
+        for (int row = 0; row < numRows; row++) {
+            double total = 0;
+            for (int outcome = 0; outcome < cardinality; outcome++) {
+                weights[outcome] = random.nextDouble() < sparsity ? 0 : random.nextDouble() + 0.01;
+                total += weights[outcome];
+            }
+            if (total == 0) {
+                int kept = random.nextInt(cardinality);
+                weights[kept] = 1;
+                total = 1;
+            }
+            for (int outcome = 0; outcome < cardinality; outcome++) {
+                table[row * cardinality + outcome] = weights[outcome] / total;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Draws one assignment of all the variables from the network. The variables are numbered in topological order,
+     * since every parent comes before its children.
+     *
+     * @return the outcome index of each variable
+     */
+    private int[] sample() {
+        int[] sample = new int[numVariables];
+        for (int variable = 0; variable < numVariables; variable++) {
+            int row = 0;
+            for (int parent : parents[variable]) {
+                row = row * cardinality + sample[parent];
+            }
+            double threshold = random.nextDouble();
+            int outcome = 0;
+            double cumulative = tables[variable][row * cardinality];
+            while (cumulative <= threshold && outcome < cardinality - 1) {
+                outcome++;
+                cumulative += tables[variable][row * cardinality + outcome];
+            }
+            // Rounding can leave the threshold above the last non-zero outcome, which must never be sampled
+            while (tables[variable][row * cardinality + outcome] == 0) {
+                outcome--;
+            }
+            sample[variable] = outcome;
+        }
+        return sample;
+    }
+
+    /**
+     * Picks distinct elements of an array at random, with a partial Fisher-Yates shuffle of a copy.
+     *
+     * @param elements the elements
+     * @param count    the number of elements to pick
+     * @return the picked elements, in the order they were picked
+     */
+    private int[] pick(int[] elements, int count) {
+        int[] shuffled = Arrays.copyOf(elements, elements.length);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(shuffled.length - i);
+            int swapped = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swapped;
+        }
+        return Arrays.copyOf(shuffled, count);
+    }
+
+    /**
+     * Creates the array of the integers in a range.
+     *
+     * @param from the first integer, inclusive
+     * @param to   the last integer, exclusive
+     * @return the integers from the first to the last
+     */
+    private static int[] range(int from, int to) {
+        int[] range = new int[to - from];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = from + i;
+        }
+        return range;
+    }
+
+    /**
+     * Gets the name of a variable.
+     *
+     * @param variable the index of the variable
+     * @return the name of the variable
+     */
+    private static String name(int variable) {
+        return "V" + variable;
+    }
+
+    /**
+     * Gets the name of an outcome.
+     *
+     * @param outcome the index of the outcome
+     * @return the name of the outcome
+     */
+    private static String outcome(int outcome) {
+        return "s" + outcome;
+    }
+
+    /**
+     * Throws if no network was generated yet.
+     */
+    private void checkGenerated() {
+        if (parents == null) {
+            throw new IllegalStateException("No network was generated yet");
+        }
+    }
+
+    /**
+     * Generates a network and a query file from the command line options.
+     *
+     * @param args the options, followed by the prefix of the files to write
+     * @throws IOException if the files cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[args.length - 1].startsWith("--")) {
+            System.err.println("Usage: java generator.NetworkGenerator [--seed=N] [--variables=N] [--max-parents=N] [--cardinality=N]"
+                                       + " [--treewidth=N] [--sparsity=X] [--max-evidence=N] [--queries=N] [--independence-queries=N]"
+                                       + " [--elimination-orders] <prefix>");
+            System.exit(1);
+        }
+
+        String prefix = args[args.length - 1];
+        NetworkGenerator generator = new NetworkGenerator(Long.parseLong(option(args, "seed", "1")));
+        generator.setNumVariables(Integer.parseInt(option(args, "variables", "20")));
+        generator.setMaxParents(Integer.parseInt(option(args, "max-parents", "3")));
+        generator.setCardinality(Integer.parseInt(option(args, "cardinality", "2")));
+        generator.setTreewidth(Integer.parseInt(option(args, "treewidth", "0")));
+        generator.setSparsity(Double.parseDouble(option(args, "sparsity", "0")));
+        generator.setMaxEvidence(Integer.parseInt(option(args, "max-evidence", "3")));
+        generator.setEliminationOrders(Arrays.asList(args).contains("--elimination-orders"));
+
+        generator.generate();
+        generator.writeNetwork(prefix + ".xml");
+        generator.writeQueries(Path.of(prefix + ".xml").getFileName().toString(), prefix + ".txt",
+                               Integer.parseInt(option(args, "queries", "10")),
+                               Integer.parseInt(option(args, "independence-queries", "10")));
+    }
+
+    /**
+     * Gets the value of a command line option of the form --name=value.
+     *
+     * @param args         the command line arguments
+     * @param name         the name of the option
+     * @param defaultValue the value when the option is not given
+     * @return the value of the option
+     */
+    private static String option(String[] args, String name, String defaultValue) {
+        return Arrays.stream(args)
+                     .filter(arg -> arg.startsWith("--" + name + "="))
+                     .map(arg -> arg.substring(name.length() + 3))
+                     .findFirst()
+                     .orElse(defaultValue);
+    }
+}
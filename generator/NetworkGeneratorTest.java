@@ -0,0 +1,129 @@
+package generator;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import inference.Variable;
+import inference.VariableElimination;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NetworkGeneratorTest {
+
+    private static final int TREEWIDTH = 3;
+
+    private Path directory;
+
+    @BeforeEach
+    public void setDirectory(@TempDir Path directory) {
+        this.directory = directory;
+    }
+
+    private static NetworkGenerator generator(long seed) {
+        NetworkGenerator generator = new NetworkGenerator(seed);
+        generator.setNumVariables(60);
+        generator.setMaxParents(4);
+        generator.setCardinality(3);
+        generator.setTreewidth(TREEWIDTH);
+        generator.setSparsity(0.5);
+        generator.setMaxEvidence(4);
+        generator.generate();
+        return generator;
+    }
+
+    private List<String> write(NetworkGenerator generator, String prefix) throws IOException {
+        Path networkFile = directory.resolve(prefix + ".xml");
+        Path queryFile = directory.resolve(prefix + ".txt");
+        generator.writeNetwork(networkFile.toString());
+        generator.writeQueries("network.xml", queryFile.toString(), 50, 20);
+        return List.of(Files.readString(networkFile), Files.readString(queryFile));
+    }
+
+    private BayesianNetwork parse(NetworkGenerator generator) throws IOException {
+        Path networkFile = Files.createTempFile(directory, "network", ".xml");
+        generator.writeNetwork(networkFile.toString());
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        return parser.getBayesianNetwork();
+    }
+
+    @Test
+    public void testSameSeedGivesTheSameFiles() throws IOException {
+        List<String> first = write(generator(7), "first");
+
+        assertEquals(first, write(generator(7), "second"));
+        assertNotEquals(first, write(generator(8), "third"));
+    }
+
+    @Test
+    public void testTreewidthIsBounded() throws IOException {
+        BayesianNetwork network = parse(generator(7));
+        List<Variable> variables = new ArrayList<>(network.getVariableMap().values());
+
+        // The moral graph of the network
+        List<Set<Integer>> neighbors = new ArrayList<>();
+        for (int i = 0; i < variables.size(); i++) {
+            neighbors.add(new HashSet<>());
+        }
+        for (Variable variable : variables) {
+            List<Variable> parents = variable.getParents();
+            assertTrue(parents.size() <= TREEWIDTH, variable.getName());
+            for (Variable parent : parents) {
+                assertTrue(parent.getId() < variable.getId(), variable.getName());
+                neighbors.get(variable.getId()).add(parent.getId());
+                neighbors.get(parent.getId()).add(variable.getId());
+                for (Variable other : parents) {
+                    if (other != parent) {
+                        neighbors.get(parent.getId()).add(other.getId());
+                    }
+                }
+            }
+        }
+
+        // Every variable attaches to a k-clique of the variables before it, so eliminating the variables
+        // from the last one never leaves more than k neighbors to connect
+        for (int id = variables.size() - 1; id >= 0; id--) {
+            Set<Integer> remaining = neighbors.get(id);
+            assertTrue(remaining.size() <= TREEWIDTH, "V" + id + " has " + remaining.size() + " neighbors when eliminated");
+            for (int neighbor : remaining) {
+                neighbors.get(neighbor).remove(id);
+                for (int other : remaining) {
+                    if (other != neighbor) {
+                        neighbors.get(neighbor).add(other);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEvidenceHasNonZeroProbability() throws IOException {
+        NetworkGenerator generator = generator(7);
+        BayesianNetwork network = parse(generator);
+        VariableEliminationQueryParser parser = new VariableEliminationQueryParser(network);
+
+        // The probabilities of the outcomes of the query variable only sum to 1 when the evidence is possible
+        for (String line : generator.generateProbabilityQueries(50)) {
+            double sum = 0;
+            for (int outcome = 0; outcome < 3; outcome++) {
+                VariableElimination ve = new VariableElimination(network, parser.parseQuery(line.replaceFirst("=s\\d+", "=s" + outcome)));
+                ve.executeQuery();
+                sum += ve.getQueryResult().getProbability();
+            }
+            assertEquals(1, sum, 1e-4, line);
+        }
+    }
+}
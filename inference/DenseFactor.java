@@ -0,0 +1,557 @@
+package inference;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a dense factor table over an ordered scope of variables.
+ * The probabilities are kept in a primitive array in row-major order, so the last variable
+ * of the scope varies fastest. This is the same layout used by the TABLE element of the network XML.
+ * A restricted factor is a sliced view over the table it was restricted from: it starts at a fixed offset of the
+ * shared array and keeps the strides of the remaining variables, so restriction never copies values.
+ * The table index of an entry is therefore always computed with the strides, see {@link #indexOf(int[])}.
+ * The values are usually a heap array, but a factor can also read them in place from a buffer, such as a CPT
+ * memory-mapped from a binary network file, or from a sequence of equal-sized buffer blocks, such as a large
+ * intermediate factor spilled to a memory-mapped file by a {@link MemoryBudget}.
+ */
+public class DenseFactor {
+    private final Variable[] variables; // The ordered scope of this factor
+    private final int[] scope; // The ids of the variables in the scope
+    private final int[] cardinalities; // Number of outcomes of each variable in the scope
+    private final int[] strides; // Distance in the table between consecutive outcomes of each variable
+    private final double[] values; // The table of probabilities in row-major order, possibly shared with other views, or null for a buffer
+    private final DoubleBuffer[] blocks; // The table of probabilities when it is held in buffers instead of an array, one block after the other, or null
+    private final int blockShift; // Base 2 logarithm of the number of values of every block but the last
+    private final int blockMask; // Mask selecting the position of a value inside its block
+    private final int offset; // Position in the values array of the entry where every variable has its first outcome
+    private final int size; // Number of entries in this factor
+    private final boolean contiguous; // True if the entries of this factor are a row-major block of the values array
+    private final boolean readOnly; // True if the values cannot be changed through this factor
+    private Runnable changeListener; // Notified when a value changes, or null; restricted views share it with this factor
+
+    /**
+     * Constructor for DenseFactor.
+     *
+     * @param variables the ordered scope of the factor
+     * @param values    the table of probabilities in row-major order
+     */
+    public DenseFactor(Variable[] variables, double[] values) {
+        this.variables = variables;
+        this.scope = new int[variables.length];
+        this.cardinalities = new int[variables.length];
+        this.strides = new int[variables.length];
+
+        int size = 1;
+        for (int i = variables.length - 1; i >= 0; i--) {
+            scope[i] = variables[i].getId();
+            cardinalities[i] = variables[i].getCardinality();
+            strides[i] = size;
+            size *= cardinalities[i];
+        }
+
+        if (values.length != size) {
+            throw new IllegalArgumentException("Factor over " + Arrays.toString(getVariableNames()) + " expects " + size
+                                                       + " values but got " + values.length);
+        }
+        this.values = values;
+        this.blocks = null;
+        this.blockShift = 0;
+        this.blockMask = 0;
+        this.offset = 0;
+        this.size = size;
+        this.contiguous = true;
+        this.readOnly = false;
+    }
+
+    /**
+     * Constructor for a DenseFactor that reads its values in place from a buffer.
+     * The buffer is not copied, and a read-only buffer makes the factor read-only.
+     *
+     * @param variables the ordered scope of the factor
+     * @param buffer    the table of probabilities in row-major order, starting at index 0 of the buffer
+     */
+    public DenseFactor(Variable[] variables, DoubleBuffer buffer) {
+        this(variables, new DoubleBuffer[]{buffer}, Integer.SIZE - 1);
+    }
+
+    /**
+     * Constructor for a DenseFactor that reads its values in place from a sequence of buffer blocks.
+     * Every block but the last holds exactly 2^blockShift values, so a table can be larger than a single buffer.
+     * The blocks are not copied, and read-only blocks make the factor read-only.
+     *
+     * @param variables  the ordered scope of the factor
+     * @param blocks     the table of probabilities in row-major order, split in blocks starting at index 0 of each buffer
+     * @param blockShift the base 2 logarithm of the number of values of a full block, at most 31
+     */
+    public DenseFactor(Variable[] variables, DoubleBuffer[] blocks, int blockShift) {
+        this(variables, null, blocks, blockShift, 0, rowMajorStrides(variables), blocks[0].isReadOnly());
+        long total = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (i < blocks.length - 1 && blocks[i].limit() != 1L << blockShift) {
+                throw new IllegalArgumentException("Block " + i + " holds " + blocks[i].limit() + " values instead of " + (1L << blockShift));
+            }
+            total += blocks[i].limit();
+        }
+        if (total != size) {
+            throw new IllegalArgumentException("Factor over " + Arrays.toString(getVariableNames()) + " expects " + size
+                                                       + " values but got " + total);
+        }
+    }
+
+    /**
+     * Constructor for a sliced view over the values of another factor.
+     *
+     * @param variables  the ordered scope of the view
+     * @param values     the shared values array, or null if the values are in buffer blocks
+     * @param blocks     the shared buffer blocks, or null if the values are in an array
+     * @param blockShift the base 2 logarithm of the number of values of a full block
+     * @param offset     the position in the values of the first entry of the view
+     * @param strides    the stride in the values of each variable of the view
+     * @param readOnly   true if the values cannot be changed through the view
+     */
+    private DenseFactor(Variable[] variables, double[] values, DoubleBuffer[] blocks, int blockShift, int offset, int[] strides, boolean readOnly) {
+        this.variables = variables;
+        this.scope = new int[variables.length];
+        this.cardinalities = new int[variables.length];
+        this.strides = strides;
+        this.values = values;
+        this.blocks = blocks;
+        this.blockShift = blockShift;
+        this.blockMask = (int) ((1L << blockShift) - 1);
+        this.offset = offset;
+        this.readOnly = readOnly;
+
+        int size = 1;
+        boolean contiguous = true;
+        for (int i = variables.length - 1; i >= 0; i--) {
+            scope[i] = variables[i].getId();
+            cardinalities[i] = variables[i].getCardinality();
+            contiguous &= strides[i] == size;
+            size *= cardinalities[i];
+        }
+        this.size = size;
+        this.contiguous = contiguous;
+    }
+
+    /**
+     * Constructor for an empty DenseFactor, with all values set to zero.
+     *
+     * @param variables the ordered scope of the factor
+     */
+    public DenseFactor(Variable[] variables) {
+        this(variables, new double[tableSize(variables)]);
+    }
+
+    /**
+     * Builds a dense factor from a list of factor rows.
+     *
+     * @param variables the ordered scope of the factor
+     * @param rows      the factor rows, each holding a state for every variable of the scope
+     * @return the dense factor holding the probabilities of the rows
+     */
+    public static DenseFactor fromFactorRows(Variable[] variables, List<FactorRow> rows) {
+        DenseFactor factor = new DenseFactor(variables);
+        int[] states = new int[variables.length];
+        for (FactorRow row : rows) {
+            for (int i = 0; i < variables.length; i++) {
+                states[i] = variables[i].getOutcomeIndex(row.getVariableState(variables[i].getName()));
+            }
+            factor.values[factor.indexOf(states)] = row.getProbability();
+        }
+        return factor;
+    }
+
+    /**
+     * Creates a copy of this factor with its own contiguous table of values.
+     *
+     * @return the copy of this factor
+     */
+    public DenseFactor copy() {
+        return new DenseFactor(variables, toArray());
+    }
+
+    /**
+     * Creates a read-only copy of this factor over other variables with the same names and cardinalities,
+     * such as the variables of a network snapshot. The values of a read-only factor are shared instead of copied.
+     *
+     * @param variables the ordered scope of the copy
+     * @return the read-only copy of this factor
+     */
+    public DenseFactor readOnlyCopy(Variable[] variables) {
+        if (variables.length != this.variables.length) {
+            throw new IllegalArgumentException("Factor over " + Arrays.toString(getVariableNames()) + " cannot be copied over "
+                                                       + variables.length + " variables");
+        }
+        for (int i = 0; i < variables.length; i++) {
+            if (!variables[i].getName().equals(this.variables[i].getName()) || variables[i].getCardinality() != cardinalities[i]) {
+                throw new IllegalArgumentException("Variable " + variables[i].getName() + " does not match "
+                                                           + this.variables[i].getName() + " of the factor");
+            }
+        }
+        if (readOnly) {
+            return new DenseFactor(variables, values, blocks, blockShift, offset, strides, true);
+        }
+        return new DenseFactor(variables, toArray(), null, 0, 0, rowMajorStrides(variables), true);
+    }
+
+    /**
+     * Computes the row-major strides of a table over the given variables.
+     *
+     * @param variables the scope of the table
+     * @return the stride of each variable, the last one being 1
+     */
+    private static int[] rowMajorStrides(Variable[] variables) {
+        int[] strides = new int[variables.length];
+        int size = 1;
+        for (int i = variables.length - 1; i >= 0; i--) {
+            strides[i] = size;
+            size = Math.multiplyExact(size, variables[i].getCardinality());
+        }
+        return strides;
+    }
+
+    /**
+     * Computes the number of entries in a table over the given variables.
+     *
+     * @param variables the scope of the table
+     * @return the product of the cardinalities of the variables
+     */
+    public static int tableSize(Variable[] variables) {
+        int size = 1;
+        for (Variable variable : variables) {
+            size = Math.multiplyExact(size, variable.getCardinality());
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of entries in this factor.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if the entries of this factor are stored as one row-major block.
+     * Every factor is contiguous except views restricted on a variable other than the first one of the scope.
+     * The table index of an entry of a contiguous factor is its row-major position.
+     *
+     * @return true if the factor is contiguous, false otherwise
+     */
+    public boolean isContiguous() {
+        return this.contiguous;
+    }
+
+    /**
+     * Checks if the values of this factor cannot be changed, which is the case for a factor over a read-only buffer,
+     * for a read-only copy and for the views restricted from them. A read-only factor never changes, so it can be shared instead of copied.
+     *
+     * @return true if the factor is read-only, false otherwise
+     */
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+
+    /**
+     * Checks if the values of this factor are held in buffers, such as a memory-mapped file, instead of a heap array.
+     *
+     * @return true if the values are in buffers, false otherwise
+     */
+    public boolean isBuffered() {
+        return this.blocks != null;
+    }
+
+    /**
+     * Gets the number of variables in the scope of this factor.
+     *
+     * @return the number of variables
+     */
+    public int getNumVariables() {
+        return this.variables.length;
+    }
+
+    /**
+     * Gets the ordered scope of this factor.
+     *
+     * @return the variables of this factor
+     */
+    public Variable[] getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * Gets the ids of the variables in the scope of this factor.
+     *
+     * @return the ids of the variables, in scope order
+     */
+    public int[] getScope() {
+        return this.scope;
+    }
+
+    /**
+     * Gets the ordered scope of this factor without the variable at the given position.
+     *
+     * @param position the position of the variable to leave out
+     * @return the remaining variables of this factor
+     */
+    public Variable[] getVariablesWithout(int position) {
+        Variable[] remainingVariables = new Variable[variables.length - 1];
+        System.arraycopy(variables, 0, remainingVariables, 0, position);
+        System.arraycopy(variables, position + 1, remainingVariables, position, variables.length - position - 1);
+        return remainingVariables;
+    }
+
+    /**
+     * Gets the variable at the given position in the scope.
+     *
+     * @param position the position in the scope
+     * @return the variable
+     */
+    public Variable getVariable(int position) {
+        return this.variables[position];
+    }
+
+    /**
+     * Finds the position of a variable in the scope.
+     *
+     * @param variableId the id of the variable
+     * @return the position of the variable, or -1 if it is not in the scope
+     */
+    public int indexOfVariable(int variableId) {
+        for (int i = 0; i < scope.length; i++) {
+            if (scope[i] == variableId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the position of a variable in the scope by its name.
+     *
+     * @param variableName the name of the variable
+     * @return the position of the variable, or -1 if it is not in the scope
+     */
+    public int indexOfVariable(String variableName) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].getName().equals(variableName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the cardinality of the variable at the given position in the scope.
+     *
+     * @param position the position in the scope
+     * @return the number of outcomes of the variable
+     */
+    public int getCardinality(int position) {
+        return this.cardinalities[position];
+    }
+
+    /**
+     * Gets the stride of the variable at the given position in the scope.
+     *
+     * @param position the position in the scope
+     * @return the distance in the table between consecutive outcomes of the variable
+     */
+    public int getStride(int position) {
+        return this.strides[position];
+    }
+
+    /**
+     * Gets the value at the given index of the table.
+     *
+     * @param index the index in the table, computed with the strides
+     * @return the value
+     */
+    public double getValue(int index) {
+        if (this.values != null) {
+            return this.values[offset + index];
+        }
+        int position = offset + index;
+        return this.blocks[position >>> blockShift].get(position & blockMask);
+    }
+
+    /**
+     * Sets the listener that is notified whenever a value of this factor, or of a view restricted from it, changes.
+     * A network sets it on its CPTs, so editing a CPT in place changes the version of the network.
+     *
+     * @param changeListener the listener, or null to notify nothing
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Sets the value at the given index of the table.
+     * A restricted view shares its values with the factor it was restricted from, which sees the change too.
+     *
+     * @param index the index in the table, computed with the strides
+     * @param value the new value
+     * @throws IllegalStateException if the factor is read-only
+     */
+    public void setValue(int index, double value) {
+        if (this.readOnly) {
+            throw new IllegalStateException("Cannot modify the read-only factor over " + Arrays.toString(getVariableNames()));
+        }
+        if (this.values != null) {
+            this.values[offset + index] = value;
+        } else {
+            int position = offset + index;
+            this.blocks[position >>> blockShift].put(position & blockMask, value);
+        }
+        if (this.changeListener != null) {
+            this.changeListener.run();
+        }
+    }
+
+    /**
+     * Computes the table index of an assignment.
+     *
+     * @param states the outcome index of each variable in the scope
+     * @return the index in the table
+     */
+    public int indexOf(int[] states) {
+        int index = 0;
+        for (int i = 0; i < states.length; i++) {
+            index += states[i] * strides[i];
+        }
+        return index;
+    }
+
+    /**
+     * Decodes a row-major position into the outcome index of each variable.
+     *
+     * @param position the row-major position of the entry, between 0 and the size of the factor
+     * @param states   the array to fill with the outcome index of each variable in the scope
+     */
+    public void statesOf(int position, int[] states) {
+        for (int i = variables.length - 1; i >= 0; i--) {
+            states[i] = position % cardinalities[i];
+            position /= cardinalities[i];
+        }
+    }
+
+    /**
+     * Gets the sum of all the values of the table.
+     *
+     * @return the sum of the values
+     */
+    public double sum() {
+        double sum = 0;
+        if (contiguous && values != null) {
+            for (int i = offset; i < offset + size; i++) {
+                sum += values[i];
+            }
+        } else if (contiguous) {
+            // Buffered values are summed in place, since they may be larger than the heap
+            for (int i = 0; i < size; i++) {
+                sum += getValue(i);
+            }
+        } else {
+            for (double value : toArray()) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Creates a view that keeps only the entries where the given variable has the given outcome.
+     * The variable is removed from the scope of the view, which shares the values of this factor, so the cost
+     * does not depend on the size of the table.
+     *
+     * @param position     the position of the variable in the scope
+     * @param outcomeIndex the index of the outcome to keep
+     * @return the restricted view
+     * @throws IllegalArgumentException if the outcome index is not an outcome of the variable
+     */
+    public DenseFactor restrict(int position, int outcomeIndex) {
+        if (outcomeIndex < 0 || outcomeIndex >= cardinalities[position]) {
+            throw new IllegalArgumentException("Outcome index " + outcomeIndex + " is not an outcome of " + variables[position].getName());
+        }
+        int[] newStrides = new int[strides.length - 1];
+        System.arraycopy(strides, 0, newStrides, 0, position);
+        System.arraycopy(strides, position + 1, newStrides, position, strides.length - position - 1);
+        DenseFactor view = new DenseFactor(getVariablesWithout(position), values, blocks, blockShift, offset + outcomeIndex * strides[position], newStrides, readOnly);
+        view.changeListener = changeListener;
+        return view;
+    }
+
+    /**
+     * Gathers the values of this factor in row-major order.
+     *
+     * @return a new array holding the values
+     */
+    private double[] toArray() {
+        double[] result = new double[size];
+        if (contiguous) {
+            if (values != null) {
+                System.arraycopy(values, offset, result, 0, size);
+                return result;
+            }
+            for (int copied = 0; copied < size; ) {
+                int position = offset + copied;
+                DoubleBuffer block = blocks[position >>> blockShift];
+                int length = Math.min(size - copied, block.limit() - (position & blockMask));
+                block.get(position & blockMask, result, copied, length);
+                copied += length;
+            }
+            return result;
+        }
+
+        int[] assignment = new int[variables.length];
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            result[i] = getValue(index);
+            // Advance the assignment like an odometer, the last variable turns fastest
+            for (int position = variables.length - 1; position >= 0; position--) {
+                if (++assignment[position] < cardinalities[position]) {
+                    index += strides[position];
+                    break;
+                }
+                assignment[position] = 0;
+                index -= (cardinalities[position] - 1) * strides[position];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts this factor to a list of factor rows.
+     * This is a compatibility adapter for code that reads factors row by row, every call builds new rows.
+     *
+     * @return the list of factor rows
+     */
+    public List<FactorRow> toFactorRows() {
+        List<FactorRow> rows = new ArrayList<>(size);
+        int[] states = new int[variables.length];
+        for (int i = 0; i < size; i++) {
+            statesOf(i, states);
+            Map<String, String> stateMap = new HashMap<>();
+            for (int j = 0; j < variables.length; j++) {
+                stateMap.put(variables[j].getName(), variables[j].getOutcomes().get(states[j]));
+            }
+            rows.add(new FactorRow(stateMap, getValue(indexOf(states))));
+        }
+        return rows;
+    }
+
+    /**
+     * Gets the names of the variables in the scope.
+     *
+     * @return the names of the variables
+     */
+    private String[] getVariableNames() {
+        return Arrays.stream(variables).map(Variable::getName).toArray(String[]::new);
+    }
+}
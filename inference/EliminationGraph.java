@@ -0,0 +1,140 @@
+package inference;
+
+import core.VariableRegistry;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class represents the interaction graph used to plan an elimination order.
+ * Two variables are adjacent if they appear together in the scope of some factor, so for the CPTs of a
+ * Bayesian Network this is the moralized graph. Eliminating a variable connects all of its neighbors.
+ */
+public class EliminationGraph {
+    private final BitSet[] neighbors; // Neighbors of each variable, indexed by variable id
+    private final BitSet remainingVariables; // Variables that were not eliminated yet
+    private final VariableRegistry registry; // Registry holding the cardinalities of the variables
+
+    /**
+     * Constructor builds the interaction graph of the given factor scopes.
+     *
+     * @param scopes   the scopes of the factors, as arrays of variable ids
+     * @param registry the registry of the variables
+     */
+    public EliminationGraph(List<int[]> scopes, VariableRegistry registry) {
+        this.registry = registry;
+        this.neighbors = new BitSet[registry.size()];
+        this.remainingVariables = new BitSet(registry.size());
+
+        for (int[] scope : scopes) {
+            for (int variableId : scope) {
+                if (neighbors[variableId] == null) {
+                    neighbors[variableId] = new BitSet(registry.size());
+                    remainingVariables.set(variableId);
+                }
+                for (int otherId : scope) {
+                    if (otherId != variableId) {
+                        neighbors[variableId].set(otherId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy constructor for EliminationGraph.
+     *
+     * @param other the graph to copy
+     */
+    public EliminationGraph(EliminationGraph other) {
+        this.registry = other.registry;
+        this.neighbors = new BitSet[other.neighbors.length];
+        for (int i = 0; i < neighbors.length; i++) {
+            if (other.neighbors[i] != null) {
+                this.neighbors[i] = (BitSet) other.neighbors[i].clone();
+            }
+        }
+        this.remainingVariables = (BitSet) other.remainingVariables.clone();
+    }
+
+    /**
+     * Gets the variables that were not eliminated yet.
+     *
+     * @return the set of remaining variable ids
+     */
+    public BitSet getRemainingVariables() {
+        return this.remainingVariables;
+    }
+
+    /**
+     * Checks if a variable is in the graph and was not eliminated yet.
+     *
+     * @param variableId the id of the variable
+     * @return true if the variable is remaining, false otherwise
+     */
+    public boolean contains(int variableId) {
+        return this.remainingVariables.get(variableId);
+    }
+
+    /**
+     * Gets the remaining neighbors of a variable.
+     *
+     * @param variableId the id of the variable
+     * @return the set of neighbor ids
+     */
+    public BitSet getNeighbors(int variableId) {
+        return this.neighbors[variableId];
+    }
+
+    /**
+     * Checks if two variables are adjacent.
+     *
+     * @param variableId the id of the first variable
+     * @param otherId    the id of the second variable
+     * @return true if the variables are adjacent, false otherwise
+     */
+    public boolean isAdjacent(int variableId, int otherId) {
+        return this.neighbors[variableId].get(otherId);
+    }
+
+    /**
+     * Gets the number of outcomes of a variable.
+     *
+     * @param variableId the id of the variable
+     * @return the cardinality of the variable
+     */
+    public int getCardinality(int variableId) {
+        return this.registry.getCardinality(variableId);
+    }
+
+    /**
+     * Gets the size of the table created by eliminating a variable, the product of the cardinalities of
+     * the variable and all of its neighbors.
+     *
+     * @param variableId the id of the variable
+     * @return the number of entries of the table
+     */
+    public double getCliqueSize(int variableId) {
+        double size = getCardinality(variableId);
+        BitSet variableNeighbors = neighbors[variableId];
+        for (int neighbor = variableNeighbors.nextSetBit(0); neighbor >= 0; neighbor = variableNeighbors.nextSetBit(neighbor + 1)) {
+            size *= getCardinality(neighbor);
+        }
+        return size;
+    }
+
+    /**
+     * Eliminates a variable, connecting all of its neighbors to each other.
+     *
+     * @param variableId the id of the variable to eliminate
+     */
+    public void eliminate(int variableId) {
+        BitSet variableNeighbors = neighbors[variableId];
+        for (int neighbor = variableNeighbors.nextSetBit(0); neighbor >= 0; neighbor = variableNeighbors.nextSetBit(neighbor + 1)) {
+            neighbors[neighbor].or(variableNeighbors);
+            neighbors[neighbor].clear(neighbor);
+            neighbors[neighbor].clear(variableId);
+        }
+        remainingVariables.clear(variableId);
+    }
+}
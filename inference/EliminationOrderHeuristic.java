@@ -0,0 +1,17 @@
+package inference;
+
+/**
+ * This interface represents a greedy heuristic for choosing an elimination order.
+ * At every step the planner eliminates the remaining variable with the lowest cost.
+ */
+public interface EliminationOrderHeuristic {
+
+    /**
+     * Computes the cost of eliminating a variable next.
+     *
+     * @param graph      the current interaction graph
+     * @param variableId the id of the candidate variable
+     * @return the cost of eliminating the variable, lower is better
+     */
+    double cost(EliminationGraph graph, int variableId);
+}
@@ -0,0 +1,108 @@
+package inference;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class computes elimination orders from the interaction graph of a set of factors,
+ * and predicts the induced width and cost of an order.
+ */
+public class EliminationOrderPlanner {
+    private final EliminationOrderHeuristic heuristic; // The heuristic that picks the next variable
+
+    /**
+     * Constructor for EliminationOrderPlanner.
+     *
+     * @param heuristic the heuristic that picks the next variable to eliminate
+     */
+    public EliminationOrderPlanner(EliminationOrderHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Gets the heuristic of this planner.
+     *
+     * @return the elimination order heuristic
+     */
+    public EliminationOrderHeuristic getHeuristic() {
+        return this.heuristic;
+    }
+
+    /**
+     * Computes an order that eliminates every variable of the graph except the kept one.
+     * Ties are broken by the lowest variable id, so the order is deterministic.
+     *
+     * @param graph        the interaction graph, it is left unchanged
+     * @param keepVariable the id of the variable that is not eliminated
+     * @return the planned order with its predicted induced width and cost
+     */
+    public EliminationPlan plan(EliminationGraph graph, int keepVariable) {
+        EliminationGraph workGraph = new EliminationGraph(graph);
+        BitSet candidates = (BitSet) workGraph.getRemainingVariables().clone();
+        if (keepVariable >= 0) {
+            candidates.clear(keepVariable);
+        }
+
+        int[] order = new int[candidates.cardinality()];
+        int inducedWidth = 0;
+        double estimatedCost = 0;
+        for (int step = 0; step < order.length; step++) {
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int candidate = candidates.nextSetBit(0); candidate >= 0; candidate = candidates.nextSetBit(candidate + 1)) {
+                double cost = heuristic.cost(workGraph, candidate);
+                if (best < 0 || cost < bestCost) {
+                    best = candidate;
+                    bestCost = cost;
+                }
+            }
+
+            order[step] = best;
+            inducedWidth = Math.max(inducedWidth, workGraph.getNeighbors(best).cardinality());
+            estimatedCost += workGraph.getCliqueSize(best);
+            workGraph.eliminate(best);
+            candidates.clear(best);
+        }
+
+        return new EliminationPlan(order, inducedWidth, estimatedCost + finalTableSize(workGraph));
+    }
+
+    /**
+     * Predicts the induced width and cost of a given order.
+     * Variables of the order that are not in the graph are skipped, and variables of the graph that are not in
+     * the order are left to the final product.
+     *
+     * @param graph the interaction graph, it is left unchanged
+     * @param order the ids of the variables to eliminate, in order
+     * @return the given order with its predicted induced width and cost
+     */
+    public EliminationPlan evaluate(EliminationGraph graph, int[] order) {
+        EliminationGraph workGraph = new EliminationGraph(graph);
+        int inducedWidth = 0;
+        double estimatedCost = 0;
+        for (int variableId : order) {
+            if (workGraph.contains(variableId)) {
+                inducedWidth = Math.max(inducedWidth, workGraph.getNeighbors(variableId).cardinality());
+                estimatedCost += workGraph.getCliqueSize(variableId);
+                workGraph.eliminate(variableId);
+            }
+        }
+
+        return new EliminationPlan(Arrays.copyOf(order, order.length), inducedWidth, estimatedCost + finalTableSize(workGraph));
+    }
+
+    /**
+     * Computes the size of the table over all the variables that remain in the graph.
+     *
+     * @param graph the interaction graph
+     * @return the product of the cardinalities of the remaining variables
+     */
+    private double finalTableSize(EliminationGraph graph) {
+        BitSet remaining = graph.getRemainingVariables();
+        double size = 1;
+        for (int variableId = remaining.nextSetBit(0); variableId >= 0; variableId = remaining.nextSetBit(variableId + 1)) {
+            size *= graph.getCardinality(variableId);
+        }
+        return size;
+    }
+}
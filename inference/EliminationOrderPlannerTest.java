@@ -0,0 +1,57 @@
+package inference;
+
+import core.VariableRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EliminationOrderPlannerTest {
+
+    private VariableRegistry registry;
+
+    @BeforeEach
+    public void setUpVariables() {
+        registry = new VariableRegistry(List.of(new Variable(0, "A", List.of("T", "F")),
+                                                new Variable(1, "B", List.of("x", "y", "z")),
+                                                new Variable(2, "C", List.of("T", "F")),
+                                                new Variable(3, "D", List.of("T", "F"))));
+    }
+
+    private EliminationGraph chain() {
+        // The CPTs of the chain A -> B -> C -> D
+        return new EliminationGraph(List.of(new int[]{0}, new int[]{0, 1}, new int[]{1, 2}, new int[]{2, 3}), registry);
+    }
+
+    @Test
+    public void testMinFillEliminatesTheChainFromItsEnd() {
+        EliminationPlan plan = new EliminationOrderPlanner(new MinFillHeuristic()).plan(chain(), 3);
+
+        assertArrayEquals(new int[]{0, 1, 2}, plan.getOrder());
+        assertEquals(1, plan.getInducedWidth());
+        // Tables over AB, BC and CD, then the final table over D
+        assertEquals(6 + 6 + 4 + 2, plan.getEstimatedCost());
+    }
+
+    @Test
+    public void testEvaluateCountsTheFillOfAGivenOrder() {
+        EliminationGraph graph = chain();
+        EliminationPlan plan = new EliminationOrderPlanner(new MinFillHeuristic()).evaluate(graph, new int[]{1, 0, 2});
+
+        // Eliminating B first connects A and C
+        assertEquals(2, plan.getInducedWidth());
+        assertEquals(12 + 4 + 4 + 2, plan.getEstimatedCost());
+        assertEquals(registry.size(), graph.getRemainingVariables().cardinality()); // The graph is left unchanged
+    }
+
+    @Test
+    public void testVariablesLeftOutOfAGivenOrderAreInTheFinalTable() {
+        EliminationPlan plan = new EliminationOrderPlanner(new MinDegreeHeuristic()).evaluate(chain(), new int[]{0});
+
+        assertEquals(1, plan.getInducedWidth());
+        assertEquals(6 + 3 * 2 * 2, plan.getEstimatedCost());
+    }
+}
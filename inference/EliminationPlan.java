@@ -0,0 +1,61 @@
+package inference;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an elimination order together with the cost predicted for it.
+ */
+public class EliminationPlan {
+    private final int[] order; // The ids of the variables to eliminate, in order
+    private final int inducedWidth; // The largest number of neighbors a variable has when it is eliminated
+    private final double estimatedCost; // The total number of entries of the tables created by the order
+
+    /**
+     * Constructor for EliminationPlan.
+     *
+     * @param order         the ids of the variables to eliminate, in order
+     * @param inducedWidth  the induced width of the order
+     * @param estimatedCost the total number of entries of the tables created by the order
+     */
+    public EliminationPlan(int[] order, int inducedWidth, double estimatedCost) {
+        this.order = order;
+        this.inducedWidth = inducedWidth;
+        this.estimatedCost = estimatedCost;
+    }
+
+    /**
+     * Gets the elimination order.
+     *
+     * @return the ids of the variables to eliminate, in order
+     */
+    public int[] getOrder() {
+        return this.order;
+    }
+
+    /**
+     * Gets the induced width of the order.
+     *
+     * @return the largest number of neighbors a variable has when it is eliminated
+     */
+    public int getInducedWidth() {
+        return this.inducedWidth;
+    }
+
+    /**
+     * Gets the estimated cost of the order.
+     *
+     * @return the total number of entries of the tables created by the order
+     */
+    public double getEstimatedCost() {
+        return this.estimatedCost;
+    }
+
+    @Override
+    public String toString() {
+        return "EliminationPlan{" +
+                "order=" + Arrays.toString(order) +
+                ", inducedWidth=" + inducedWidth +
+                ", estimatedCost=" + estimatedCost +
+                '}';
+    }
+}
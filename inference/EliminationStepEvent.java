@@ -0,0 +1,49 @@
+package inference;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event for the elimination of one variable: the factors that mention the variable are
+ * multiplied and the variable is summed out of their product. The duration of the event is the time the step took.
+ * The event is only filled in when a recording has it enabled, so it costs nothing otherwise.
+ */
+@Name("inference.EliminationStep")
+@Label("Elimination Step")
+@Category({"BayesNetAnalysis", "Inference"})
+@Description("The elimination of one variable in a variable elimination query")
+public class EliminationStepEvent extends Event {
+
+    @Label("Variable")
+    @Description("The name of the eliminated variable")
+    String variable;
+
+    @Label("Factors In")
+    @Description("The number of factors that mention the variable")
+    int factorsIn;
+
+    @Label("Input Entries")
+    @Description("The total number of entries of the factors that mention the variable")
+    long inputEntries;
+
+    @Label("Largest Input Entries")
+    @Description("The number of entries of the largest factor that mentions the variable")
+    long largestInputEntries;
+
+    @Label("Product Entries")
+    @Description("The number of entries of the product of the factors")
+    long productEntries;
+
+    @Label("Output Entries")
+    @Description("The number of entries of the factor left after summing out the variable")
+    long outputEntries;
+
+    @Label("Output Size")
+    @Description("The memory taken by the values of the factor left after summing out the variable")
+    @DataAmount
+    long outputBytes;
+}
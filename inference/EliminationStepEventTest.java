@@ -0,0 +1,69 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EliminationStepEventTest {
+
+    // U is a parent of both V and C, so eliminating U first leaves V in a single factor
+    private static final String TRIANGLE_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>U</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>V</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>C</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>U</FOR><TABLE>0.3 0.7</TABLE></DEFINITION>
+            <DEFINITION><FOR>V</FOR><GIVEN>U</GIVEN><TABLE>0.6 0.4 0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>C</FOR><GIVEN>U</GIVEN><GIVEN>V</GIVEN><TABLE>0.9 0.1 0.5 0.5 0.4 0.6 0.1 0.9</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    @Test
+    public void testInputEntriesAreCountedBeforeTheProduct(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("triangle.xml");
+        Files.writeString(networkFile, TRIANGLE_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        BayesianNetwork network = parser.getBayesianNetwork().snapshot();
+        VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery("P(C=T) U-V"));
+
+        Path recordingFile = directory.resolve("steps.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("inference.EliminationStep");
+            recording.start();
+            ve.executeQuery();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        Map<String, RecordedEvent> steps = RecordingFile.readAllEvents(recordingFile).stream()
+                                                        .filter(event -> event.getEventType().getName().equals("inference.EliminationStep"))
+                                                        .collect(Collectors.toMap(event -> event.getString("variable"), event -> event));
+
+        RecordedEvent u = steps.get("U"); // P(U), P(V|U) and P(C|U,V) into a factor over V and C
+        assertEquals(3, u.getInt("factorsIn"));
+        assertEquals(2 + 4 + 8, u.getLong("inputEntries"));
+        assertEquals(8, u.getLong("largestInputEntries"));
+        assertEquals(8, u.getLong("productEntries"));
+        assertEquals(4, u.getLong("outputEntries"));
+
+        RecordedEvent v = steps.get("V"); // The factor over V and C alone, summed into a factor over C
+        assertEquals(1, v.getInt("factorsIn"));
+        assertEquals(4, v.getLong("inputEntries"));
+        assertEquals(4, v.getLong("largestInputEntries"));
+        assertEquals(4, v.getLong("productEntries"));
+        assertEquals(2, v.getLong("outputEntries"));
+        assertEquals(2 * Double.BYTES, v.getLong("outputBytes"));
+    }
+}
@@ -0,0 +1,104 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExplainTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private static final String[] QUERIES = {
+            "P(B=T|J=T,M=T) A-E",
+            "P(B=T|J=T,M=T) E-A",
+            "P(J=T|B=F) A-E-M",
+            "P(E=T|A=T) B-J-M",
+            "P(A=T|J=T,M=T)",
+            "P(M=F)"
+    };
+
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork().snapshot();
+    }
+
+    private VariableEliminationQuery query(String line) {
+        return new VariableEliminationQueryParser(network).parseQuery(line);
+    }
+
+    @Test
+    public void testPredictedOperationsMatchTheExecution() {
+        for (String line : QUERIES) {
+            QueryExplanation explanation = new VariableElimination(network, query(line)).explain();
+            VariableElimination ve = new VariableElimination(network, query(line));
+            ve.executeQuery();
+
+            assertFalse(explanation.isDirectCpt(), line);
+            assertEquals(ve.getQueryResult().getMultiplicationOperations(), explanation.getMultiplications(), line);
+            assertEquals(ve.getQueryResult().getAdditionOperations(), explanation.getAdditions(), line);
+            assertEquals(ve.getLargestIntermediateFactorSize(), explanation.getLargestFactorEntries(), line);
+            assertEquals(ve.getPrunedFactorCount(), explanation.getPrunedFactorCount(), line);
+        }
+    }
+
+    @Test
+    public void testExecutionAfterExplainReusesThePlan() {
+        for (String line : QUERIES) {
+            VariableElimination fresh = new VariableElimination(network, query(line));
+            fresh.executeQuery();
+
+            VariableElimination explained = new VariableElimination(network, query(line));
+            QueryExplanation explanation = explained.explain();
+            EliminationPlan plan = explained.getEliminationPlan();
+            explained.executeQuery();
+
+            assertSame(plan, explained.getEliminationPlan(), line);
+            assertEquals(fresh.getResult(), explained.getResult(), line);
+            assertEquals(explained.getQueryResult().getMultiplicationOperations(), explanation.getMultiplications(), line);
+            assertEquals(explained.getQueryResult().getAdditionOperations(), explanation.getAdditions(), line);
+        }
+    }
+
+    @Test
+    public void testDirectCptQueryIsNotEliminated() {
+        VariableElimination ve = new VariableElimination(network, query("P(J=T|A=T) B-E-M"));
+        QueryExplanation explanation = ve.explain();
+        ve.executeQuery();
+
+        assertTrue(explanation.isDirectCpt());
+        assertEquals("directCpt", explanation.toString());
+        assertEquals(0.9, ve.getQueryResult().getProbability(), 1e-12);
+        assertEquals(0, ve.getQueryResult().getMultiplicationOperations());
+        assertEquals(0, ve.getQueryResult().getAdditionOperations());
+    }
+}
@@ -1,5 +1,9 @@
 package inference;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -7,47 +11,145 @@ import java.util.stream.Collectors;
 /**
  * This class represents a factor in a Bayesian Network.
  * A factor is a function over a subset of variables, representing the probability distribution.
+ * The probabilities are held in a {@link DenseFactor} table.
+ * The operations of a factor replace its table instead of changing it in place, so a table can be shared by many factors.
  */
 public class Factor {
     private Variable parentVariable; // The parent variable of this factor
-    private final Map<String, Variable> variablesMap; // Map of variables in this factor
-    private List<FactorRow> factorRows; // List of factor rows representing the conditional probabilities
+    private Map<String, Variable> variablesMap; // Map of variables in this factor
+    private DenseFactor table; // Dense table holding the conditional probabilities
+    private boolean sharesVariablesMap; // True for a view until its variables map is first changed
+    private Runnable changeListener; // Notified when the table of this factor is replaced or changed, or null
+    private boolean readOnly; // True if the table of this factor cannot be replaced or changed
 
     /**
      * Constructor for Factor with parent variable.
      *
      * @param parentVariable the parent variable
      * @param variablesMap   map of variables in this factor
-     * @param factorRows     list of factor rows
+     * @param table          dense table of probabilities
      */
-    public Factor(Variable parentVariable, Map<String, Variable> variablesMap, List<FactorRow> factorRows) {
+    public Factor(Variable parentVariable, Map<String, Variable> variablesMap, DenseFactor table) {
         this.parentVariable = parentVariable;
         this.variablesMap = variablesMap;
-        this.factorRows = factorRows;
+        this.table = table;
     }
 
     /**
      * Constructor for Factor without parent variable.
      *
      * @param variablesMap map of variables in this factor
+     * @param table        dense table of probabilities
+     */
+    public Factor(Map<String, Variable> variablesMap, DenseFactor table) {
+        this.variablesMap = variablesMap;
+        this.table = table;
+    }
+
+    /**
+     * Constructor for Factor with parent variable from a list of factor rows.
+     * The scope of the table follows the iteration order of the variables map.
+     *
+     * @param parentVariable the parent variable
+     * @param variablesMap   map of variables in this factor
+     * @param factorRows     list of factor rows
+     */
+    public Factor(Variable parentVariable, Map<String, Variable> variablesMap, List<FactorRow> factorRows) {
+        this(parentVariable, variablesMap, DenseFactor.fromFactorRows(variablesMap.values().toArray(new Variable[0]), factorRows));
+    }
+
+    /**
+     * Constructor for Factor without parent variable from a list of factor rows.
+     * The scope of the table follows the iteration order of the variables map.
+     *
+     * @param variablesMap map of variables in this factor
      * @param factorRows   list of factor rows
      */
     public Factor(Map<String, Variable> variablesMap, List<FactorRow> factorRows) {
-        this.variablesMap = variablesMap;
-        this.factorRows = factorRows;
+        this(variablesMap, DenseFactor.fromFactorRows(variablesMap.values().toArray(new Variable[0]), factorRows));
     }
 
     /**
      * Copy constructor for Factor.
+     * A read-only table, such as a memory-mapped CPT, can never change and is shared instead of copied.
      *
      * @param other the factor to copy
      */
     public Factor(Factor other) {
-        this.factorRows = other.getFactorRows().stream().map(FactorRow::new).collect(Collectors.toList());
+        this.table = other.getTable().isReadOnly() ? other.getTable() : other.getTable().copy();
         this.variablesMap = other.variablesMap.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
         this.parentVariable = other.getParentVariable();
     }
 
+    /**
+     * Creates a copy-on-write view of a factor. The view shares the table and the variables map of the factor,
+     * and copies the map only when it is restricted, so the factor itself is never changed through the view.
+     *
+     * @param other the factor to view
+     * @return the view of the factor
+     */
+    public static Factor view(Factor other) {
+        Factor view = new Factor(other.parentVariable, other.variablesMap, other.table);
+        view.sharesVariablesMap = true;
+        return view;
+    }
+
+    /**
+     * Creates a read-only copy of a factor over copies of its variables, such as the variables of a network snapshot.
+     * The table, the variables map and the table values of the copy cannot be changed, but views of the copy can
+     * still be restricted, multiplied and summed out like views of any factor.
+     *
+     * @param other     the factor to copy
+     * @param variables the variables of the copy by name, holding every variable of the factor
+     * @return the read-only copy of the factor
+     */
+    public static Factor readOnlyCopy(Factor other, Map<String, Variable> variables) {
+        Variable[] scope = Arrays.stream(other.table.getVariables()).map(variable -> variables.get(variable.getName())).toArray(Variable[]::new);
+        Map<String, Variable> variablesMap = new LinkedHashMap<>();
+        for (String name : other.variablesMap.keySet()) {
+            variablesMap.put(name, variables.get(name));
+        }
+        Variable parentVariable = other.parentVariable == null ? null : variables.get(other.parentVariable.getName());
+        Factor copy = new Factor(parentVariable, Collections.unmodifiableMap(variablesMap), other.table.readOnlyCopy(scope));
+        copy.readOnly = true;
+        return copy;
+    }
+
+    /**
+     * Sets the listener that is notified whenever the table of this factor is replaced or one of its values changes.
+     * Copies and views of this factor do not notify it.
+     *
+     * @param changeListener the listener, or null to notify nothing
+     */
+    public void setChangeListener(Runnable changeListener) {
+        checkMutable();
+        this.changeListener = changeListener;
+        this.table.setChangeListener(changeListener);
+    }
+
+    /**
+     * Replaces the table of this factor and notifies the change listener, which is moved to the new table.
+     *
+     * @param table the new table
+     */
+    private void replaceTable(DenseFactor table) {
+        checkMutable();
+        this.table = table;
+        if (this.changeListener != null) {
+            table.setChangeListener(this.changeListener);
+            this.changeListener.run();
+        }
+    }
+
+    /**
+     * Throws if this factor is a read-only copy.
+     */
+    private void checkMutable() {
+        if (this.readOnly) {
+            throw new IllegalStateException("Cannot modify a read-only factor");
+        }
+    }
+
     /**
      * Restricts this factor based on the given evidence.
      *
@@ -55,18 +157,47 @@ public class Factor {
      * @param evidenceState the state of the variable as evidence
      */
     public void restrict(String variableName, String evidenceState) {
+        checkMutable();
         if (this.variablesMap.containsKey(variableName)) {
-            // Filter rows to keep only those that match the evidence state for the given variable
-            this.factorRows = this.factorRows.stream()
-                                             .filter(row -> row.matchesEvidence(variableName, evidenceState))
-                                             .collect(Collectors.toList());
-            this.removeVariableFromRows(variableName); // Remove the variable from all rows
-            this.variablesMap.remove(variableName); // Remove the variable from the map
+            int position = this.table.indexOfVariable(variableName);
+            // Keep only the entries that match the evidence state and drop the variable from the scope
+            replaceTable(this.table.restrict(position, this.table.getVariable(position).getOutcomeIndex(evidenceState)));
+            ownVariablesMap().remove(variableName); // Remove the variable from the map
+        }
+    }
+
+    /**
+     * Restricts this factor based on the given evidence.
+     *
+     * @param variableId   the id of the variable to restrict
+     * @param outcomeIndex the index of the outcome of the variable as evidence
+     */
+    public void restrict(int variableId, int outcomeIndex) {
+        checkMutable();
+        int position = this.table.indexOfVariable(variableId);
+        if (position >= 0) {
+            String variableName = this.table.getVariable(position).getName();
+            replaceTable(this.table.restrict(position, outcomeIndex));
+            ownVariablesMap().remove(variableName); // Remove the variable from the map
+        }
+    }
+
+    /**
+     * Gets the variables map of this factor for writing, first copying it if it is shared with the viewed factor.
+     *
+     * @return the variables map owned by this factor
+     */
+    private Map<String, Variable> ownVariablesMap() {
+        if (this.sharesVariablesMap) {
+            this.variablesMap = new HashMap<>(this.variablesMap);
+            this.sharesVariablesMap = false;
         }
+        return this.variablesMap;
     }
 
     /**
      * Gets the map of variables in this factor.
+     * The map of a view is shared with the viewed factor and must not be modified.
      *
      * @return the map of variables
      */
@@ -74,13 +205,32 @@ public class Factor {
         return this.variablesMap;
     }
 
+    /**
+     * Gets the dense table of this factor.
+     *
+     * @return the dense table
+     */
+    public DenseFactor getTable() {
+        return this.table;
+    }
+
+    /**
+     * Sets the dense table of this factor.
+     *
+     * @param table the new dense table
+     */
+    public void setTable(DenseFactor table) {
+        replaceTable(table);
+    }
+
     /**
      * Gets the list of factor rows.
+     * The rows are built from the dense table on every call, so changing them does not change this factor.
      *
      * @return the list of factor rows
      */
     public List<FactorRow> getFactorRows() {
-        return this.factorRows;
+        return this.table.toFactorRows();
     }
 
     /**
@@ -89,16 +239,7 @@ public class Factor {
      * @param factorRows the new list of factor rows
      */
     public void setFactorRows(List<FactorRow> factorRows) {
-        this.factorRows = factorRows;
-    }
-
-    /**
-     * Removes a variable from all factor rows.
-     *
-     * @param variable the name of the variable to remove
-     */
-    public void removeVariableFromRows(String variable) {
-        this.factorRows.forEach(row -> row.removeVariable(variable));
+        replaceTable(DenseFactor.fromFactorRows(this.table.getVariables(), factorRows));
     }
 
     /**
@@ -111,6 +252,16 @@ public class Factor {
         return this.variablesMap.containsKey(variableName);
     }
 
+    /**
+     * Checks if the table of this factor contains a variable.
+     *
+     * @param variableId the id of the variable to check
+     * @return true if the variable is in the scope of the table, false otherwise
+     */
+    public boolean containsVariable(int variableId) {
+        return this.table.indexOfVariable(variableId) >= 0;
+    }
+
     /**
      * Gets the parent variable of this factor.
      *
@@ -128,8 +279,8 @@ public class Factor {
      * @return the list of rows that match the specific variable and state
      */
     public List<FactorRow> getRowsWithVariableAndState(Variable variable, String state) {
-        return this.factorRows.stream()
-                              .filter(row -> row.getVariableState(variable.getName()).equals(state))
-                              .collect(Collectors.toList());
+        return this.getFactorRows().stream()
+                                   .filter(row -> row.getVariableState(variable.getName()).equals(state))
+                                   .collect(Collectors.toList());
     }
 }
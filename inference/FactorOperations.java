@@ -0,0 +1,447 @@
+package inference;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class holds the kernels that compute on dense factor tables.
+ * The kernels walk the tables with index strides, so the cost of an operation is linear in the size of its output.
+ * Every kernel can also run on a fork-join pool: the entries of the output are split into ranges that are computed
+ * in parallel, and each entry is computed exactly as in the single-threaded kernel, so the results do not depend
+ * on the number of threads.
+ * The output tables are allocated on the heap, or by a {@link MemoryBudget} that may store large ones in memory-mapped files.
+ */
+public final class FactorOperations {
+    public static final int PARALLEL_THRESHOLD = 1 << 15; // Output entries below which a kernel, or a range of it, runs on one thread
+
+    /**
+     * The ways a variable can be marginalized out of a table.
+     */
+    public enum Reduction {
+        SUM {
+            @Override
+            double combine(double accumulated, double value) {
+                return accumulated + value;
+            }
+        },
+        MAX {
+            @Override
+            double combine(double accumulated, double value) {
+                return Math.max(accumulated, value);
+            }
+        };
+
+        /**
+         * Combines a value into the accumulated result.
+         *
+         * @param accumulated the result so far
+         * @param value       the value to combine
+         * @return the new result
+         */
+        abstract double combine(double accumulated, double value);
+    }
+
+    /**
+     * A kernel that computes a range of the entries of its output.
+     */
+    @FunctionalInterface
+    private interface RangeKernel {
+        /**
+         * Computes the output entries from one index up to another.
+         *
+         * @param from the first output index, inclusive
+         * @param to   the last output index, exclusive
+         */
+        void compute(int from, int to);
+    }
+
+    /**
+     * A fork-join task that splits a range of output entries in halves until they are below the threshold.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeKernel kernel; // The kernel computing the entries
+        private final int from; // The first output index of the range, inclusive
+        private final int to; // The last output index of the range, exclusive
+        private final int threshold; // The size below which the range is computed on the current thread
+
+        /**
+         * Constructor for RangeTask.
+         *
+         * @param kernel    the kernel computing the entries
+         * @param from      the first output index of the range, inclusive
+         * @param to        the last output index of the range, exclusive
+         * @param threshold the size below which the range is computed on the current thread
+         */
+        RangeTask(RangeKernel kernel, int from, int to, int threshold) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                kernel.compute(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(kernel, from, middle, threshold), new RangeTask(kernel, middle, to, threshold));
+        }
+    }
+
+    private FactorOperations() {
+    }
+
+    /**
+     * Multiplies two tables. The scope of the product is the scope of the first table followed by the
+     * variables of the second table that are not in the first one.
+     *
+     * @param t1 the first table
+     * @param t2 the second table
+     * @return the product of the two tables
+     */
+    public static DenseFactor multiply(DenseFactor t1, DenseFactor t2) {
+        return combine(t1, t2, false, null, PARALLEL_THRESHOLD, null);
+    }
+
+    /**
+     * Multiplies two tables, splitting the entries of the product across a fork-join pool when it is large.
+     *
+     * @param t1   the first table
+     * @param t2   the second table
+     * @param pool the pool to run on, or null to run on the current thread
+     * @return the product of the two tables
+     */
+    public static DenseFactor multiply(DenseFactor t1, DenseFactor t2, ForkJoinPool pool) {
+        return combine(t1, t2, false, pool, PARALLEL_THRESHOLD, null);
+    }
+
+    /**
+     * Multiplies two tables into a table allocated by a memory budget, splitting the entries of the product
+     * across a fork-join pool when it is large.
+     *
+     * @param t1     the first table
+     * @param t2     the second table
+     * @param pool   the pool to run on, or null to run on the current thread
+     * @param budget the memory budget allocating the product, or null to allocate it on the heap
+     * @return the product of the two tables
+     */
+    public static DenseFactor multiply(DenseFactor t1, DenseFactor t2, ForkJoinPool pool, MemoryBudget budget) {
+        return combine(t1, t2, false, pool, PARALLEL_THRESHOLD, budget);
+    }
+
+    /**
+     * Divides the first table by the second one, where zero divided by zero is zero.
+     * The scope of the quotient is the scope of the first table followed by the
+     * variables of the second table that are not in the first one.
+     *
+     * @param t1 the dividend table
+     * @param t2 the divisor table
+     * @return the quotient of the two tables
+     */
+    public static DenseFactor divide(DenseFactor t1, DenseFactor t2) {
+        return combine(t1, t2, true, null, PARALLEL_THRESHOLD, null);
+    }
+
+    /**
+     * Combines two tables entry by entry, walking both of them with strides aligned to the combined scope.
+     *
+     * @param t1        the first table
+     * @param t2        the second table
+     * @param divide    true to divide the entries of the first table by the second, false to multiply them
+     * @param pool      the pool to run on, or null to run on the current thread
+     * @param threshold the number of entries below which a range of the product is computed on one thread
+     * @param budget    the memory budget allocating the combined table, or null to allocate it on the heap
+     * @return the combined table
+     */
+    static DenseFactor combine(DenseFactor t1, DenseFactor t2, boolean divide, ForkJoinPool pool, int threshold, MemoryBudget budget) {
+        DenseFactor product = allocate(combineScopes(t1, t2), budget);
+        int[] strides1 = alignStrides(t1, product);
+        int[] strides2 = alignStrides(t2, product);
+        forEachRange(product.size(), pool, threshold, (from, to) -> combineRange(t1, t2, divide, product, strides1, strides2, from, to));
+        return product;
+    }
+
+    /**
+     * Combines a range of the entries of the product of two tables.
+     *
+     * @param t1       the first table
+     * @param t2       the second table
+     * @param divide   true to divide the entries of the first table by the second, false to multiply them
+     * @param product  the table receiving the combined entries
+     * @param strides1 the strides of the first table aligned to the scope of the product
+     * @param strides2 the strides of the second table aligned to the scope of the product
+     * @param from     the first index of the product to compute, inclusive
+     * @param to       the last index of the product to compute, exclusive
+     */
+    private static void combineRange(DenseFactor t1, DenseFactor t2, boolean divide, DenseFactor product,
+                                     int[] strides1, int[] strides2, int from, int to) {
+        int[] cardinalities = new int[product.getNumVariables()];
+        for (int i = 0; i < cardinalities.length; i++) {
+            cardinalities[i] = product.getCardinality(i);
+        }
+
+        int[] assignment = new int[cardinalities.length];
+        product.statesOf(from, assignment);
+        int index1 = 0;
+        int index2 = 0;
+        for (int position = 0; position < assignment.length; position++) {
+            index1 += assignment[position] * strides1[position];
+            index2 += assignment[position] * strides2[position];
+        }
+        for (int i = from; i < to; i++) {
+            double value2 = t2.getValue(index2);
+            if (divide) {
+                product.setValue(i, value2 == 0 ? 0 : t1.getValue(index1) / value2);
+            } else {
+                product.setValue(i, t1.getValue(index1) * value2);
+            }
+
+            // Advance the assignment like an odometer, the last variable turns fastest
+            for (int position = cardinalities.length - 1; position >= 0; position--) {
+                if (++assignment[position] < cardinalities[position]) {
+                    index1 += strides1[position];
+                    index2 += strides2[position];
+                    break;
+                }
+                assignment[position] = 0;
+                index1 -= (cardinalities[position] - 1) * strides1[position];
+                index2 -= (cardinalities[position] - 1) * strides2[position];
+            }
+        }
+    }
+
+    /**
+     * Sums a variable out of a table.
+     *
+     * @param table    the table
+     * @param position the position of the variable in the scope of the table
+     * @return a new table over the remaining variables
+     */
+    public static DenseFactor sumOut(DenseFactor table, int position) {
+        return sumOut(table, position, null);
+    }
+
+    /**
+     * Sums a variable out of a table, splitting the entries of the result across a fork-join pool when it is large.
+     *
+     * @param table    the table
+     * @param position the position of the variable in the scope of the table
+     * @param pool     the pool to run on, or null to run on the current thread
+     * @return a new table over the remaining variables
+     */
+    public static DenseFactor sumOut(DenseFactor table, int position, ForkJoinPool pool) {
+        return sumOut(table, position, pool, null);
+    }
+
+    /**
+     * Sums a variable out of a table into a table allocated by a memory budget, splitting the entries of the result
+     * across a fork-join pool when it is large.
+     *
+     * @param table    the table
+     * @param position the position of the variable in the scope of the table
+     * @param pool     the pool to run on, or null to run on the current thread
+     * @param budget   the memory budget allocating the result, or null to allocate it on the heap
+     * @return a new table over the remaining variables
+     */
+    public static DenseFactor sumOut(DenseFactor table, int position, ForkJoinPool pool, MemoryBudget budget) {
+        DenseFactor result = allocate(table.getVariablesWithout(position), budget);
+        marginalize(table, position, Reduction.SUM, result, pool, PARALLEL_THRESHOLD);
+        return result;
+    }
+
+    /**
+     * Maximizes a variable out of a table.
+     *
+     * @param table    the table
+     * @param position the position of the variable in the scope of the table
+     * @return a new table over the remaining variables
+     */
+    public static DenseFactor maxOut(DenseFactor table, int position) {
+        DenseFactor result = new DenseFactor(table.getVariablesWithout(position));
+        marginalize(table, position, Reduction.MAX, result);
+        return result;
+    }
+
+    /**
+     * Marginalizes a variable out of a table into a preallocated result table.
+     * Every entry of the result is reduced from the entries of the table that differ only in the outcome of the variable.
+     * Those entries are one stride apart, and consecutive groups share the same offset inside a block of the table,
+     * so the kernel walks the table once with no allocation.
+     * A table that is a non-contiguous restricted view is walked with its strides instead.
+     *
+     * @param table     the table
+     * @param position  the position of the variable in the scope of the table
+     * @param reduction how the entries of the variable are combined
+     * @param result    the contiguous table over the remaining variables, in the order of the table, that receives the result
+     */
+    public static void marginalize(DenseFactor table, int position, Reduction reduction, DenseFactor result) {
+        marginalize(table, position, reduction, result, null, PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Marginalizes a variable out of a table into a preallocated result table, splitting the entries of the result
+     * across a fork-join pool when it is large.
+     *
+     * @param table     the table
+     * @param position  the position of the variable in the scope of the table
+     * @param reduction how the entries of the variable are combined
+     * @param result    the contiguous table over the remaining variables, in the order of the table, that receives the result
+     * @param pool      the pool to run on, or null to run on the current thread
+     * @param threshold the number of entries below which a range of the result is computed on one thread
+     */
+    static void marginalize(DenseFactor table, int position, Reduction reduction, DenseFactor result, ForkJoinPool pool, int threshold) {
+        if (table.isContiguous()) {
+            forEachRange(result.size(), pool, threshold, (from, to) -> marginalizeBlocks(table, position, reduction, result, from, to));
+        } else {
+            forEachRange(result.size(), pool, threshold, (from, to) -> marginalizeStrided(table, position, reduction, result, from, to));
+        }
+    }
+
+    /**
+     * Marginalizes a variable out of a contiguous table for a range of the entries of the result.
+     * The entries reduced into consecutive results start one after the other inside a block of the table,
+     * and the next block starts when the stride of the variable is exhausted.
+     *
+     * @param table     the contiguous table
+     * @param position  the position of the variable in the scope of the table
+     * @param reduction how the entries of the variable are combined
+     * @param result    the table that receives the result
+     * @param from      the first index of the result to compute, inclusive
+     * @param to        the last index of the result to compute, exclusive
+     */
+    private static void marginalizeBlocks(DenseFactor table, int position, Reduction reduction, DenseFactor result, int from, int to) {
+        int stride = table.getStride(position);
+        int cardinality = table.getCardinality(position);
+        int blockSize = stride * cardinality;
+
+        int blockStart = from / stride * blockSize;
+        int offset = blockStart + from % stride;
+        for (int resultIndex = from; resultIndex < to; resultIndex++) {
+            double accumulated = table.getValue(offset);
+            for (int index = offset + stride; index < blockStart + blockSize; index += stride) {
+                accumulated = reduction.combine(accumulated, table.getValue(index));
+            }
+            result.setValue(resultIndex, accumulated);
+
+            if (++offset == blockStart + stride) {
+                blockStart += blockSize;
+                offset = blockStart;
+            }
+        }
+    }
+
+    /**
+     * Marginalizes a variable out of a table of any layout for a range of the entries of the result,
+     * walking the remaining variables like an odometer.
+     * The entries of the variable are combined in the same order as in {@link #marginalizeBlocks}.
+     *
+     * @param table     the table
+     * @param position  the position of the variable in the scope of the table
+     * @param reduction how the entries of the variable are combined
+     * @param result    the table that receives the result
+     * @param from      the first index of the result to compute, inclusive
+     * @param to        the last index of the result to compute, exclusive
+     */
+    private static void marginalizeStrided(DenseFactor table, int position, Reduction reduction, DenseFactor result, int from, int to) {
+        int stride = table.getStride(position);
+        int cardinality = table.getCardinality(position);
+        int[] assignment = new int[table.getNumVariables()];
+
+        int[] resultStates = new int[result.getNumVariables()];
+        result.statesOf(from, resultStates);
+        int index = 0;
+        for (int other = 0, resultPosition = 0; other < assignment.length; other++) {
+            if (other != position) {
+                assignment[other] = resultStates[resultPosition++];
+                index += assignment[other] * table.getStride(other);
+            }
+        }
+        for (int resultIndex = from; resultIndex < to; resultIndex++) {
+            double accumulated = table.getValue(index);
+            for (int outcome = 1; outcome < cardinality; outcome++) {
+                accumulated = reduction.combine(accumulated, table.getValue(index + outcome * stride));
+            }
+            result.setValue(resultIndex, accumulated);
+
+            for (int other = assignment.length - 1; other >= 0; other--) {
+                if (other == position) {
+                    continue;
+                }
+                if (++assignment[other] < table.getCardinality(other)) {
+                    index += table.getStride(other);
+                    break;
+                }
+                assignment[other] = 0;
+                index -= (table.getCardinality(other) - 1) * table.getStride(other);
+            }
+        }
+    }
+
+    /**
+     * Runs a kernel over the entries of its output, on the current thread or split in ranges across a fork-join pool.
+     *
+     * @param size      the number of entries of the output
+     * @param pool      the pool to run on, or null to run on the current thread
+     * @param threshold the number of entries below which a range is computed on one thread
+     * @param kernel    the kernel computing a range of entries
+     */
+    private static void forEachRange(int size, ForkJoinPool pool, int threshold, RangeKernel kernel) {
+        if (pool == null || size <= threshold) {
+            kernel.compute(0, size);
+        } else {
+            pool.invoke(new RangeTask(kernel, 0, size, threshold));
+        }
+    }
+
+    /**
+     * Allocates an empty output table.
+     *
+     * @param variables the ordered scope of the table
+     * @param budget    the memory budget allocating the table, or null to allocate it on the heap
+     * @return the table
+     */
+    private static DenseFactor allocate(Variable[] variables, MemoryBudget budget) {
+        return budget == null ? new DenseFactor(variables) : budget.allocate(variables);
+    }
+
+    /**
+     * Finds the scope of the product of two tables: the variables of the first table followed by
+     * the variables of the second table that are not in the first one.
+     *
+     * @param t1 the first table
+     * @param t2 the second table
+     * @return the combined scope
+     */
+    private static Variable[] combineScopes(DenseFactor t1, DenseFactor t2) {
+        Variable[] variables = Arrays.copyOf(t1.getVariables(), t1.getNumVariables() + t2.getNumVariables());
+        int size = t1.getNumVariables();
+        for (Variable variable : t2.getVariables()) {
+            if (t1.indexOfVariable(variable.getId()) < 0) {
+                variables[size++] = variable;
+            }
+        }
+        return Arrays.copyOf(variables, size);
+    }
+
+    /**
+     * Finds the stride of a table for every variable of a larger scope.
+     * Variables of the larger scope that are not in the table get a stride of zero.
+     *
+     * @param table  the table
+     * @param target the table over the larger scope
+     * @return the stride of the table for each position of the larger scope
+     */
+    private static int[] alignStrides(DenseFactor table, DenseFactor target) {
+        int[] strides = new int[target.getNumVariables()];
+        for (int i = 0; i < strides.length; i++) {
+            int position = table.indexOfVariable(target.getScope()[i]);
+            strides[i] = position < 0 ? 0 : table.getStride(position);
+        }
+        return strides;
+    }
+}
@@ -0,0 +1,236 @@
+package inference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FactorOperationsTest {
+
+    private static final double DELTA = 1e-12;
+
+    private Variable A;
+    private Variable B;
+    private Variable C;
+
+    @BeforeEach
+    public void setUpVariables() {
+        A = new Variable(0, "A", List.of("T", "F"));
+        B = new Variable(1, "B", List.of("x", "y", "z"));
+        C = new Variable(2, "C", List.of("T", "F"));
+    }
+
+    private static double[] valuesOf(DenseFactor table) {
+        DenseFactor contiguous = table.copy();
+        double[] values = new double[contiguous.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = contiguous.getValue(i);
+        }
+        return values;
+    }
+
+    @Test
+    public void testMultiplyMatchesSharedVariables() {
+        DenseFactor ab = new DenseFactor(new Variable[]{A, B}, new double[]{1, 2, 3, 4, 5, 6});
+        DenseFactor bc = new DenseFactor(new Variable[]{B, C}, new double[]{1, 10, 2, 20, 3, 30});
+
+        DenseFactor product = FactorOperations.multiply(ab, bc);
+
+        assertArrayEquals(new int[]{0, 1, 2}, product.getScope());
+        assertArrayEquals(new double[]{1, 10, 4, 40, 9, 90, 4, 40, 10, 100, 18, 180}, valuesOf(product), DELTA);
+    }
+
+    @Test
+    public void testMultiplyWithoutSharedVariables() {
+        DenseFactor a = new DenseFactor(new Variable[]{A}, new double[]{2, 3});
+        DenseFactor c = new DenseFactor(new Variable[]{C}, new double[]{5, 7});
+
+        DenseFactor product = FactorOperations.multiply(a, c);
+
+        assertArrayEquals(new int[]{0, 2}, product.getScope());
+        assertArrayEquals(new double[]{10, 14, 15, 21}, valuesOf(product), DELTA);
+    }
+
+    @Test
+    public void testDivideTreatsZeroOverZeroAsZero() {
+        DenseFactor ab = new DenseFactor(new Variable[]{A, B}, new double[]{1, 0, 3, 4, 0, 6});
+        DenseFactor b = new DenseFactor(new Variable[]{B}, new double[]{2, 0, 3});
+
+        DenseFactor quotient = FactorOperations.divide(ab, b);
+
+        assertArrayEquals(new int[]{0, 1}, quotient.getScope());
+        assertArrayEquals(new double[]{0.5, 0, 1, 2, 0, 2}, valuesOf(quotient), DELTA);
+    }
+
+    @Test
+    public void testSumOutMiddleVariable() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        DenseFactor result = FactorOperations.sumOut(abc, 1);
+
+        assertArrayEquals(new int[]{0, 2}, result.getScope());
+        assertArrayEquals(new double[]{9, 12, 27, 30}, valuesOf(result), DELTA);
+    }
+
+    @Test
+    public void testMaxOutLastVariable() {
+        DenseFactor ab = new DenseFactor(new Variable[]{A, B}, new double[]{1, 6, 3, 5, 4, 2});
+
+        DenseFactor result = FactorOperations.maxOut(ab, 1);
+
+        assertArrayEquals(new int[]{0}, result.getScope());
+        assertArrayEquals(new double[]{6, 5}, valuesOf(result), DELTA);
+    }
+
+    @Test
+    public void testSumOutOnlyVariable() {
+        DenseFactor a = new DenseFactor(new Variable[]{A}, new double[]{0.25, 0.5});
+
+        DenseFactor result = FactorOperations.sumOut(a, 0);
+
+        assertEquals(0, result.getNumVariables());
+        assertEquals(0.75, result.getValue(0), DELTA);
+    }
+
+    @Test
+    public void testRestrictIsAViewOverTheTable() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+        DenseFactor restricted = abc.restrict(1, 2);
+        abc.setValue(5, 60);
+
+        assertArrayEquals(new double[]{5, 60, 11, 12}, valuesOf(restricted), DELTA);
+    }
+
+    @Test
+    public void testKernelsOnRestrictedView() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        DenseFactor ac = abc.restrict(1, 1);
+        DenseFactor c = new DenseFactor(new Variable[]{C}, new double[]{10, 100});
+
+        assertArrayEquals(new double[]{7, 19}, valuesOf(FactorOperations.sumOut(ac, 1)), DELTA);
+        assertArrayEquals(new double[]{12, 14}, valuesOf(FactorOperations.sumOut(ac, 0)), DELTA);
+        assertArrayEquals(new double[]{30, 400, 90, 1000}, valuesOf(FactorOperations.multiply(ac, c)), DELTA);
+        assertEquals(26, ac.sum(), DELTA);
+    }
+
+    @Test
+    public void testMultiplyNonContiguousViews() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        DenseFactor bc = new DenseFactor(new Variable[]{B, C}, new double[]{1, 10, 2, 20, 3, 30});
+        DenseFactor ab = abc.restrict(2, 1); // C=F, every other entry of the table
+        DenseFactor b = bc.restrict(1, 0); // C=T
+
+        assertFalse(ab.isContiguous());
+        assertFalse(b.isContiguous());
+        assertArrayEquals(new double[]{2, 4, 6, 8, 10, 12}, valuesOf(ab), DELTA);
+        assertArrayEquals(new double[]{1, 2, 3}, valuesOf(b), DELTA);
+
+        DenseFactor product = FactorOperations.multiply(ab, b);
+
+        assertArrayEquals(new int[]{0, 1}, product.getScope());
+        assertArrayEquals(new double[]{2, 8, 18, 8, 20, 36}, valuesOf(product), DELTA);
+        assertArrayEquals(new double[]{2, 8, 8, 20, 18, 36}, valuesOf(FactorOperations.multiply(b, ab)), DELTA);
+    }
+
+    @Test
+    public void testMarginalizeNonContiguousView() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        DenseFactor ab = abc.restrict(2, 1);
+
+        assertArrayEquals(new double[]{10, 14, 18}, valuesOf(FactorOperations.sumOut(ab, 0)), DELTA);
+        assertArrayEquals(new double[]{12, 30}, valuesOf(FactorOperations.sumOut(ab, 1)), DELTA);
+        assertArrayEquals(new double[]{8, 10, 12}, valuesOf(FactorOperations.maxOut(ab, 0)), DELTA);
+        assertArrayEquals(new double[]{6, 12}, valuesOf(FactorOperations.maxOut(ab, 1)), DELTA);
+        assertEquals(42, ab.sum(), DELTA);
+    }
+
+    @Test
+    public void testKernelsOnViewRestrictedTwice() {
+        DenseFactor abc = new DenseFactor(new Variable[]{A, B, C}, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        DenseFactor ac = abc.restrict(1, 2); // B=z
+        DenseFactor c = ac.restrict(0, 1); // B=z, A=F
+        DenseFactor a = abc.restrict(2, 1).restrict(1, 0); // C=F, B=x
+
+        assertArrayEquals(new double[]{5, 6, 11, 12}, valuesOf(ac), DELTA);
+        assertArrayEquals(new double[]{11, 12}, valuesOf(c), DELTA);
+        assertArrayEquals(new double[]{2, 8}, valuesOf(a), DELTA);
+        assertEquals(23, FactorOperations.sumOut(c, 0).getValue(0), DELTA);
+        assertArrayEquals(new double[]{10, 12, 88, 96}, valuesOf(FactorOperations.multiply(ac, a)), DELTA);
+        assertArrayEquals(new double[]{55, 72, 121, 144}, valuesOf(FactorOperations.multiply(ac, c)), DELTA);
+    }
+
+    @Test
+    public void testParallelKernelsMatchSingleThreaded() {
+        Variable d = new Variable(3, "D", List.of("a", "b", "c", "d"));
+        Random random = new Random(42);
+        double[] values = new double[2 * 3 * 2 * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+        }
+        DenseFactor abcd = new DenseFactor(new Variable[]{A, B, C, d}, values);
+        DenseFactor abd = abcd.restrict(2, 1);
+        DenseFactor db = new DenseFactor(new Variable[]{d, B}, Arrays.copyOf(values, 12));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int threshold : new int[]{1, 3, 5}) {
+                for (DenseFactor table : List.of(abcd, abd)) {
+                    for (int position = 0; position < table.getNumVariables(); position++) {
+                        DenseFactor parallel = new DenseFactor(table.getVariablesWithout(position));
+                        FactorOperations.marginalize(table, position, FactorOperations.Reduction.SUM, parallel, pool, threshold);
+                        assertArrayEquals(valuesOf(FactorOperations.sumOut(table, position)), valuesOf(parallel), 0);
+                    }
+                    assertArrayEquals(valuesOf(FactorOperations.multiply(table, db)),
+                                      valuesOf(FactorOperations.combine(table, db, false, pool, threshold, null)), 0);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSpilledKernelsMatchHeap(@TempDir Path spillDirectory) {
+        Variable d = new Variable(3, "D", List.of("a", "b", "c", "d"));
+        Random random = new Random(7);
+        double[] values = new double[2 * 3 * 2 * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+        }
+        DenseFactor abcd = new DenseFactor(new Variable[]{A, B, C, d}, values);
+        // The same table in blocks of 8 values, so every walk crosses block boundaries
+        DoubleBuffer[] blocks = new DoubleBuffer[6];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = DoubleBuffer.wrap(Arrays.copyOfRange(values, i * 8, i * 8 + 8));
+        }
+        DenseFactor blocked = new DenseFactor(new Variable[]{A, B, C, d}, blocks, 3);
+        DenseFactor db = new DenseFactor(new Variable[]{d, B}, Arrays.copyOf(values, 12));
+
+        MemoryBudget budget = new MemoryBudget(8 * Double.BYTES, spillDirectory);
+        assertFalse(budget.allocate(new Variable[]{A, B}).isBuffered());
+        for (DenseFactor table : List.of(blocked, blocked.restrict(2, 1))) {
+            DenseFactor heapTable = table == blocked ? abcd : abcd.restrict(2, 1);
+            assertEquals(heapTable.sum(), table.sum(), DELTA);
+            for (int position = 0; position < table.getNumVariables(); position++) {
+                assertArrayEquals(valuesOf(FactorOperations.sumOut(heapTable, position)),
+                                  valuesOf(FactorOperations.sumOut(table, position, null, budget)), 0);
+            }
+            DenseFactor spilled = FactorOperations.multiply(table, db, null, budget);
+            assertTrue(spilled.isBuffered());
+            assertArrayEquals(valuesOf(FactorOperations.multiply(heapTable, db)), valuesOf(spilled), 0);
+        }
+        assertTrue(budget.getSpilledFactorCount() > 0);
+    }
+}
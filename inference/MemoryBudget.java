@@ -0,0 +1,131 @@
+package inference;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class decides where the tables of intermediate factors are stored.
+ * A table up to the heap limit is a heap array. A larger table is stored in a memory-mapped temporary file,
+ * split in blocks of at most 2^BLOCK_SHIFT values, so it lives in the page cache instead of the heap and a
+ * query that builds it runs slower instead of failing with an OutOfMemoryError.
+ * The factor kernels write their outputs in order, one range of entries after the other, so a spilled table
+ * is streamed to its file block by block.
+ * The file of a spilled table is deleted as soon as it is mapped, and its disk space is given back when the
+ * table is garbage collected.
+ */
+public class MemoryBudget {
+    public static final int BLOCK_SHIFT = 27; // A spilled table is mapped in blocks of 2^27 values, 1 GiB each
+
+    private final long maxHeapFactorBytes; // The size in bytes above which a table is spilled to disk
+    private final Path spillDirectory; // The directory of the temporary files of spilled tables
+    private final AtomicLong spilledFactorCount = new AtomicLong(); // The number of tables spilled so far
+    private final AtomicLong spilledBytes = new AtomicLong(); // The number of bytes spilled so far
+
+    /**
+     * Constructor for MemoryBudget, spilling to the default temporary directory.
+     *
+     * @param maxHeapFactorBytes the size in bytes above which a table is stored in a memory-mapped file
+     */
+    public MemoryBudget(long maxHeapFactorBytes) {
+        this(maxHeapFactorBytes, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructor for MemoryBudget.
+     *
+     * @param maxHeapFactorBytes the size in bytes above which a table is stored in a memory-mapped file
+     * @param spillDirectory     the directory of the temporary files of spilled tables
+     */
+    public MemoryBudget(long maxHeapFactorBytes, Path spillDirectory) {
+        if (maxHeapFactorBytes < 0) {
+            throw new IllegalArgumentException("The heap limit of a factor cannot be negative");
+        }
+        this.maxHeapFactorBytes = maxHeapFactorBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Creates a memory budget that spills the tables larger than a fraction of the maximum heap size.
+     *
+     * @param fraction the fraction of the maximum heap size, between 0 and 1
+     * @return the memory budget
+     */
+    public static MemoryBudget ofHeapFraction(double fraction) {
+        return new MemoryBudget((long) (Runtime.getRuntime().maxMemory() * fraction));
+    }
+
+    /**
+     * Gets the size in bytes above which a table is stored in a memory-mapped file.
+     *
+     * @return the size in bytes
+     */
+    public long getMaxHeapFactorBytes() {
+        return maxHeapFactorBytes;
+    }
+
+    /**
+     * Gets the number of tables spilled to disk so far.
+     *
+     * @return the number of tables
+     */
+    public long getSpilledFactorCount() {
+        return spilledFactorCount.get();
+    }
+
+    /**
+     * Gets the number of bytes spilled to disk so far.
+     *
+     * @return the number of bytes
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    /**
+     * Allocates an empty table, with all values set to zero, on the heap or in a memory-mapped file depending on its size.
+     *
+     * @param variables the ordered scope of the table
+     * @return the table
+     */
+    public DenseFactor allocate(Variable[] variables) {
+        int size = DenseFactor.tableSize(variables);
+        long bytes = (long) size * Double.BYTES;
+        if (bytes <= maxHeapFactorBytes) {
+            return new DenseFactor(variables);
+        }
+
+        try {
+            Path file = Files.createTempFile(spillDirectory, "factor", ".spill");
+            DoubleBuffer[] blocks = new DoubleBuffer[(int) ((size - 1L >> BLOCK_SHIFT) + 1)];
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                for (int i = 0; i < blocks.length; i++) {
+                    long start = (long) i << BLOCK_SHIFT;
+                    long length = Math.min(1L << BLOCK_SHIFT, size - start);
+                    // Mapping past the end of the file grows it, and the new pages read as zeros
+                    blocks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * Double.BYTES, length * Double.BYTES)
+                                       .order(ByteOrder.nativeOrder())
+                                       .asDoubleBuffer();
+                }
+            } finally {
+                // A mapping outlives its file on POSIX systems, elsewhere the file is removed when the JVM exits
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+            spilledFactorCount.incrementAndGet();
+            spilledBytes.addAndGet(bytes);
+            return new DenseFactor(variables, blocks, BLOCK_SHIFT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error spilling a factor of " + bytes + " bytes to " + spillDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package inference;
+
+/**
+ * This heuristic eliminates the variable with the fewest neighbors first.
+ */
+public class MinDegreeHeuristic implements EliminationOrderHeuristic {
+
+    @Override
+    public double cost(EliminationGraph graph, int variableId) {
+        return graph.getNeighbors(variableId).cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return "min-degree";
+    }
+}
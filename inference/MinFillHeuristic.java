@@ -0,0 +1,41 @@
+package inference;
+
+import java.util.BitSet;
+
+/**
+ * This heuristic eliminates the variable that adds the fewest fill edges first.
+ * A fill edge connects two neighbors of the variable that were not adjacent before its elimination.
+ */
+public class MinFillHeuristic implements EliminationOrderHeuristic {
+
+    @Override
+    public double cost(EliminationGraph graph, int variableId) {
+        BitSet neighbors = graph.getNeighbors(variableId);
+        double fill = 0;
+        for (int first = neighbors.nextSetBit(0); first >= 0; first = neighbors.nextSetBit(first + 1)) {
+            for (int second = neighbors.nextSetBit(first + 1); second >= 0; second = neighbors.nextSetBit(second + 1)) {
+                if (!graph.isAdjacent(first, second)) {
+                    fill += edgeWeight(graph, first, second);
+                }
+            }
+        }
+        return fill;
+    }
+
+    /**
+     * Gets the weight of a fill edge.
+     *
+     * @param graph  the current interaction graph
+     * @param first  the id of the first endpoint
+     * @param second the id of the second endpoint
+     * @return the weight of the edge
+     */
+    protected double edgeWeight(EliminationGraph graph, int first, int second) {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "min-fill";
+    }
+}
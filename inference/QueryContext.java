@@ -0,0 +1,99 @@
+package inference;
+
+import core.VariableRegistry;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the per-query state of a probabilistic query: the query variable and the observed outcome of
+ * every evidence variable, indexed by variable id. The network itself is never marked with the evidence,
+ * so any number of queries can run on one network at the same time.
+ */
+public final class QueryContext {
+    private final int queryVariableId; // The id of the query variable
+    private final int queryOutcomeIndex; // The index of the queried outcome
+    private final int[] evidenceIds; // The ids of the evidence variables, in the order of the query
+    private final int[] evidenceOutcomes; // The observed outcome index of each variable by id, -1 if it is not observed
+
+    /**
+     * Constructor for QueryContext.
+     *
+     * @param registry               the registry of the network the query runs on
+     * @param queryVariableId        the id of the query variable
+     * @param queryOutcomeIndex      the index of the queried outcome
+     * @param evidenceIds            the ids of the evidence variables
+     * @param evidenceOutcomeIndexes the index of the observed outcome of each evidence variable
+     */
+    public QueryContext(VariableRegistry registry, int queryVariableId, int queryOutcomeIndex, int[] evidenceIds,
+                        int[] evidenceOutcomeIndexes) {
+        this.queryVariableId = queryVariableId;
+        this.queryOutcomeIndex = queryOutcomeIndex;
+        this.evidenceIds = evidenceIds.clone();
+        this.evidenceOutcomes = new int[registry.size()];
+        Arrays.fill(this.evidenceOutcomes, -1);
+        for (int i = 0; i < evidenceIds.length; i++) {
+            if (this.evidenceOutcomes[evidenceIds[i]] < 0) { // A variable observed twice keeps its first outcome
+                this.evidenceOutcomes[evidenceIds[i]] = evidenceOutcomeIndexes[i];
+            }
+        }
+    }
+
+    /**
+     * Creates the context of a parsed query.
+     *
+     * @param query    the query
+     * @param registry the registry of the network the query runs on
+     * @return the context of the query
+     */
+    public static QueryContext of(VariableEliminationQuery query, VariableRegistry registry) {
+        return new QueryContext(registry, query.getQueryVariableId(), query.getQueryOutcomeIndex(), query.getEvidenceIds(),
+                                query.getEvidenceOutcomeIndexes());
+    }
+
+    /**
+     * Gets the id of the query variable.
+     *
+     * @return the id of the query variable
+     */
+    public int getQueryVariableId() {
+        return this.queryVariableId;
+    }
+
+    /**
+     * Gets the index of the queried outcome.
+     *
+     * @return the index of the queried outcome
+     */
+    public int getQueryOutcomeIndex() {
+        return this.queryOutcomeIndex;
+    }
+
+    /**
+     * Gets the ids of the evidence variables.
+     *
+     * @return the ids of the evidence variables, in the order of the query
+     */
+    public int[] getEvidenceIds() {
+        return this.evidenceIds;
+    }
+
+    /**
+     * Checks if a variable is observed in this query.
+     *
+     * @param variableId the id of the variable
+     * @return true if the variable is an evidence variable of the query, false otherwise
+     */
+    public boolean isEvidence(int variableId) {
+        return this.evidenceOutcomes[variableId] >= 0;
+    }
+
+    /**
+     * Gets the observed outcome of a variable.
+     *
+     * @param variableId the id of the variable
+     * @return the index of the observed outcome, or -1 if the variable is not observed
+     */
+    public int getEvidenceOutcome(int variableId) {
+        return this.evidenceOutcomes[variableId];
+    }
+}
@@ -0,0 +1,205 @@
+package inference;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class describes how variable elimination would answer a query, predicted from the scopes and cardinalities
+ * of its factors without computing any probability: the elimination order, the size of the factors built by every
+ * step, the number of multiplications and additions, and the peak memory taken by intermediate factors.
+ * The predictions follow the same factor products as the query, so the operation counts are exactly those of
+ * {@link VariableElimination#executeQuery()}. Sizes are doubles so a pathological order is reported instead of overflowing.
+ */
+public class QueryExplanation {
+    private final boolean directCpt; // True if the query is read from a CPT without elimination
+    private final int prunedFactorCount; // Number of factors removed by the relevance filter
+    private final List<Step> steps; // The eliminated variables in order, with the factors of each step
+    private final double multiplications; // Predicted number of multiplications
+    private final double additions; // Predicted number of additions
+    private final double largestFactorEntries; // Predicted number of entries of the largest factor product
+    private final double peakBytes; // Predicted largest number of bytes held by intermediate factors at once
+
+    /**
+     * One elimination step: the factors holding a variable are multiplied and the variable is summed out.
+     */
+    public static class Step {
+        private final String variable; // The name of the eliminated variable
+        private final int factorsIn; // Number of factors holding the variable
+        private final double productEntries; // Number of entries of the product of the factors
+        private final double outputEntries; // Number of entries of the product once the variable is summed out
+
+        /**
+         * Constructor for Step.
+         *
+         * @param variable       the name of the eliminated variable
+         * @param factorsIn      the number of factors holding the variable
+         * @param productEntries the number of entries of the product of the factors
+         * @param outputEntries  the number of entries once the variable is summed out
+         */
+        public Step(String variable, int factorsIn, double productEntries, double outputEntries) {
+            this.variable = variable;
+            this.factorsIn = factorsIn;
+            this.productEntries = productEntries;
+            this.outputEntries = outputEntries;
+        }
+
+        /**
+         * Gets the name of the eliminated variable.
+         *
+         * @return the name of the variable
+         */
+        public String getVariable() {
+            return variable;
+        }
+
+        /**
+         * Gets the number of factors holding the variable.
+         *
+         * @return the number of factors
+         */
+        public int getFactorsIn() {
+            return factorsIn;
+        }
+
+        /**
+         * Gets the number of entries of the product of the factors holding the variable.
+         *
+         * @return the number of entries
+         */
+        public double getProductEntries() {
+            return productEntries;
+        }
+
+        /**
+         * Gets the number of entries of the factor left once the variable is summed out.
+         *
+         * @return the number of entries
+         */
+        public double getOutputEntries() {
+            return outputEntries;
+        }
+
+        @Override
+        public String toString() {
+            return variable + ":" + factorsIn + "->" + format(productEntries) + "->" + format(outputEntries);
+        }
+    }
+
+    /**
+     * Constructor for QueryExplanation.
+     *
+     * @param directCpt            true if the query is read from a CPT without elimination
+     * @param prunedFactorCount    the number of factors removed by the relevance filter
+     * @param steps                the elimination steps in order
+     * @param multiplications      the predicted number of multiplications
+     * @param additions            the predicted number of additions
+     * @param largestFactorEntries the predicted number of entries of the largest factor product
+     * @param peakBytes            the predicted largest number of bytes held by intermediate factors at once
+     */
+    public QueryExplanation(boolean directCpt, int prunedFactorCount, List<Step> steps, double multiplications,
+                            double additions, double largestFactorEntries, double peakBytes) {
+        this.directCpt = directCpt;
+        this.prunedFactorCount = prunedFactorCount;
+        this.steps = steps;
+        this.multiplications = multiplications;
+        this.additions = additions;
+        this.largestFactorEntries = largestFactorEntries;
+        this.peakBytes = peakBytes;
+    }
+
+    /**
+     * Creates the explanation of a query that is read from a CPT without elimination.
+     *
+     * @return the explanation
+     */
+    public static QueryExplanation ofDirectCpt() {
+        return new QueryExplanation(true, 0, List.of(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Checks if the query is read from a CPT without elimination.
+     *
+     * @return true if no factor is multiplied or summed out
+     */
+    public boolean isDirectCpt() {
+        return directCpt;
+    }
+
+    /**
+     * Gets the number of factors the relevance filter removes.
+     *
+     * @return the number of pruned factors
+     */
+    public int getPrunedFactorCount() {
+        return prunedFactorCount;
+    }
+
+    /**
+     * Gets the elimination steps, in order. Variables of the order that no factor holds are not steps.
+     *
+     * @return the steps
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the predicted number of multiplications.
+     *
+     * @return the number of multiplications
+     */
+    public double getMultiplications() {
+        return multiplications;
+    }
+
+    /**
+     * Gets the predicted number of additions.
+     *
+     * @return the number of additions
+     */
+    public double getAdditions() {
+        return additions;
+    }
+
+    /**
+     * Gets the predicted number of entries of the largest factor product, the quantity that decides if a query fits in memory.
+     *
+     * @return the number of entries
+     */
+    public double getLargestFactorEntries() {
+        return largestFactorEntries;
+    }
+
+    /**
+     * Gets the predicted largest number of bytes held by intermediate factors at once.
+     * The CPTs of the network and the views over them are shared and not counted.
+     *
+     * @return the number of bytes
+     */
+    public double getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * Formats a predicted count as an integer.
+     *
+     * @param value the count
+     * @return the count without a fraction or an exponent
+     */
+    private static String format(double value) {
+        return String.format("%.0f", value);
+    }
+
+    @Override
+    public String toString() {
+        if (directCpt) {
+            return "directCpt";
+        }
+        return "multiplications=" + format(multiplications) +
+                ",additions=" + format(additions) +
+                ",largestFactor=" + format(largestFactorEntries) +
+                ",peakBytes=" + format(peakBytes) +
+                ",pruned=" + prunedFactorCount +
+                ",steps=[" + steps.stream().map(Step::toString).collect(Collectors.joining(" ")) + "]";
+    }
+}
@@ -0,0 +1,74 @@
+package inference;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * This class stores the result of a probabilistic query, including the probability and the number of operations performed.
+ */
+public class QueryResult {
+    private double probability;
+    private int additionOperations;
+    private int multiplicationOperations;
+
+    /**
+     * Increments the count of addition operations.
+     *
+     * @param incrementBy the number to increment by
+     */
+    public void incrementAdditionOperations(int incrementBy) {
+        additionOperations += incrementBy;
+    }
+
+    /**
+     * Increments the count of multiplication operations.
+     *
+     * @param incrementBy the number to increment by
+     */
+    public void incrementMultiplicationOperations(int incrementBy) {
+        multiplicationOperations += incrementBy;
+    }
+
+    /**
+     * Sets the probability, rounding it to 5 decimal places.
+     *
+     * @param probability the probability to set
+     */
+    public void setProbability(double probability) {
+        BigDecimal result = new BigDecimal(probability).setScale(5, RoundingMode.HALF_UP);
+        this.probability = result.doubleValue();
+    }
+
+    /**
+     * Gets the probability, rounded to 5 decimal places.
+     *
+     * @return the probability
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * Gets the number of addition operations.
+     *
+     * @return the number of additions
+     */
+    public int getAdditionOperations() {
+        return additionOperations;
+    }
+
+    /**
+     * Gets the number of multiplication operations.
+     *
+     * @return the number of multiplications
+     */
+    public int getMultiplicationOperations() {
+        return multiplicationOperations;
+    }
+
+    @Override
+    public String toString() {
+        String formattedProbability = String.format("%.5f", probability);
+        return formattedProbability + "," + additionOperations + "," + multiplicationOperations;
+    }
+}
@@ -0,0 +1,194 @@
+package inference;
+
+import core.BayesianNetwork;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * This class is a bounded LRU cache of query results for one Bayesian Network, keyed by the normalized query signature.
+ * Entries are evicted, least recently used first, when their total weight exceeds the maximum weight.
+ * The cache is cleared automatically when the version of the network changes.
+ * All methods are synchronized, so one cache can be shared by concurrent queries.
+ */
+public class QueryResultCache {
+    private final BayesianNetwork network; // The network the cached results were computed on
+    private final long maximumWeight; // The largest total weight of the entries
+    private final ToLongBiFunction<QuerySignature, QueryResult> weigher; // Computes the weight of an entry
+    private final LinkedHashMap<QuerySignature, QueryResult> entries = new LinkedHashMap<>(16, 0.75f, true); // Entries in access order
+    private final Map<QuerySignature, Long> weights = new HashMap<>(); // The weight of each entry
+    private long totalWeight; // The total weight of the entries
+    private long networkVersion; // The version of the network the entries were computed on
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Constructor for a cache that holds at most the given number of results.
+     *
+     * @param network     the Bayesian Network
+     * @param maximumSize the largest number of cached results
+     */
+    public QueryResultCache(BayesianNetwork network, long maximumSize) {
+        this(network, maximumSize, (signature, result) -> 1);
+    }
+
+    /**
+     * Constructor for a cache bounded by the total weight of its results.
+     *
+     * @param network       the Bayesian Network
+     * @param maximumWeight the largest total weight of the cached results
+     * @param weigher       computes the weight of a result, it must not be negative
+     */
+    public QueryResultCache(BayesianNetwork network, long maximumWeight, ToLongBiFunction<QuerySignature, QueryResult> weigher) {
+        this.network = network;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.networkVersion = network.getVersion();
+    }
+
+    /**
+     * Gets the cached result of a query.
+     *
+     * @param signature the signature of the query
+     * @return the cached result, or null if the query is not cached
+     */
+    public synchronized QueryResult get(QuerySignature signature) {
+        invalidateIfNetworkChanged();
+        QueryResult result = entries.get(signature);
+        if (result != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches the result of a query, evicting the least recently used results if the cache is over its maximum weight.
+     *
+     * @param signature the signature of the query
+     * @param result    the result of the query
+     */
+    public synchronized void put(QuerySignature signature, QueryResult result) {
+        invalidateIfNetworkChanged();
+        long weight = weigher.applyAsLong(signature, result);
+        if (weight > maximumWeight) {
+            return;
+        }
+
+        entries.put(signature, result);
+        Long previousWeight = weights.put(signature, weight);
+        totalWeight += weight - (previousWeight == null ? 0 : previousWeight);
+
+        Iterator<Map.Entry<QuerySignature, QueryResult>> iterator = entries.entrySet().iterator();
+        while (totalWeight > maximumWeight && iterator.hasNext()) {
+            QuerySignature eldest = iterator.next().getKey();
+            iterator.remove();
+            totalWeight -= weights.remove(eldest);
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Gets the cached result of a query, computing and caching it on a miss.
+     * The result is computed outside the lock, so two threads missing on the same query may both compute it.
+     *
+     * @param signature the signature of the query
+     * @param compute   computes the result of the query
+     * @return the result of the query
+     */
+    public QueryResult getOrCompute(QuerySignature signature, Supplier<QueryResult> compute) {
+        QueryResult result = get(signature);
+        if (result == null) {
+            long version = network.getVersion();
+            result = compute.get();
+            if (network.getVersion() == version) { // Do not cache a result computed while the network changed
+                put(signature, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weights.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return the number of results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of lookups that found a cached result.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of lookups that did not find a cached result.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of results evicted to keep the cache under its maximum weight.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of times the cache was cleared because the network changed.
+     *
+     * @return the invalidation count
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * Clears the cache if the network changed since the cached results were computed.
+     */
+    private void invalidateIfNetworkChanged() {
+        if (network.getVersion() != networkVersion) {
+            clear();
+            networkVersion = network.getVersion();
+            invalidationCount++;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QueryResultCache{" +
+                "size=" + entries.size() +
+                ", weight=" + totalWeight +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                ", invalidations=" + invalidationCount +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class QueryResultCacheTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork();
+    }
+
+    private static QuerySignature signature(int queryVariableId) {
+        return new QuerySignature(queryVariableId, 0, new int[0], new int[0]);
+    }
+
+    private static QueryResult result(double probability) {
+        QueryResult result = new QueryResult();
+        result.setProbability(probability);
+        return result;
+    }
+
+    private QueryResult execute(String line) {
+        VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line));
+        ve.executeQuery();
+        return ve.getQueryResult();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedResultIsEvicted() {
+        QueryResultCache cache = new QueryResultCache(network, 2);
+        QueryResult first = result(0.1);
+        cache.put(signature(0), first);
+        cache.put(signature(1), result(0.2));
+        assertSame(first, cache.get(signature(0)));
+
+        cache.put(signature(2), result(0.3));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(first, cache.get(signature(0)));
+        assertNull(cache.get(signature(1)));
+        assertEquals(0.3, cache.get(signature(2)).getProbability());
+    }
+
+    @Test
+    public void testResultsAreEvictedByWeight() {
+        QueryResultCache cache = new QueryResultCache(network, 8, (signature, result) -> signature.getQueryVariableId() + 1);
+        cache.put(signature(2), result(0.1)); // Weight 3
+        cache.put(signature(1), result(0.2)); // Weight 2
+        cache.put(signature(4), result(0.3)); // Weight 5, evicts the result of weight 3
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(signature(2)));
+
+        cache.put(signature(8), result(0.4)); // Weight 9 is more than the cache holds and is not cached
+        assertNull(cache.get(signature(8)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testChangingACptInvalidatesTheCache() {
+        QueryResultCache cache = new QueryResultCache(network, 10);
+        QuerySignature signature = QuerySignature.of(new VariableEliminationQueryParser(network).parseQuery("P(B=T|J=T,M=T) A-E"));
+        QueryResult before = cache.getOrCompute(signature, () -> execute("P(B=T|J=T,M=T) A-E"));
+
+        // Edit the prior of B in place, as a user of the network would
+        DenseFactor prior = network.getFactorList().get(0).getTable();
+        prior.setValue(0, 0.5);
+        prior.setValue(1, 0.5);
+
+        QueryResult after = cache.getOrCompute(signature, () -> execute("P(B=T|J=T,M=T) A-E"));
+        assertEquals(1, cache.getInvalidationCount());
+        assertNotEquals(before.getProbability(), after.getProbability());
+        assertEquals(execute("P(B=T|J=T,M=T) A-E").getProbability(), after.getProbability());
+
+        network.getFactorList().get(1).setTable(network.getFactorList().get(1).getTable().copy());
+        assertNull(cache.get(signature));
+        assertEquals(2, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testHitsAndMissesAreCounted() {
+        QueryResultCache cache = new QueryResultCache(network, 10);
+        int[] computations = new int[1];
+        for (String line : new String[]{"P(B=T|J=T,M=T) A-E", "P(B=T|M=T,J=T) E-A", "P(J=T|B=F) A-E-M", "P(B=T|J=T,M=T)"}) {
+            cache.getOrCompute(QuerySignature.of(new VariableEliminationQueryParser(network).parseQuery(line)), () -> {
+                computations[0]++;
+                return execute(line);
+            });
+        }
+
+        assertEquals(2, computations[0]);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getInvalidationCount());
+    }
+}
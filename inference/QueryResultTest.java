@@ -0,0 +1,60 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import junctiontree.JunctionTreeCompiler;
+import junctiontree.JunctionTreeEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryResultTest {
+
+    // J is never true, so evidence J=T has probability zero
+    private static final String NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>A</FOR><TABLE>0.3 0.7</TABLE></DEFINITION>
+            <DEFINITION><FOR>B</FOR><GIVEN>A</GIVEN><TABLE>0.6 0.4 0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>B</GIVEN><TABLE>0 1 0 1</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    @Test
+    public void testProbabilityIsRoundedToFiveDecimals() {
+        QueryResult result = new QueryResult();
+        result.setProbability(0.123456789);
+        result.incrementAdditionOperations(3);
+        result.incrementMultiplicationOperations(4);
+        result.incrementMultiplicationOperations(2);
+
+        assertEquals(0.12346, result.getProbability());
+        assertEquals("0.12346,3,6", result.toString());
+    }
+
+    @Test
+    public void testEvidenceWithProbabilityZero(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("network.xml");
+        Files.writeString(networkFile, NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        BayesianNetwork network = parser.getBayesianNetwork().snapshot();
+        VariableEliminationQuery query = new VariableEliminationQueryParser(network).parseQuery("P(A=T|J=T) B");
+
+        VariableElimination ve = new VariableElimination(network, query);
+        ve.executeQuery();
+        QueryResult junctionTreeResult = new JunctionTreeEngine(new JunctionTreeCompiler().compile(network)).executeQuery(query);
+
+        // The probability the exact engines have always output for impossible evidence
+        assertTrue(ve.getResult().startsWith("0.00000,"));
+        assertTrue(junctionTreeResult.toString().startsWith("0.00000,"));
+    }
+}
@@ -0,0 +1,113 @@
+package inference;
+
+import java.util.Arrays;
+
+/**
+ * This class represents the normalized signature of a probabilistic query: the query variable and outcome,
+ * and the evidence sorted by variable id. Queries that differ only in the order of their evidence or in their
+ * elimination order have equal signatures.
+ */
+public final class QuerySignature {
+    private final int queryVariableId; // The id of the query variable
+    private final int queryOutcomeIndex; // The index of the queried outcome
+    private final int[] evidence; // The (variable id, outcome index) pairs of the evidence sorted by id, flattened
+    private final int hashCode; // The cached hash code
+
+    /**
+     * Constructor for QuerySignature.
+     *
+     * @param queryVariableId        the id of the query variable
+     * @param queryOutcomeIndex      the index of the queried outcome
+     * @param evidenceIds            the ids of the evidence variables, in any order
+     * @param evidenceOutcomeIndexes the index of the observed outcome of each evidence variable
+     */
+    public QuerySignature(int queryVariableId, int queryOutcomeIndex, int[] evidenceIds, int[] evidenceOutcomeIndexes) {
+        this.queryVariableId = queryVariableId;
+        this.queryOutcomeIndex = queryOutcomeIndex;
+        this.evidence = sortEvidence(evidenceIds, evidenceOutcomeIndexes);
+        this.hashCode = 31 * (31 * queryVariableId + queryOutcomeIndex) + Arrays.hashCode(evidence);
+    }
+
+    /**
+     * Creates the signature of a parsed query.
+     *
+     * @param query the query
+     * @return the signature of the query
+     */
+    public static QuerySignature of(VariableEliminationQuery query) {
+        return new QuerySignature(query.getQueryVariableId(), query.getQueryOutcomeIndex(), query.getEvidenceIds(),
+                                  query.getEvidenceOutcomeIndexes());
+    }
+
+    /**
+     * Gets the id of the query variable.
+     *
+     * @return the id of the query variable
+     */
+    public int getQueryVariableId() {
+        return this.queryVariableId;
+    }
+
+    /**
+     * Gets the index of the queried outcome.
+     *
+     * @return the index of the queried outcome
+     */
+    public int getQueryOutcomeIndex() {
+        return this.queryOutcomeIndex;
+    }
+
+    /**
+     * Gets the evidence of the query.
+     *
+     * @return the (variable id, outcome index) pairs sorted by variable id, flattened into one array
+     */
+    public int[] getEvidence() {
+        return this.evidence;
+    }
+
+    /**
+     * Sorts the evidence by variable id so that the same evidence given in any order has the same key.
+     *
+     * @param evidenceIds            the ids of the evidence variables
+     * @param evidenceOutcomeIndexes the index of the observed outcome of each evidence variable
+     * @return the (variable id, outcome index) pairs sorted by variable id, flattened into one array
+     */
+    private static int[] sortEvidence(int[] evidenceIds, int[] evidenceOutcomeIndexes) {
+        long[] pairs = new long[evidenceIds.length];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = ((long) evidenceIds[i] << 32) | (evidenceOutcomeIndexes[i] & 0xffffffffL);
+        }
+        Arrays.sort(pairs);
+
+        int[] evidence = new int[pairs.length * 2];
+        for (int i = 0; i < pairs.length; i++) {
+            evidence[2 * i] = (int) (pairs[i] >>> 32);
+            evidence[2 * i + 1] = (int) pairs[i];
+        }
+        return evidence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QuerySignature signature)) return false;
+
+        return queryVariableId == signature.queryVariableId && queryOutcomeIndex == signature.queryOutcomeIndex
+                && Arrays.equals(evidence, signature.evidence);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "QuerySignature{" +
+                "queryVariableId=" + queryVariableId +
+                ", queryOutcomeIndex=" + queryOutcomeIndex +
+                ", evidence=" + Arrays.toString(evidence) +
+                '}';
+    }
+}
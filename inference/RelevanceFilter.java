@@ -0,0 +1,86 @@
+package inference;
+
+import bayesball.BayesBall;
+import bayesball.BayesBallQuery;
+import core.NetworkGraph;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class finds the CPTs that are needed to answer a probabilistic query, before any of them is multiplied.
+ * A CPT is requisite when its variable is an ancestor of the query or of the evidence, so that it is not barren,
+ * and when a dummy parent added to its variable is not d-separated from the query variable given the evidence.
+ * The d-separation tests for all the variables are answered by a single Bayes-Ball pass from the query variable.
+ */
+public class RelevanceFilter {
+    private final NetworkGraph graph; // The compiled graph of the Bayesian Network, indexed by variable id
+
+    /**
+     * Constructor for RelevanceFilter.
+     *
+     * @param graph the compiled graph of the Bayesian Network
+     */
+    public RelevanceFilter(NetworkGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Removes the factors whose CPT is not requisite for the query.
+     *
+     * @param factors the factors of the network, each one the CPT of its parent variable
+     * @param context the query
+     * @return the number of factors removed
+     */
+    public int filter(List<Factor> factors, QueryContext context) {
+        BitSet requisiteVariables = findRequisiteVariables(context);
+        int numFactors = factors.size();
+        factors.removeIf(factor -> !requisiteVariables.get(factor.getParentVariable().getId()));
+        return numFactors - factors.size();
+    }
+
+    /**
+     * Finds the variables whose CPT is requisite for the query.
+     *
+     * @param context the query
+     * @return the ids of the variables with a requisite CPT
+     */
+    public BitSet findRequisiteVariables(QueryContext context) {
+        BitSet requisiteVariables = findAncestralVariables(context);
+        requisiteVariables.and(findTopMarkedVariables(context));
+        return requisiteVariables;
+    }
+
+    /**
+     * Finds the query variable, the evidence variables and all their ancestors.
+     * The CPTs of the other variables are barren: they sum to one whatever the query.
+     *
+     * @param context the query
+     * @return the ids of the ancestral variables
+     */
+    private BitSet findAncestralVariables(QueryContext context) {
+        BitSet ancestralVariables = graph.getAncestralSet(context.getEvidenceIds());
+        ancestralVariables.or(graph.getAncestralSet(context.getQueryVariableId()));
+        return ancestralVariables;
+    }
+
+    /**
+     * Passes the Bayes-Ball from the query variable and finds the variables it marks on top.
+     * A dummy parent of a variable is d-connected to the query variable given the evidence exactly when the ball
+     * passes through the variable to its parents, so only the CPTs of the top-marked variables can change the query.
+     *
+     * @param context the query
+     * @return the ids of the top-marked variables
+     */
+    private BitSet findTopMarkedVariables(QueryContext context) {
+        BayesBallQuery bayesBallQuery = new BayesBallQuery();
+        bayesBallQuery.setStartVariable(graph.getVariable(context.getQueryVariableId()));
+        for (int evidenceId : context.getEvidenceIds()) {
+            bayesBallQuery.addEvidenceVariable(graph.getVariable(evidenceId));
+        }
+
+        BayesBall bayesBall = new BayesBall(bayesBallQuery, graph);
+        bayesBall.executeQuery();
+        return bayesBall.getTopMarked();
+    }
+}
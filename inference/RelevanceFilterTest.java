@@ -0,0 +1,170 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RelevanceFilterTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private static final String[] NAMES = {"B", "E", "A", "J", "M"}; // The variables of the joint, in the order of its assignments
+
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        network = parser.getBayesianNetwork().snapshot();
+    }
+
+    private Set<String> findRequisiteVariables(String line) {
+        QueryContext context = QueryContext.of(new VariableEliminationQueryParser(network).parseQuery(line), network.getRegistry());
+        BitSet requisite = new RelevanceFilter(network.getGraph()).findRequisiteVariables(context);
+        return requisite.stream().mapToObj(id -> network.getRegistry().getVariable(id).getName()).collect(Collectors.toSet());
+    }
+
+    private VariableElimination eliminate(String line) {
+        VariableElimination ve = new VariableElimination(network, new VariableEliminationQueryParser(network).parseQuery(line));
+        ve.executeQuery();
+        return ve;
+    }
+
+    /**
+     * Computes a probability from the full joint of the alarm network, with none of its CPTs pruned.
+     *
+     * @param query    the query variable and its outcome
+     * @param evidence the evidence variables and their outcomes
+     * @return the probability of the query given the evidence
+     */
+    private static double enumerateJoint(Map<String, Boolean> query, Map<String, Boolean> evidence) {
+        double joint = 0;
+        double evidenceProbability = 0;
+        for (int assignment = 0; assignment < 1 << NAMES.length; assignment++) {
+            boolean[] value = new boolean[NAMES.length];
+            for (int i = 0; i < NAMES.length; i++) {
+                value[i] = (assignment >> i & 1) == 1;
+            }
+            if (!matches(value, evidence)) {
+                continue;
+            }
+            boolean b = value[0], e = value[1], a = value[2], j = value[3], m = value[4];
+            double pA = b ? (e ? 0.95 : 0.94) : (e ? 0.29 : 0.01);
+            double p = (b ? 0.2 : 0.8) * (e ? 0.1 : 0.9) * (a ? pA : 1 - pA)
+                       * (j ? (a ? 0.9 : 0.05) : (a ? 0.1 : 0.95)) * (m ? (a ? 0.7 : 0.01) : (a ? 0.3 : 0.99));
+            evidenceProbability += p;
+            if (matches(value, query)) {
+                joint += p;
+            }
+        }
+        return joint / evidenceProbability;
+    }
+
+    private static boolean matches(boolean[] value, Map<String, Boolean> outcomes) {
+        for (int i = 0; i < NAMES.length; i++) {
+            Boolean outcome = outcomes.get(NAMES[i]);
+            if (outcome != null && outcome != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double probability(VariableElimination ve) {
+        return Double.parseDouble(ve.getResult().split(",")[0]);
+    }
+
+    @Test
+    public void testEvidenceAncestorsDSeparatedFromTheQueryArePruned() {
+        // A is observed, so its ancestors B and E, its CPT and the other evidence J are all d-separated from M
+        String line = "P(M=T|J=T,A=T) B-E";
+        assertEquals(Set.of("M"), findRequisiteVariables(line));
+
+        VariableElimination ve = eliminate(line);
+        assertEquals(4, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("M", true), Map.of("J", true, "A", true)), probability(ve), 1e-5);
+
+        // With exactly the parents observed, the same answer is read from the CPT and nothing is filtered
+        ve = eliminate("P(M=T|A=T) B-E-J");
+        assertEquals(0, ve.getPrunedFactorCount());
+        assertEquals(0.7, probability(ve), 1e-5);
+    }
+
+    @Test
+    public void testObservedAncestorReachedFromAChildIsPruned() {
+        // The ball reaches the observed B from its child A and stops there, while it goes on to E
+        String line = "P(J=T|B=T) A-E-M";
+        assertEquals(Set.of("J", "A", "E"), findRequisiteVariables(line));
+
+        VariableElimination ve = eliminate(line);
+        assertEquals(2, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("J", true), Map.of("B", true)), probability(ve), 1e-5);
+    }
+
+    @Test
+    public void testBarrenVariablesAreDropped() {
+        // M is no ancestor of the query or the evidence
+        String line = "P(B=T|J=T) A-E-M";
+        assertEquals(Set.of("B", "E", "A", "J"), findRequisiteVariables(line));
+
+        VariableElimination ve = eliminate(line);
+        assertEquals(1, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("B", true), Map.of("J", true)), probability(ve), 1e-5);
+
+        // Without evidence, everything below the query is barren
+        line = "P(A=F) B-E-J-M";
+        assertEquals(Set.of("B", "E", "A"), findRequisiteVariables(line));
+        ve = eliminate(line);
+        assertEquals(2, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("A", false), Map.of()), probability(ve), 1e-5);
+    }
+
+    @Test
+    public void testExplainingAwayKeepsTheOtherCause() {
+        // Observing the common child A connects its parents, so the CPT of E is still requisite for B
+        String line = "P(B=T|A=T) E-J-M";
+        assertEquals(Set.of("B", "E", "A"), findRequisiteVariables(line));
+
+        VariableElimination ve = eliminate(line);
+        assertEquals(2, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("B", true), Map.of("A", true)), probability(ve), 1e-5);
+    }
+
+    @Test
+    public void testNothingIsPrunedWhenEveryCptIsRequisite() {
+        String line = "P(B=T|J=T,M=T) A-E";
+        assertEquals(Set.of("B", "E", "A", "J", "M"), findRequisiteVariables(line));
+
+        VariableElimination ve = eliminate(line);
+        assertEquals(0, ve.getPrunedFactorCount());
+        assertEquals(enumerateJoint(Map.of("B", true), Map.of("J", true, "M", true)), probability(ve), 1e-5);
+    }
+}
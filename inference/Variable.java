@@ -1,18 +1,23 @@
 package inference;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class represents a variable in a Bayesian Network.
- * A variable can have parents and children, and it can be marked as evidence.
+ * A variable can have parents and children. Whether it is observed is part of a query, not of the variable.
  */
 public class Variable {
+    private final int id; // Dense id of the variable in its network, or -1 if it is not registered
     private final String name; // The name of the variable
     private final List<String> outcomes; // Possible outcomes of the variable
+    private final Map<String, Integer> outcomeIndexMap; // Map of outcomes to their index in the outcomes list
     private List<Variable> parents = new ArrayList<>(); // List of parent variables
     private final List<Variable> children = new ArrayList<>(); // List of child variables
-    private boolean isEvidence = false; // Indicates if this variable is an evidence variable
+    private boolean frozen; // True once the parents and children can no longer change
 
     /**
      * Constructor for the Variable class.
@@ -21,8 +26,24 @@ public class Variable {
      * @param outcomes the possible outcomes of the variable
      */
     public Variable(String name, List<String> outcomes) {
+        this(-1, name, outcomes);
+    }
+
+    /**
+     * Constructor for the Variable class with a dense id.
+     *
+     * @param id       the dense id of the variable in its network
+     * @param name     the name of the variable
+     * @param outcomes the possible outcomes of the variable
+     */
+    public Variable(int id, String name, List<String> outcomes) {
+        this.id = id;
         this.name = name;
         this.outcomes = outcomes;
+        this.outcomeIndexMap = new HashMap<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            this.outcomeIndexMap.putIfAbsent(outcomes.get(i), i);
+        }
     }
 
     /**
@@ -31,10 +52,20 @@ public class Variable {
      * @param other the variable to copy
      */
     public Variable(Variable other) {
+        this.id = other.id;
         this.name = other.name;
         this.outcomes = new ArrayList<>(other.outcomes);
+        this.outcomeIndexMap = other.outcomeIndexMap;
         this.parents = new ArrayList<>(other.parents);
-        this.isEvidence = other.isEvidence;
+    }
+
+    /**
+     * Gets the dense id of the variable in its network.
+     *
+     * @return the id of the variable, or -1 if it is not registered in a network
+     */
+    public int getId() {
+        return this.id;
     }
 
     /**
@@ -55,12 +86,32 @@ public class Variable {
         return this.outcomes;
     }
 
+    /**
+     * Gets the number of possible outcomes of the variable.
+     *
+     * @return the number of outcomes
+     */
+    public int getCardinality() {
+        return this.outcomes.size();
+    }
+
+    /**
+     * Gets the index of an outcome in the list of possible outcomes.
+     *
+     * @param outcome the outcome
+     * @return the index of the outcome, or -1 if it is not an outcome of this variable
+     */
+    public int getOutcomeIndex(String outcome) {
+        return this.outcomeIndexMap.getOrDefault(outcome, -1);
+    }
+
     /**
      * Adds a parent variable.
      *
      * @param parent the parent variable to add
      */
     public void addParent(Variable parent) {
+        checkMutable();
         this.parents.add(parent);
     }
 
@@ -90,43 +141,42 @@ public class Variable {
      * @param child the child variable to add
      */
     public void addChild(Variable child) {
+        checkMutable();
         this.children.add(child);
     }
 
     /**
-     * Gets the list of parent variables.
-     *
-     * @return the list of parent variables
+     * Freezes the parents and children of this variable, as in a network snapshot. Adding one afterwards throws.
      */
-    public List<Variable> getParents() {
-        return this.parents;
+    public void freeze() {
+        this.frozen = true;
     }
 
     /**
-     * Gets the list of child variables.
-     *
-     * @return the list of child variables
+     * Throws if the variable is frozen.
      */
-    public List<Variable> getChildren() {
-        return this.children;
+    private void checkMutable() {
+        if (this.frozen) {
+            throw new IllegalStateException("Cannot modify the frozen variable " + this.name);
+        }
     }
 
     /**
-     * Checks if this variable is an evidence variable.
+     * Gets the list of parent variables.
      *
-     * @return true if this variable is an evidence variable, false otherwise
+     * @return an unmodifiable view of the parent variables
      */
-    public boolean isEvidence() {
-        return this.isEvidence;
+    public List<Variable> getParents() {
+        return Collections.unmodifiableList(this.parents);
     }
 
     /**
-     * Sets this variable as an evidence variable.
+     * Gets the list of child variables.
      *
-     * @param evidence true to set as evidence, false otherwise
+     * @return an unmodifiable view of the child variables
      */
-    public void setEvidence(boolean evidence) {
-        this.isEvidence = evidence;
+    public List<Variable> getChildren() {
+        return Collections.unmodifiableList(this.children);
     }
 
     @Override
@@ -134,14 +184,11 @@ public class Variable {
         if (this == o) return true;
         if (!(o instanceof Variable variable)) return false;
 
-        if (isEvidence != variable.isEvidence) return false;
         return name.equals(variable.name);
     }
 
     @Override
     public int hashCode() {
-        int result = name.hashCode();
-        result = 31 * result + (isEvidence ? 1 : 0);
-        return result;
+        return name.hashCode();
     }
 }
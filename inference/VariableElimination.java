@@ -1,11 +1,12 @@
 package inference;
 
 import core.BayesianNetwork;
-import utils.Pair;
+import core.NetworkGraph;
+import core.VariableRegistry;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -13,25 +14,33 @@ import java.util.stream.Collectors;
  * Variable Elimination is an exact inference algorithm used for probabilistic queries.
  */
 public class VariableElimination {
-    private final List<Factor> factorList; // List of factors in the Bayesian Network
-    private final Map<String, Variable> variableMap; // Map of variables in the Bayesian Network
+    private final List<Factor> factorList; // Copy-on-write views of the factors in the Bayesian Network
+    private final VariableRegistry registry; // Registry of the variables in the Bayesian Network
+    private final NetworkGraph graph; // Compiled graph of the Bayesian Network
     private final VariableEliminationQuery variableEliminationQuery; // Query to be executed
+    private final QueryContext queryContext; // The query variable and the evidence of the query, by variable id
     private final QueryResult queryResult;
+    private EliminationOrderPlanner eliminationOrderPlanner = new EliminationOrderPlanner(new MinFillHeuristic()); // Plans orders for queries without one
+    private double orderOverrideRatio = 0; // A given order is replaced when its cost is this many times the planned cost, 0 disables it
+    private EliminationPlan eliminationPlan; // The order used by the query with its predicted cost
+    private int prunedFactorCount; // Number of factors removed by the relevance filter
+    private ForkJoinPool kernelPool; // Pool the factor products and sums run on when they are large, or null to run on the calling thread
+    private MemoryBudget memoryBudget; // Decides which products and sums are spilled to memory-mapped files, or null to keep them all on the heap
+    private long largestIntermediateFactorSize; // Number of entries of the largest product built by the query
 
     /**
-     * Constructor initializes factorList and variableMap from the given BayesianNetwork and Query.
+     * Constructor initializes factorList and the variable registry from the given BayesianNetwork and Query.
+     * The factors are views that share the CPTs of the network until they are restricted, multiplied or summed out.
      *
      * @param network                  the Bayesian Network
      * @param variableEliminationQuery the query to be executed
      */
     public VariableElimination(BayesianNetwork network, VariableEliminationQuery variableEliminationQuery) {
         this.variableEliminationQuery = variableEliminationQuery;
-        this.factorList = network.getFactorList().stream().map(Factor::new).collect(Collectors.toList());
-        this.variableMap = network.getVariableMap()
-                                  .entrySet()
-                                  .stream()
-                                  .collect(Collectors.toMap(Map.Entry::getKey,
-                                                            entry -> new Variable(entry.getValue())));
+        this.factorList = network.getFactorList().stream().map(Factor::view).collect(Collectors.toList());
+        this.registry = network.getRegistry();
+        this.graph = network.getGraph();
+        this.queryContext = QueryContext.of(variableEliminationQuery, registry);
         this.queryResult = new QueryResult();
     }
 
@@ -39,23 +48,98 @@ public class VariableElimination {
         return queryResult.toString();
     }
 
+    /**
+     * Gets the result of the query, with the probability and the number of operations performed.
+     *
+     * @return the query result
+     */
+    public QueryResult getQueryResult() {
+        return queryResult;
+    }
+
+    /**
+     * Sets the heuristic used to plan an elimination order when the query does not give one.
+     *
+     * @param heuristic the elimination order heuristic
+     */
+    public void setEliminationOrderHeuristic(EliminationOrderHeuristic heuristic) {
+        this.eliminationOrderPlanner = new EliminationOrderPlanner(heuristic);
+    }
+
+    /**
+     * Sets when the elimination order given by the query is replaced by a planned one.
+     * The given order is replaced when its estimated cost is more than the ratio times the cost of the planned order.
+     *
+     * @param orderOverrideRatio the ratio, or 0 to always follow the given order
+     */
+    public void setOrderOverrideRatio(double orderOverrideRatio) {
+        this.orderOverrideRatio = orderOverrideRatio;
+    }
+
+    /**
+     * Sets the fork-join pool that large factor products and sums are split across.
+     * The results and the operation counts are the same as on a single thread.
+     *
+     * @param kernelPool the pool, or null to compute every factor on the calling thread
+     */
+    public void setKernelPool(ForkJoinPool kernelPool) {
+        this.kernelPool = kernelPool;
+    }
+
+    /**
+     * Sets the memory budget of the query. Products and sums larger than the budget allows are stored in
+     * memory-mapped temporary files, so a query with a large treewidth runs slower instead of running out of heap.
+     *
+     * @param memoryBudget the memory budget, or null to keep every factor on the heap
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Gets the elimination order used by the query together with its predicted induced width and cost.
+     *
+     * @return the elimination plan, or null if the query was answered without elimination
+     */
+    public EliminationPlan getEliminationPlan() {
+        return this.eliminationPlan;
+    }
+
+    /**
+     * Gets the number of factors the relevance filter removed because they are barren or d-separated from the query.
+     *
+     * @return the number of pruned factors, 0 if the query was answered without elimination
+     */
+    public int getPrunedFactorCount() {
+        return this.prunedFactorCount;
+    }
+
+    /**
+     * Gets the number of entries of the largest factor product built while answering the query.
+     *
+     * @return the number of entries, 0 if the query was answered without multiplying factors
+     */
+    public long getLargestIntermediateFactorSize() {
+        return this.largestIntermediateFactorSize;
+    }
+
     /**
      * Executes the variable elimination algorithm based on the provided query.
      */
     public void executeQuery() {
         try {
-            Double directCptResult = getDirectCptResult();
+            // A query that explain() already prepared was found not to be read from a CPT
+            Double directCptResult = eliminationPlan == null ? runPhase("directCpt", this::getDirectCptResult) : null;
 
             if (directCptResult != null) {
                 queryResult.setProbability(directCptResult);
                 return;
             }
 
-            restrictFactorsBasedOnEvidence();
-            filterOutIrrelevantVariables();
-            sortFactorsByNumOfRows();
-            eliminateVariables();
-            processFinalFactorForQueryVariable();
+            prepareElimination();
+            runPhase("eliminate", this::eliminateVariables);
+            runPhase("finalProduct", this::multiplyFactorsOfQueryVariable);
+            runPhase("normalize", this::normalizeFinalFactor);
             setQueryResult();
         } catch (Exception e) {
             System.err.println("Error during variable elimination: " + e.getMessage());
@@ -63,33 +147,195 @@ public class VariableElimination {
         }
     }
 
-    private Double getDirectCptResult() {
-        Variable queryVariable = variableEliminationQuery.getQueryVariable().getKey();
-        String queryState = variableEliminationQuery.getQueryVariable().getValue();
+    /**
+     * Predicts how the query would be answered without computing any probability.
+     * The factors are restricted, filtered and ordered as for the query, which reuses that work if it is executed
+     * afterwards, and the elimination is then simulated over the scopes and the cardinalities of the factors.
+     *
+     * @return the predicted elimination steps, operation counts and memory
+     */
+    public QueryExplanation explain() {
+        if (getDirectCptResult() != null) {
+            return QueryExplanation.ofDirectCpt();
+        }
+        prepareElimination();
+        return simulateElimination();
+    }
+
+    /**
+     * Restricts, filters and sorts the factors and plans the elimination order, unless {@link #explain()} already did.
+     */
+    private void prepareElimination() {
+        if (eliminationPlan != null) {
+            return;
+        }
+        runPhase("restrict", this::restrictFactorsBasedOnEvidence);
+        runPhase("filter", this::filterOutIrrelevantVariables);
+        runPhase("sort", this::sortFactorsByNumOfRows);
+        runPhase("plan", this::planEliminationOrder);
+    }
 
-        List<Pair<Variable, String>> evidenceVariables = variableEliminationQuery.getEvidenceVariables();
+    /**
+     * The scope of a factor without its values, for predicting the cost of an elimination.
+     */
+    private static final class SymbolicFactor {
+        private final int[] scope; // The ids of the variables of the table, in table order
+        private final double size; // Number of entries of the table
+        private final Set<String> mapVariables; // The names in the variables map of the factor, which orders products like Factor does
+        private final boolean intermediate; // True if the table is built by the query rather than shared with the network
 
+        /**
+         * Constructor for SymbolicFactor.
+         *
+         * @param scope        the ids of the variables of the table
+         * @param size         the number of entries of the table
+         * @param mapVariables the names in the variables map of the factor
+         * @param intermediate true if the table is built by the query
+         */
+        SymbolicFactor(int[] scope, double size, Set<String> mapVariables, boolean intermediate) {
+            this.scope = scope;
+            this.size = size;
+            this.mapVariables = mapVariables;
+            this.intermediate = intermediate;
+        }
+
+        /**
+         * Finds the position of a variable in the scope.
+         *
+         * @param variableId the id of the variable
+         * @return the position of the variable, or -1 if it is not in the scope
+         */
+        int indexOf(int variableId) {
+            for (int i = 0; i < scope.length; i++) {
+                if (scope[i] == variableId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Gets the number of bytes of the table if the query builds it.
+         *
+         * @return the number of bytes, 0 for a table shared with the network
+         */
+        double heldBytes() {
+            return intermediate ? size * Double.BYTES : 0;
+        }
+    }
+
+    /**
+     * Simulates the elimination plan and the final product over symbolic factors, taking the same products in
+     * the same order as {@link #eliminateVariables()} and {@link #multiplyFactorsOfQueryVariable()}.
+     * The variables map of a product is the union of the maps of its factors and summing out keeps it,
+     * so the map is tracked apart from the scope.
+     *
+     * @return the explanation of the query
+     */
+    private QueryExplanation simulateElimination() {
+        List<SymbolicFactor> factors = new ArrayList<>();
         for (Factor factor : factorList) {
-            if (factor.containsVariable(queryVariable.getName())) {
-                Set<String> factorVariables = factor.getVariablesMap().keySet();
-                if (factorVariables.size() == 1 + evidenceVariables.size()) {
-                    boolean allEvidenceMatch = evidenceVariables.stream()
-                                                                .allMatch(e -> factorVariables.contains(e.getKey()
-                                                                                                         .getName()));
+            DenseFactor table = factor.getTable();
+            factors.add(new SymbolicFactor(table.getScope(), table.size(), new HashSet<>(factor.getVariablesMap().keySet()), false));
+        }
+
+        List<QueryExplanation.Step> steps = new ArrayList<>();
+        double[] totals = new double[4]; // Multiplications, additions, largest product and peak bytes
+        double heldBytes = 0; // Bytes of the intermediate tables in the factor list
+        for (int variableId : eliminationPlan.getOrder()) {
+            List<SymbolicFactor> relevantFactors = factors.stream().filter(factor -> factor.indexOf(variableId) >= 0).collect(Collectors.toList());
+            if (relevantFactors.isEmpty()) {
+                continue;
+            }
+
+            SymbolicFactor product = simulateProducts(relevantFactors, heldBytes, totals);
+            int position = product.indexOf(variableId);
+            int cardinality = registry.getCardinality(variableId);
+            int[] remaining = new int[product.scope.length - 1];
+            System.arraycopy(product.scope, 0, remaining, 0, position);
+            System.arraycopy(product.scope, position + 1, remaining, position, remaining.length - position);
+            SymbolicFactor result = new SymbolicFactor(remaining, product.size / cardinality, product.mapVariables, true);
+            totals[1] += result.size * (cardinality - 1);
+            double productBytes = relevantFactors.size() > 1 ? product.heldBytes() : 0;
+            totals[3] = Math.max(totals[3], heldBytes + productBytes + result.heldBytes());
+
+            for (SymbolicFactor factor : relevantFactors) {
+                heldBytes -= factor.heldBytes();
+            }
+            factors.removeAll(relevantFactors);
+            factors.add(result);
+            heldBytes += result.heldBytes();
+            steps.add(new QueryExplanation.Step(registry.getVariable(variableId).getName(), relevantFactors.size(), product.size, result.size));
+        }
+
+        int queryVariableId = queryContext.getQueryVariableId();
+        List<SymbolicFactor> queryFactors = factors.stream().filter(factor -> factor.indexOf(queryVariableId) >= 0).collect(Collectors.toList());
+        SymbolicFactor finalFactor = simulateProducts(queryFactors, heldBytes, totals);
+        totals[1] += registry.getCardinality(queryVariableId) - 1;
+        // Normalizing copies the final table
+        totals[3] = Math.max(totals[3], heldBytes + finalFactor.heldBytes() + finalFactor.size * Double.BYTES);
+
+        return new QueryExplanation(false, prunedFactorCount, steps, totals[0], totals[1], totals[2], totals[3]);
+    }
+
+    /**
+     * Simulates {@link #multiplyFactors(List)} over symbolic factors: the factors are ordered by the size of their
+     * variables map and multiplied into the first one, one after the other.
+     *
+     * @param factors   the factors to multiply, which stay in the factor list while they are multiplied
+     * @param heldBytes the bytes of the intermediate tables in the factor list
+     * @param totals    multiplications, additions, largest product and peak bytes, updated with the products
+     * @return the product, or the only factor if there is one
+     */
+    private SymbolicFactor simulateProducts(List<SymbolicFactor> factors, double heldBytes, double[] totals) {
+        List<SymbolicFactor> sorted = new ArrayList<>(factors);
+        sorted.sort(Comparator.comparingInt(factor -> factor.mapVariables.size()));
+
+        SymbolicFactor accumulated = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            SymbolicFactor next = sorted.get(i);
+            int[] scope = Arrays.copyOf(accumulated.scope, accumulated.scope.length + next.scope.length);
+            int scopeLength = accumulated.scope.length;
+            double size = accumulated.size;
+            for (int variableId : next.scope) {
+                if (accumulated.indexOf(variableId) < 0) {
+                    scope[scopeLength++] = variableId;
+                    size *= registry.getCardinality(variableId);
+                }
+            }
+            Set<String> mapVariables = new HashSet<>(accumulated.mapVariables);
+            mapVariables.addAll(next.mapVariables);
+            SymbolicFactor product = new SymbolicFactor(Arrays.copyOf(scope, scopeLength), size, mapVariables, true);
+
+            totals[0] += product.size;
+            totals[2] = Math.max(totals[2], product.size);
+            // The previous product is only dropped once the next one is built
+            double previousBytes = i > 1 ? accumulated.heldBytes() : 0;
+            totals[3] = Math.max(totals[3], heldBytes + previousBytes + product.heldBytes());
+            accumulated = product;
+        }
+        return accumulated;
+    }
+
+    private Double getDirectCptResult() {
+        int queryVariableId = queryContext.getQueryVariableId();
+        int[] evidenceIds = queryContext.getEvidenceIds();
+
+        for (Factor factor : factorList) {
+            DenseFactor table = factor.getTable();
+            int queryPosition = table.indexOfVariable(queryVariableId);
+            if (queryPosition >= 0 && table.getNumVariables() == 1 + evidenceIds.length) {
+                int index = queryContext.getQueryOutcomeIndex() * table.getStride(queryPosition);
+                boolean allEvidenceMatch = true;
+                for (int i = 0; i < evidenceIds.length && allEvidenceMatch; i++) {
+                    int evidencePosition = table.indexOfVariable(evidenceIds[i]);
+                    allEvidenceMatch = evidencePosition >= 0;
                     if (allEvidenceMatch) {
-                        List<FactorRow> rows = factor.getFactorRows();
-                        for (FactorRow row : factor.getFactorRows()) {
-                            boolean match = row.getVariableState(queryVariable.getName())
-                                               .equals(queryState) && evidenceVariables.stream()
-                                                                                       .allMatch(e -> row.getVariableState(
-                                                                                                                 e.getKey().getName())
-                                                                                                         .equals(e.getValue()));
-                            if(match){
-                                return row.getProbability();
-                            }
-                        }
+                        index += queryContext.getEvidenceOutcome(evidenceIds[i]) * table.getStride(evidencePosition);
                     }
-
+                }
+                if (allEvidenceMatch) {
+                    return table.getValue(index);
                 }
             }
         }
@@ -100,27 +346,63 @@ public class VariableElimination {
      * Sorts factors by the number of rows.
      */
     private void sortFactorsByNumOfRows() {
-        factorList.sort(Comparator.comparingInt(f -> f.getFactorRows().size()));
+        factorList.sort(Comparator.comparingInt(f -> f.getTable().size()));
+    }
+
+    /**
+     * Runs a phase of the query and records it as a {@link VariableEliminationPhaseEvent}.
+     *
+     * @param phase  the name of the phase
+     * @param action the phase
+     */
+    private void runPhase(String phase, Runnable action) {
+        runPhase(phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a phase of the query that computes a value and records it as a {@link VariableEliminationPhaseEvent}.
+     * The event is only filled in when a recording has it enabled.
+     *
+     * @param phase  the name of the phase
+     * @param action the phase
+     * @param <T>    the type of the value computed by the phase
+     * @return the value computed by the phase
+     */
+    private <T> T runPhase(String phase, Supplier<T> action) {
+        VariableEliminationPhaseEvent event = new VariableEliminationPhaseEvent();
+        int multiplications = queryResult.getMultiplicationOperations();
+        int additions = queryResult.getAdditionOperations();
+        event.begin();
+        T result = action.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.queryVariable = registry.getVariable(queryContext.getQueryVariableId()).getName();
+            event.factorCount = factorList.size();
+            event.multiplications = queryResult.getMultiplicationOperations() - multiplications;
+            event.additions = queryResult.getAdditionOperations() - additions;
+            event.commit();
+        }
+        return result;
     }
 
     /**
      * Sets the query result based on the final factor's probability.
      */
     private void setQueryResult() {
-        queryResult.setProbability(factorList.get(0)
-                                             .getRowsWithVariableAndState(variableEliminationQuery.getQueryVariable()
-                                                                                                  .getKey(),
-                                                                          variableEliminationQuery.getQueryVariable()
-                                                                                                  .getValue())
-                                             .get(0)
-                                             .getProbability());
+        DenseFactor table = factorList.get(0).getTable();
+        int position = table.indexOfVariable(queryContext.getQueryVariableId());
+        queryResult.setProbability(table.getValue(queryContext.getQueryOutcomeIndex() * table.getStride(position)));
     }
 
     /**
      * Restricts factors based on evidence variables.
      */
     private void restrictFactorsBasedOnEvidence() {
-        restrict(variableEliminationQuery.getEvidenceVariables());
+        restrict(queryContext.getEvidenceIds());
     }
 
     /**
@@ -131,117 +413,98 @@ public class VariableElimination {
     }
 
     /**
-     * Eliminates variables as specified in the query.
+     * Chooses the elimination order. The order of the query is used when it is given, unless it is estimated to be
+     * much worse than the planned order, otherwise the order is planned from the interaction graph of the factors.
+     */
+    private void planEliminationOrder() {
+        EliminationGraph graph = new EliminationGraph(factorList.stream().map(factor -> factor.getTable().getScope()).collect(Collectors.toList()), registry);
+        int[] givenOrder = variableEliminationQuery.getEliminationOrder();
+        if (givenOrder.length == 0) {
+            eliminationPlan = eliminationOrderPlanner.plan(graph, queryContext.getQueryVariableId());
+            return;
+        }
+
+        eliminationPlan = eliminationOrderPlanner.evaluate(graph, givenOrder);
+        if (orderOverrideRatio > 0) {
+            EliminationPlan plannedPlan = eliminationOrderPlanner.plan(graph, queryContext.getQueryVariableId());
+            if (eliminationPlan.getEstimatedCost() > orderOverrideRatio * plannedPlan.getEstimatedCost()) {
+                eliminationPlan = plannedPlan;
+            }
+        }
+    }
+
+    /**
+     * Eliminates variables as specified in the elimination plan.
      */
     private void eliminateVariables() {
-        for (String variableName : variableEliminationQuery.getEliminationVariables()) {
-            eliminateVariable(variableName);
+        for (int variableId : eliminationPlan.getOrder()) {
+            eliminateVariable(variableId);
         }
     }
 
     /**
-     * Processes the final factor for the query variable.
+     * Multiplies the factors left after the elimination into the final factor over the query variable.
      */
-    private void processFinalFactorForQueryVariable() {
-        Factor finalFactor =
-                multiplyFactors(findFactorsContainingQueryVariable(variableEliminationQuery.getQueryVariable()
-                                                                                                        .getKey()
-                                                                                                        .getName()));
-        normalize(finalFactor);
+    private void multiplyFactorsOfQueryVariable() {
+        Factor finalFactor = multiplyFactors(findFactorsContainingQueryVariable(queryContext.getQueryVariableId()));
         factorList.clear();
         factorList.add(finalFactor);
     }
 
+    /**
+     * Normalizes the final factor over the query variable.
+     */
+    private void normalizeFinalFactor() {
+        normalize(factorList.get(0));
+    }
+
     /**
      * Filters out irrelevant variables from factorList.
      */
     private void filterIrrelevantVariables() {
-        Set<String> relevantVariables = getRelevantVariables();
-        factorList.removeIf(factor -> !relevantVariables.contains(factor.getParentVariable().getName()));
+        prunedFactorCount = new RelevanceFilter(graph).filter(factorList, queryContext);
     }
 
     /**
      * Finds factors that contain the query variable.
      *
-     * @param queryVariable the query variable name
+     * @param queryVariableId the query variable id
      * @return a list of factors containing the query variable
      */
-    private List<Factor> findFactorsContainingQueryVariable(String queryVariable) {
+    private List<Factor> findFactorsContainingQueryVariable(int queryVariableId) {
         return factorList.stream()
-                         .filter(factor -> factor.getVariablesMap().containsKey(queryVariable))
+                         .filter(factor -> factor.containsVariable(queryVariableId))
                          .collect(Collectors.toList());
     }
 
-    /**
-     * Gets a set of relevant variables based on the query variable and evidence variables.
-     *
-     * @return a set of relevant variable names
-     */
-    private Set<String> getRelevantVariables() {
-        Set<String> relevantVariables = new HashSet<>();
-        Variable queryVariable = variableMap.get(variableEliminationQuery.getQueryVariable().getKey().getName());
-        relevantVariables.add(queryVariable.getName());
-        relevantVariables.addAll(getAncestors(queryVariable));
-
-        for (Pair<Variable, String> evidencePair : variableEliminationQuery.getEvidenceVariables()) {
-            Variable evidenceVariable = variableMap.get(evidencePair.getKey().getName());
-            if (relevantVariables.add(evidenceVariable.getName())) {
-                relevantVariables.addAll(getAncestors(evidenceVariable));
-            }
-        }
-
-        return relevantVariables;
-    }
-
-    /**
-     * Retrieves ancestors of a given variable.
-     *
-     * @param variable the variable whose ancestors are to be found
-     * @return a set of ancestor variable names
-     */
-    private Set<String> getAncestors(Variable variable) {
-        Set<String> ancestors = new HashSet<>();
-        findAncestors(variable, ancestors);
-        return ancestors;
-    }
-
-    /**
-     * Helper method to recursively find ancestors of a variable.
-     *
-     * @param variable  the variable whose ancestors are to be found
-     * @param ancestors the set of ancestor variable names
-     */
-    private void findAncestors(Variable variable, Set<String> ancestors) {
-        for (Variable parent : variable.getParents()) {
-            if (ancestors.add(parent.getName())) {
-                findAncestors(parent, ancestors);
-            }
-        }
-    }
-
     /**
      * Normalizes the probabilities in the final factor.
      *
      * @param factor the factor to be normalized
+     * @throws IllegalStateException if the evidence has probability zero, which leaves the probability of the result at 0
      */
     private void normalize(Factor factor) {
-        double probabilitySum = factor.getFactorRows().stream().mapToDouble(FactorRow::getProbability).sum();
-        queryResult.incrementAdditionOperations(variableMap.get(variableEliminationQuery.getQueryVariable()
-                                                                                        .getKey()
-                                                                                        .getName())
-                                                           .getOutcomes()
-                                                           .size() - 1);
-        factor.getFactorRows().forEach(row -> row.setProbability(row.getProbability() / probabilitySum));
+        DenseFactor table = factor.getTable();
+        double probabilitySum = table.sum();
+        queryResult.incrementAdditionOperations(registry.getCardinality(queryContext.getQueryVariableId()) - 1);
+        if (probabilitySum == 0) {
+            throw new IllegalStateException("The evidence has probability zero");
+        }
+        DenseFactor normalized = table.copy(); // The table may still be a CPT of the network or a view over one
+        for (int i = 0; i < normalized.size(); i++) {
+            normalized.setValue(i, normalized.getValue(i) / probabilitySum);
+        }
+        factor.setTable(normalized);
     }
 
     /**
      * Finds factors that are relevant for a given variable.
      *
-     * @param variableName the variable name
+     * @param variableId the variable id
      * @return a list of relevant factors
      */
-    private List<Factor> findRelevantFactors(String variableName) {
-        return factorList.stream().filter(factor -> factor.containsVariable(variableName)).collect(Collectors.toList());
+    private List<Factor> findRelevantFactors(int variableId) {
+        return factorList.stream().filter(factor -> factor.containsVariable(variableId)).collect(Collectors.toList());
     }
 
     /**
@@ -269,150 +532,83 @@ public class VariableElimination {
      * @return the resulting factor after multiplication
      */
     private Factor multiplyTwoFactors(Factor f1, Factor f2) {
-        List<String> commonVariables = findCommonVariables(f1, f2);
-        List<FactorRow> newRows = new ArrayList<>();
-
-        for (FactorRow row1 : f1.getFactorRows()) {
-            for (FactorRow row2 : f2.getFactorRows()) {
-                if (hasMatchingVariables(row1, row2, commonVariables)) {
-                    Map<String, String> combinedStateMap = new HashMap<>(row1.getVariablesStateMap());
-                    combinedStateMap.putAll(row2.getVariablesStateMap());
-                    newRows.add(new FactorRow(combinedStateMap, row1.getProbability() * row2.getProbability()));
-                    queryResult.incrementMultiplicationOperations(1);
-                }
-            }
-        }
+        DenseFactor product = FactorOperations.multiply(f1.getTable(), f2.getTable(), kernelPool, memoryBudget);
+        queryResult.incrementMultiplicationOperations(product.size()); // One multiplication per entry of the product
+        largestIntermediateFactorSize = Math.max(largestIntermediateFactorSize, product.size());
 
         Map<String, Variable> combinedVariableMap = new HashMap<>(f1.getVariablesMap());
         combinedVariableMap.putAll(f2.getVariablesMap());
 
-        return new Factor(combinedVariableMap, newRows);
-    }
-
-    /**
-     * Checks if two factor rows have matching variables.
-     *
-     * @param row1            the first factor row
-     * @param row2            the second factor row
-     * @param commonVariables the list of common variable names
-     * @return true if the rows have matching variables, false otherwise
-     */
-    private boolean hasMatchingVariables(FactorRow row1, FactorRow row2, List<String> commonVariables) {
-        return commonVariables.stream()
-                              .allMatch(variable -> row1.getVariableState(variable)
-                                                        .equals(row2.getVariableState(variable)));
+        return new Factor(combinedVariableMap, product);
     }
 
     /**
-     * Finds common variables between two factors.
-     *
-     * @param f1 the first factor
-     * @param f2 the second factor
-     * @return a list of common variable names
-     */
-    private List<String> findCommonVariables(Factor f1, Factor f2) {
-        Set<String> f1Variables = f1.getVariablesMap().keySet();
-        Set<String> f2Variables = f2.getVariablesMap().keySet();
-        return f1Variables.stream().filter(f2Variables::contains).collect(Collectors.toList());
-    }
-
-    /**
-     * Sums out a variable from a factor, returning a new list of factor rows.
+     * Sums out a variable from a factor, returning a new table without that variable.
      *
      * @param factor             the factor from which the variable is to be summed out
-     * @param sumOutVariableName the name of the variable to be summed out
-     * @return a list of new factor rows after summing out the variable
-     */
-    private List<FactorRow> sumOut(Factor factor, String sumOutVariableName) {
-        List<FactorRow> rows = factor.getFactorRows();
-        Map<Map<String, String>, Double> sumOutMap = new HashMap<>();
-
-        for (FactorRow row : rows) {
-            Map<String, String> stateMap = row.getVariablesStateMap();
-            stateMap.remove(sumOutVariableName);
-
-            if (sumOutMap.containsKey(stateMap)) {
-                sumOutMap.put(stateMap, sumOutMap.get(stateMap) + row.getProbability());
-                queryResult.incrementAdditionOperations(1); // Count the addition operation
-            } else {
-                sumOutMap.put(stateMap, row.getProbability());
-            }
+     * @param sumOutVariableId   the id of the variable to be summed out
+     * @return the table after summing out the variable
+     */
+    private DenseFactor sumOut(Factor factor, int sumOutVariableId) {
+        DenseFactor table = factor.getTable();
+        int position = table.indexOfVariable(sumOutVariableId);
+        if (position < 0) {
+            return table;
         }
 
-        return sumOutMap.entrySet()
-                        .stream()
-                        .map(entry -> new FactorRow(entry.getKey(), entry.getValue()))
-                        .collect(Collectors.toList());
+        DenseFactor result = FactorOperations.sumOut(table, position, kernelPool, memoryBudget);
+        queryResult.incrementAdditionOperations(result.size() * (table.getCardinality(position) - 1)); // Count the addition operations
+
+        return result;
     }
 
     /**
-     * Restricts the factors based on the given evidence variables.
+     * Restricts the factors to the observed outcomes of the given evidence variables.
      *
-     * @param evidenceVariables the list of evidence variables
+     * @param evidenceIds the ids of the evidence variables
      */
-    private void restrict(List<Pair<Variable, String>> evidenceVariables) {
-        evidenceVariables.forEach(evidenceVariable -> factorList.forEach(factor -> factor.restrict(evidenceVariable.getKey().getName(),
-                                                                                               evidenceVariable.getValue())));
+    private void restrict(int[] evidenceIds) {
+        for (int evidenceId : evidenceIds) {
+            for (Factor factor : factorList) {
+                factor.restrict(evidenceId, queryContext.getEvidenceOutcome(evidenceId));
+            }
+        }
     }
 
     /**
      * Eliminates a variable by multiplying relevant factors and summing out the variable.
      *
-     * @param variableName the name of the variable to be eliminated
-     */
-    private void eliminateVariable(String variableName) {
-        List<Factor> relevantFactors = findRelevantFactors(variableName);
-        if (!relevantFactors.isEmpty()) {
-            Factor multipliedFactor = multiplyFactors(relevantFactors);
-            multipliedFactor.removeVariableFromRows(variableName);
-            List<FactorRow> rows = sumOut(multipliedFactor, variableName);
-            multipliedFactor.setFactorRows(rows);
-            factorList.removeAll(relevantFactors);
-            factorList.add(multipliedFactor);
-            variableMap.remove(variableName);
-        }
-    }
-
-    /**
-     * Inner class to store the query result, including the probability and the number of operations performed.
+     * @param variableId the id of the variable to be eliminated
      */
-    private static class QueryResult {
-        private double probability;
-        private int additionOperations;
-        private int multiplicationOperations;
-
-        /**
-         * Increments the count of addition operations.
-         *
-         * @param incrementBy the number to increment by
-         */
-        public void incrementAdditionOperations(int incrementBy) {
-            additionOperations += incrementBy;
-        }
-
-        /**
-         * Increments the count of multiplication operations.
-         *
-         * @param incrementBy the number to increment by
-         */
-        public void incrementMultiplicationOperations(int incrementBy) {
-            multiplicationOperations += incrementBy;
+    private void eliminateVariable(int variableId) {
+        EliminationStepEvent event = new EliminationStepEvent();
+        event.begin();
+        List<Factor> relevantFactors = findRelevantFactors(variableId);
+        if (relevantFactors.isEmpty()) {
+            return;
         }
-
-        /**
-         * Sets the probability, rounding it to 5 decimal places.
-         *
-         * @param probability the probability to set
-         */
-        public void setProbability(double probability) {
-            BigDecimal result = new BigDecimal(probability).setScale(5, RoundingMode.HALF_UP);
-            this.probability = result.doubleValue();
+        if (event.isEnabled()) {
+            // Counted before the product, since a single relevant factor is its own product and its table is replaced by the sum
+            event.factorsIn = relevantFactors.size();
+            for (Factor factor : relevantFactors) {
+                event.inputEntries += factor.getTable().size();
+                event.largestInputEntries = Math.max(event.largestInputEntries, factor.getTable().size());
+            }
         }
 
-        @Override
-        public String toString() {
-            String formattedProbability = String.format("%.5f", probability);
-            return formattedProbability + "," + additionOperations + "," + multiplicationOperations;
+        Factor multipliedFactor = multiplyFactors(relevantFactors);
+        int productEntries = multipliedFactor.getTable().size();
+        multipliedFactor.setTable(sumOut(multipliedFactor, variableId));
+        factorList.removeAll(relevantFactors);
+        factorList.add(multipliedFactor);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.variable = registry.getVariable(variableId).getName();
+            event.productEntries = productEntries;
+            event.outputEntries = multipliedFactor.getTable().size();
+            event.outputBytes = (long) multipliedFactor.getTable().size() * Double.BYTES;
+            event.commit();
         }
     }
 }
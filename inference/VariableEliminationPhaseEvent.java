@@ -0,0 +1,39 @@
+package inference;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event for one phase of a variable elimination query, such as restricting the factors
+ * to the evidence or eliminating the hidden variables. The duration of the event is the time the phase took.
+ * The event is only filled in when a recording has it enabled, so it costs nothing otherwise.
+ */
+@Name("inference.VariableEliminationPhase")
+@Label("Variable Elimination Phase")
+@Category({"BayesNetAnalysis", "Inference"})
+@Description("A phase of a variable elimination query")
+public class VariableEliminationPhaseEvent extends Event {
+
+    @Label("Phase")
+    @Description("The name of the phase")
+    String phase;
+
+    @Label("Query Variable")
+    @Description("The name of the query variable")
+    String queryVariable;
+
+    @Label("Factors")
+    @Description("The number of factors left after the phase")
+    int factorCount;
+
+    @Label("Multiplications")
+    @Description("The number of multiplications performed by the phase")
+    int multiplications;
+
+    @Label("Additions")
+    @Description("The number of additions performed by the phase")
+    int additions;
+}
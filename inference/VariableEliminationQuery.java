@@ -4,6 +4,7 @@ import utils.Pair;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 
@@ -15,6 +16,11 @@ public class VariableEliminationQuery {
     private Pair<Variable, String> queryVariable; // The variable to query
     private final List<Pair<Variable, String>> evidenceVariables = new ArrayList<>(); // List of evidence variables
     private Queue<String> eliminationVariables = new ArrayDeque<>(); // Queue of variables to eliminate
+    private int queryVariableId = -1; // The id of the query variable
+    private int queryOutcomeIndex = -1; // The index of the queried outcome
+    private int[] evidenceIds = new int[0]; // The ids of the evidence variables
+    private int[] evidenceOutcomeIndexes = new int[0]; // The index of the observed outcome of each evidence variable
+    private int[] eliminationOrder = new int[0]; // The ids of the variables to eliminate, in order
 
     /**
      * Default constructor for the Query class.
@@ -35,9 +41,45 @@ public class VariableEliminationQuery {
      * Sets the query variable.
      *
      * @param queryVariable the query variable as a utils.Pair of Variable and its state
+     * @throws IllegalArgumentException if the state is not an outcome of the variable
      */
     public void setQueryVariable(Pair<Variable, String> queryVariable) {
         this.queryVariable = queryVariable;
+        this.queryVariableId = queryVariable.getKey().getId();
+        this.queryOutcomeIndex = outcomeIndex(queryVariable);
+    }
+
+    /**
+     * Gets the index of the outcome of a variable of the query.
+     *
+     * @param variable the variable and its outcome
+     * @return the index of the outcome
+     * @throws IllegalArgumentException if the outcome is not an outcome of the variable
+     */
+    private static int outcomeIndex(Pair<Variable, String> variable) {
+        int outcomeIndex = variable.getKey().getOutcomeIndex(variable.getValue());
+        if (outcomeIndex < 0) {
+            throw new IllegalArgumentException("Unknown outcome " + variable.getValue() + " of variable " + variable.getKey().getName());
+        }
+        return outcomeIndex;
+    }
+
+    /**
+     * Gets the id of the query variable.
+     *
+     * @return the id of the query variable
+     */
+    public int getQueryVariableId() {
+        return this.queryVariableId;
+    }
+
+    /**
+     * Gets the index of the queried outcome of the query variable.
+     *
+     * @return the index of the queried outcome
+     */
+    public int getQueryOutcomeIndex() {
+        return this.queryOutcomeIndex;
     }
 
     /**
@@ -53,9 +95,33 @@ public class VariableEliminationQuery {
      * Adds an evidence variable to the list.
      *
      * @param evidence the evidence variable as a utils.Pair of Variable and its state
+     * @throws IllegalArgumentException if the state is not an outcome of the variable
      */
     public void addEvidenceVariable(Pair<Variable, String> evidence) {
+        int outcomeIndex = outcomeIndex(evidence);
         this.evidenceVariables.add(evidence);
+        this.evidenceIds = Arrays.copyOf(this.evidenceIds, this.evidenceIds.length + 1);
+        this.evidenceIds[this.evidenceIds.length - 1] = evidence.getKey().getId();
+        this.evidenceOutcomeIndexes = Arrays.copyOf(this.evidenceOutcomeIndexes, this.evidenceOutcomeIndexes.length + 1);
+        this.evidenceOutcomeIndexes[this.evidenceOutcomeIndexes.length - 1] = outcomeIndex;
+    }
+
+    /**
+     * Gets the ids of the evidence variables.
+     *
+     * @return the ids of the evidence variables, in the order they were added
+     */
+    public int[] getEvidenceIds() {
+        return this.evidenceIds;
+    }
+
+    /**
+     * Gets the index of the observed outcome of each evidence variable.
+     *
+     * @return the observed outcome indexes, aligned with {@link #getEvidenceIds()}
+     */
+    public int[] getEvidenceOutcomeIndexes() {
+        return this.evidenceOutcomeIndexes;
     }
 
     /**
@@ -75,4 +141,22 @@ public class VariableEliminationQuery {
     public void setEliminationVariables(Queue<String> eliminationVariables) {
         this.eliminationVariables = eliminationVariables;
     }
+
+    /**
+     * Gets the ids of the variables to eliminate.
+     *
+     * @return the ids of the variables to eliminate, in order
+     */
+    public int[] getEliminationOrder() {
+        return this.eliminationOrder;
+    }
+
+    /**
+     * Sets the ids of the variables to eliminate.
+     *
+     * @param eliminationOrder the ids of the variables to eliminate, in order
+     */
+    public void setEliminationOrder(int[] eliminationOrder) {
+        this.eliminationOrder = eliminationOrder;
+    }
 }
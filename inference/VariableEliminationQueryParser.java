@@ -22,6 +22,7 @@ public class VariableEliminationQueryParser {
      *
      * @param queryStr the query string
      * @return the parsed Query object
+     * @throws IllegalArgumentException if a variable is not in the network or an outcome is not one of its variable
      */
     public VariableEliminationQuery parseQuery(String queryStr) {
         VariableEliminationQuery variableEliminationQuery = new VariableEliminationQuery();
@@ -50,6 +51,11 @@ public class VariableEliminationQueryParser {
         Queue<String> eliminationVariables = Arrays.stream(match.group(1).split("-")).map(String::trim).collect(
                 Collectors.toCollection(ArrayDeque::new));
         variableEliminationQuery.setEliminationVariables(eliminationVariables);
+        // Intern the elimination order, names that are not in the network have nothing to eliminate
+        variableEliminationQuery.setEliminationOrder(eliminationVariables.stream()
+                                                                         .mapToInt(bayesianNetwork.getRegistry()::getId)
+                                                                         .filter(id -> id >= 0)
+                                                                         .toArray());
     }
 
     /**
@@ -60,8 +66,7 @@ public class VariableEliminationQueryParser {
      */
     private void extractEvidence(VariableEliminationQuery variableEliminationQuery, String[] variables) {
         for (int i = 1; i < variables.length; ++i) {
-            Variable evidence = bayesianNetwork.getVariableMap().get(variables[i].split("=")[0]);
-            evidence.setEvidence(true);
+            Variable evidence = getVariable(variables[i].split("=")[0]);
             String evidenceOutcome = variables[i].split("=")[1];
             variableEliminationQuery.addEvidenceVariable(new Pair<>(evidence, evidenceOutcome));
         }
@@ -74,8 +79,23 @@ public class VariableEliminationQueryParser {
      * @param variables the parsed variables
      */
     private void extractQueryVariable(VariableEliminationQuery variableEliminationQuery, String[] variables) {
-        Variable queryVariable = bayesianNetwork.getVariableMap().get(variables[0].split("=")[0]);
+        Variable queryVariable = getVariable(variables[0].split("=")[0]);
         String queryVariableOutcome = variables[0].split("=")[1];
         variableEliminationQuery.setQueryVariable(new Pair<>(queryVariable, queryVariableOutcome));
     }
+
+    /**
+     * Gets a variable of the network by name.
+     *
+     * @param name the name of the variable
+     * @return the variable
+     * @throws IllegalArgumentException if the network has no variable of that name
+     */
+    private Variable getVariable(String name) {
+        Variable variable = bayesianNetwork.getVariableMap().get(name);
+        if (variable == null) {
+            throw new IllegalArgumentException("Unknown variable " + name);
+        }
+        return variable;
+    }
 }
@@ -0,0 +1,75 @@
+package inference;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VariableEliminationQueryParserTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private VariableEliminationQueryParser parser;
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        Path networkFile = directory.resolve("alarm.xml");
+        Files.writeString(networkFile, ALARM_NETWORK);
+        BayesianNetworkParser networkParser = new BayesianNetworkParser();
+        networkParser.parseBayesianNetwork(networkFile.toString());
+        network = networkParser.getBayesianNetwork().snapshot();
+        parser = new VariableEliminationQueryParser(network);
+    }
+
+    @Test
+    public void testQueryIsInterned() {
+        VariableEliminationQuery query = parser.parseQuery("P(B=F|J=T,M=F) A-E");
+
+        assertEquals(network.getVariableMap().get("B").getId(), query.getQueryVariableId());
+        assertEquals(1, query.getQueryOutcomeIndex());
+        assertArrayEquals(new int[]{network.getVariableMap().get("J").getId(), network.getVariableMap().get("M").getId()}, query.getEvidenceIds());
+        assertArrayEquals(new int[]{0, 1}, query.getEvidenceOutcomeIndexes());
+    }
+
+    @Test
+    public void testUnknownOutcomesAndVariablesAreRejected() {
+        IllegalArgumentException queryOutcome = assertThrows(IllegalArgumentException.class, () -> parser.parseQuery("P(M=bogus|B=T) A-E-J"));
+        assertEquals("Unknown outcome bogus of variable M", queryOutcome.getMessage());
+        IllegalArgumentException evidenceOutcome = assertThrows(IllegalArgumentException.class, () -> parser.parseQuery("P(M=T|B=T,J=maybe) A-E"));
+        assertEquals("Unknown outcome maybe of variable J", evidenceOutcome.getMessage());
+        IllegalArgumentException variable = assertThrows(IllegalArgumentException.class, () -> parser.parseQuery("P(M=T|X=T) A-B-E-J"));
+        assertEquals("Unknown variable X", variable.getMessage());
+    }
+
+    @Test
+    public void testRestrictRejectsOutcomesOutOfRange() {
+        DenseFactor table = network.getFactorList().get(2).getTable();
+
+        assertThrows(IllegalArgumentException.class, () -> table.restrict(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> table.restrict(0, 2));
+        assertEquals(0.94, table.restrict(0, 0).getValue(2));
+    }
+}
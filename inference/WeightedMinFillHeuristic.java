@@ -0,0 +1,19 @@
+package inference;
+
+/**
+ * This heuristic eliminates the variable that adds the lightest fill edges first.
+ * The weight of a fill edge is the product of the cardinalities of its endpoints, so edges between
+ * variables with many outcomes are avoided.
+ */
+public class WeightedMinFillHeuristic extends MinFillHeuristic {
+
+    @Override
+    protected double edgeWeight(EliminationGraph graph, int first, int second) {
+        return (double) graph.getCardinality(first) * graph.getCardinality(second);
+    }
+
+    @Override
+    public String toString() {
+        return "weighted-min-fill";
+    }
+}
@@ -0,0 +1,120 @@
+package junctiontree;
+
+import inference.DenseFactor;
+import inference.Variable;
+
+/**
+ * This class represents a junction tree (clique tree) compiled from a Bayesian Network.
+ * Every clique holds the product of the CPTs assigned to it, and every clique except the root is
+ * connected to its parent clique through a separator, the variables the two cliques share.
+ */
+public class JunctionTree {
+    private final Variable[][] cliques; // The variables of each clique, ordered by id
+    private final int[] parents; // The parent of each clique in the rooted tree, -1 for the root
+    private final Variable[][] separators; // The variables each clique shares with its parent, ordered by id
+    private final int[] collectOrder; // The cliques ordered so that every clique comes before its parent
+    private final DenseFactor[] initialPotentials; // The product of the CPTs assigned to each clique
+    private final int[] homeCliques; // The smallest clique containing each variable, indexed by variable id
+
+    /**
+     * Constructor for JunctionTree.
+     *
+     * @param cliques           the variables of each clique, ordered by id
+     * @param parents           the parent of each clique in the rooted tree, -1 for the root
+     * @param separators        the variables each clique shares with its parent, ordered by id
+     * @param collectOrder      the cliques ordered so that every clique comes before its parent
+     * @param initialPotentials the product of the CPTs assigned to each clique
+     * @param homeCliques       the smallest clique containing each variable, indexed by variable id
+     */
+    public JunctionTree(Variable[][] cliques, int[] parents, Variable[][] separators, int[] collectOrder,
+                        DenseFactor[] initialPotentials, int[] homeCliques) {
+        this.cliques = cliques;
+        this.parents = parents;
+        this.separators = separators;
+        this.collectOrder = collectOrder;
+        this.initialPotentials = initialPotentials;
+        this.homeCliques = homeCliques;
+    }
+
+    /**
+     * Gets the number of cliques in the tree.
+     *
+     * @return the number of cliques
+     */
+    public int getNumCliques() {
+        return this.cliques.length;
+    }
+
+    /**
+     * Gets the variables of a clique.
+     *
+     * @param clique the index of the clique
+     * @return the variables of the clique, ordered by id
+     */
+    public Variable[] getClique(int clique) {
+        return this.cliques[clique];
+    }
+
+    /**
+     * Gets the parent of a clique in the rooted tree.
+     *
+     * @param clique the index of the clique
+     * @return the index of the parent clique, or -1 for the root
+     */
+    public int getParent(int clique) {
+        return this.parents[clique];
+    }
+
+    /**
+     * Gets the separator between a clique and its parent.
+     *
+     * @param clique the index of the clique
+     * @return the variables the clique shares with its parent, ordered by id
+     */
+    public Variable[] getSeparator(int clique) {
+        return this.separators[clique];
+    }
+
+    /**
+     * Gets the cliques ordered so that every clique comes before its parent.
+     * Messages are collected to the root in this order and distributed from the root in the reverse order.
+     *
+     * @return the indexes of the cliques
+     */
+    public int[] getCollectOrder() {
+        return this.collectOrder;
+    }
+
+    /**
+     * Gets the potential of a clique before any evidence is entered.
+     *
+     * @param clique the index of the clique
+     * @return the product of the CPTs assigned to the clique
+     */
+    public DenseFactor getInitialPotential(int clique) {
+        return this.initialPotentials[clique];
+    }
+
+    /**
+     * Gets the smallest clique containing a variable.
+     *
+     * @param variableId the id of the variable
+     * @return the index of the clique
+     */
+    public int getHomeClique(int variableId) {
+        return this.homeCliques[variableId];
+    }
+
+    /**
+     * Gets the size of the largest clique minus one, the width of the tree.
+     *
+     * @return the width of the tree
+     */
+    public int getWidth() {
+        int width = 0;
+        for (Variable[] clique : cliques) {
+            width = Math.max(width, clique.length - 1);
+        }
+        return width;
+    }
+}
@@ -0,0 +1,255 @@
+package junctiontree;
+
+import core.BayesianNetwork;
+import core.VariableRegistry;
+import inference.DenseFactor;
+import inference.EliminationGraph;
+import inference.EliminationOrderHeuristic;
+import inference.EliminationOrderPlanner;
+import inference.Factor;
+import inference.FactorOperations;
+import inference.MinFillHeuristic;
+import inference.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Collectors;
+
+/**
+ * This class compiles a Bayesian Network into a junction tree.
+ * The moralized graph of the network is triangulated by a heuristic elimination order, the maximal cliques of
+ * the elimination are connected by a maximum spanning tree over the separator sizes, and every CPT is multiplied
+ * into a clique that contains its scope.
+ */
+public class JunctionTreeCompiler {
+    private final EliminationOrderHeuristic heuristic; // The heuristic used to triangulate the moralized graph
+
+    /**
+     * Constructor for JunctionTreeCompiler that triangulates with the min-fill heuristic.
+     */
+    public JunctionTreeCompiler() {
+        this(new MinFillHeuristic());
+    }
+
+    /**
+     * Constructor for JunctionTreeCompiler.
+     *
+     * @param heuristic the heuristic used to triangulate the moralized graph
+     */
+    public JunctionTreeCompiler(EliminationOrderHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Compiles a Bayesian Network into a junction tree.
+     *
+     * @param network the Bayesian Network
+     * @return the junction tree of the network
+     */
+    public JunctionTree compile(BayesianNetwork network) {
+        VariableRegistry registry = network.getRegistry();
+        List<int[]> scopes = network.getFactorList().stream().map(factor -> factor.getTable().getScope()).collect(Collectors.toList());
+        EliminationGraph moralGraph = new EliminationGraph(scopes, registry);
+        int[] order = new EliminationOrderPlanner(heuristic).plan(moralGraph, -1).getOrder();
+
+        List<BitSet> cliqueSets = findCliques(moralGraph, order);
+        Variable[][] cliques = cliqueSets.stream().map(clique -> toVariables(clique, registry)).toArray(Variable[][]::new);
+
+        int[] parents = new int[cliques.length];
+        int[] collectOrder = buildTree(cliqueSets, parents);
+        Variable[][] separators = new Variable[cliques.length][];
+        for (int clique = 0; clique < cliques.length; clique++) {
+            BitSet separator = (BitSet) cliqueSets.get(clique).clone();
+            if (parents[clique] >= 0) {
+                separator.and(cliqueSets.get(parents[clique]));
+            } else {
+                separator.clear();
+            }
+            separators[clique] = toVariables(separator, registry);
+        }
+
+        DenseFactor[] potentials = new DenseFactor[cliques.length];
+        for (int clique = 0; clique < cliques.length; clique++) {
+            potentials[clique] = new DenseFactor(cliques[clique]);
+            for (int i = 0; i < potentials[clique].size(); i++) {
+                potentials[clique].setValue(i, 1);
+            }
+        }
+        for (Factor factor : network.getFactorList()) {
+            int clique = findSmallestClique(cliqueSets, toBitSet(factor.getTable().getScope()));
+            potentials[clique] = FactorOperations.multiply(potentials[clique], factor.getTable());
+        }
+
+        int[] homeCliques = new int[registry.size()];
+        for (int variableId = 0; variableId < homeCliques.length; variableId++) {
+            homeCliques[variableId] = findSmallestClique(cliqueSets, toBitSet(new int[]{variableId}));
+        }
+
+        return new JunctionTree(cliques, parents, separators, collectOrder, potentials, homeCliques);
+    }
+
+    /**
+     * Finds the maximal cliques created by eliminating the variables in the given order.
+     *
+     * @param moralGraph the moralized graph of the network
+     * @param order      the elimination order
+     * @return the maximal cliques as sets of variable ids
+     */
+    private List<BitSet> findCliques(EliminationGraph moralGraph, int[] order) {
+        EliminationGraph graph = new EliminationGraph(moralGraph);
+        List<BitSet> cliques = new ArrayList<>();
+        for (int variableId : order) {
+            BitSet clique = (BitSet) graph.getNeighbors(variableId).clone();
+            clique.set(variableId);
+            graph.eliminate(variableId);
+            // A clique created later never contains an eliminated variable, so only the new clique can be redundant
+            if (cliques.stream().noneMatch(other -> isSubset(clique, other))) {
+                cliques.add(clique);
+            }
+        }
+        return cliques;
+    }
+
+    /**
+     * Connects the cliques with a maximum spanning tree over the separator sizes and roots it at the first clique.
+     *
+     * @param cliques the cliques as sets of variable ids
+     * @param parents the array to fill with the parent of each clique, -1 for the root
+     * @return the cliques ordered so that every clique comes before its parent
+     */
+    private int[] buildTree(List<BitSet> cliques, int[] parents) {
+        int numCliques = cliques.size();
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < numCliques; i++) {
+            for (int j = i + 1; j < numCliques; j++) {
+                BitSet separator = (BitSet) cliques.get(i).clone();
+                separator.and(cliques.get(j));
+                edges.add(new int[]{i, j, separator.cardinality()});
+            }
+        }
+        edges.sort(Comparator.comparingInt((int[] edge) -> -edge[2]));
+
+        // Kruskal's algorithm, separators of size zero join the trees of disconnected parts of the network
+        int[] components = new int[numCliques];
+        Arrays.setAll(components, i -> i);
+        List<List<Integer>> adjacency = new ArrayList<>();
+        for (int i = 0; i < numCliques; i++) {
+            adjacency.add(new ArrayList<>());
+        }
+        for (int[] edge : edges) {
+            int first = findComponent(components, edge[0]);
+            int second = findComponent(components, edge[1]);
+            if (first != second) {
+                components[first] = second;
+                adjacency.get(edge[0]).add(edge[1]);
+                adjacency.get(edge[1]).add(edge[0]);
+            }
+        }
+
+        int[] breadthFirstOrder = new int[numCliques];
+        Arrays.fill(parents, -1);
+        boolean[] visited = new boolean[numCliques];
+        Queue<Integer> queue = new ArrayDeque<>();
+        int visitedCount = 0;
+        if (numCliques > 0) {
+            queue.add(0);
+            visited[0] = true;
+        }
+        while (!queue.isEmpty()) {
+            int clique = queue.poll();
+            breadthFirstOrder[visitedCount++] = clique;
+            for (int neighbor : adjacency.get(clique)) {
+                if (!visited[neighbor]) {
+                    visited[neighbor] = true;
+                    parents[neighbor] = clique;
+                    queue.add(neighbor);
+                }
+            }
+        }
+
+        int[] collectOrder = new int[numCliques];
+        for (int i = 0; i < numCliques; i++) {
+            collectOrder[i] = breadthFirstOrder[numCliques - 1 - i];
+        }
+        return collectOrder;
+    }
+
+    /**
+     * Finds the representative of a component, compressing the path on the way.
+     *
+     * @param components the parent of each element in the union-find forest
+     * @param element    the element
+     * @return the representative of the component of the element
+     */
+    private int findComponent(int[] components, int element) {
+        while (components[element] != element) {
+            components[element] = components[components[element]];
+            element = components[element];
+        }
+        return element;
+    }
+
+    /**
+     * Finds the smallest clique that contains all the given variables.
+     *
+     * @param cliques   the cliques as sets of variable ids
+     * @param variables the set of variable ids
+     * @return the index of the clique
+     */
+    private int findSmallestClique(List<BitSet> cliques, BitSet variables) {
+        int best = -1;
+        for (int clique = 0; clique < cliques.size(); clique++) {
+            if (isSubset(variables, cliques.get(clique))
+                    && (best < 0 || cliques.get(clique).cardinality() < cliques.get(best).cardinality())) {
+                best = clique;
+            }
+        }
+        if (best < 0) {
+            throw new IllegalStateException("No clique contains the variables " + variables);
+        }
+        return best;
+    }
+
+    /**
+     * Checks if a set is a subset of another set.
+     *
+     * @param subset   the candidate subset
+     * @param superset the candidate superset
+     * @return true if every element of the subset is in the superset, false otherwise
+     */
+    private boolean isSubset(BitSet subset, BitSet superset) {
+        BitSet difference = (BitSet) subset.clone();
+        difference.andNot(superset);
+        return difference.isEmpty();
+    }
+
+    /**
+     * Converts an array of variable ids to a set.
+     *
+     * @param variableIds the variable ids
+     * @return the set of variable ids
+     */
+    private BitSet toBitSet(int[] variableIds) {
+        BitSet set = new BitSet();
+        for (int variableId : variableIds) {
+            set.set(variableId);
+        }
+        return set;
+    }
+
+    /**
+     * Converts a set of variable ids to the variables, ordered by id.
+     *
+     * @param variableIds the set of variable ids
+     * @param registry    the registry of the variables
+     * @return the variables
+     */
+    private Variable[] toVariables(BitSet variableIds, VariableRegistry registry) {
+        return variableIds.stream().mapToObj(registry::getVariable).toArray(Variable[]::new);
+    }
+}
@@ -0,0 +1,149 @@
+package junctiontree;
+
+import inference.DenseFactor;
+import inference.FactorOperations;
+import inference.QueryResult;
+import inference.QuerySignature;
+import inference.Variable;
+import inference.VariableEliminationQuery;
+
+import java.util.Arrays;
+
+/**
+ * This class answers marginal queries on a compiled junction tree with Hugin propagation.
+ * The tree is calibrated once for an evidence set, and every query with the same evidence, in any order,
+ * is then answered from the calibrated potential of a single clique.
+ */
+public class JunctionTreeEngine {
+    private final JunctionTree junctionTree; // The compiled junction tree
+    private final DenseFactor[] potentials; // The current potential of each clique
+    private final DenseFactor[] separatorPotentials; // The current potential of the separator of each clique with its parent
+    private int[] calibratedEvidence; // Sorted (variable id, outcome index) pairs the tree is calibrated for, or null
+
+    /**
+     * Constructor for JunctionTreeEngine.
+     *
+     * @param junctionTree the compiled junction tree
+     */
+    public JunctionTreeEngine(JunctionTree junctionTree) {
+        this.junctionTree = junctionTree;
+        this.potentials = new DenseFactor[junctionTree.getNumCliques()];
+        this.separatorPotentials = new DenseFactor[junctionTree.getNumCliques()];
+    }
+
+    /**
+     * Executes a query. The query variable, its outcome and the evidence are read from the query,
+     * the elimination order of the query is not needed.
+     * The operation counts of the result include the calibration when the evidence differs from the previous query.
+     * If the evidence has probability zero the error is reported and the probability is 0, as variable elimination outputs it.
+     *
+     * @param query the query to execute
+     * @return the result of the query
+     */
+    public QueryResult executeQuery(VariableEliminationQuery query) {
+        QueryResult queryResult = new QueryResult();
+        int[] evidence = QuerySignature.of(query).getEvidence();
+        if (!Arrays.equals(evidence, calibratedEvidence)) {
+            calibrate(evidence, queryResult);
+            calibratedEvidence = evidence;
+        }
+
+        Variable queryVariable = query.getQueryVariable().getKey();
+        DenseFactor marginal = marginalize(potentials[junctionTree.getHomeClique(queryVariable.getId())], new Variable[]{queryVariable}, queryResult);
+        double probabilitySum = marginal.sum();
+        queryResult.incrementAdditionOperations(marginal.size() - 1);
+        if (probabilitySum == 0) {
+            System.err.println("Error during junction tree propagation: The evidence has probability zero");
+            return queryResult;
+        }
+        queryResult.setProbability(marginal.getValue(query.getQueryOutcomeIndex()) / probabilitySum);
+        return queryResult;
+    }
+
+    /**
+     * Resets the potentials, enters the evidence and calibrates the tree with a collect and a distribute pass.
+     *
+     * @param evidence    sorted (variable id, outcome index) pairs
+     * @param queryResult the result that counts the operations
+     */
+    private void calibrate(int[] evidence, QueryResult queryResult) {
+        for (int clique = 0; clique < potentials.length; clique++) {
+            potentials[clique] = junctionTree.getInitialPotential(clique).copy();
+            separatorPotentials[clique] = null;
+        }
+        for (int i = 0; i < evidence.length; i += 2) {
+            enterEvidence(evidence[i], evidence[i + 1], queryResult);
+        }
+
+        int[] collectOrder = junctionTree.getCollectOrder();
+        for (int clique : collectOrder) {
+            int parent = junctionTree.getParent(clique);
+            if (parent >= 0) {
+                DenseFactor message = marginalize(potentials[clique], junctionTree.getSeparator(clique), queryResult);
+                potentials[parent] = multiply(potentials[parent], message, queryResult);
+                separatorPotentials[clique] = message;
+            }
+        }
+        for (int i = collectOrder.length - 1; i >= 0; i--) {
+            int clique = collectOrder[i];
+            int parent = junctionTree.getParent(clique);
+            if (parent >= 0) {
+                DenseFactor message = marginalize(potentials[parent], junctionTree.getSeparator(clique), queryResult);
+                DenseFactor update = FactorOperations.divide(message, separatorPotentials[clique]);
+                queryResult.incrementMultiplicationOperations(update.size());
+                potentials[clique] = multiply(potentials[clique], update, queryResult);
+                separatorPotentials[clique] = message;
+            }
+        }
+    }
+
+    /**
+     * Enters an observation by zeroing the entries of the home clique of the variable that disagree with it.
+     *
+     * @param variableId   the id of the observed variable
+     * @param outcomeIndex the index of the observed outcome
+     * @param queryResult  the result that counts the operations
+     */
+    private void enterEvidence(int variableId, int outcomeIndex, QueryResult queryResult) {
+        int clique = junctionTree.getHomeClique(variableId);
+        DenseFactor potential = potentials[clique];
+        DenseFactor indicator = new DenseFactor(new Variable[]{potential.getVariable(potential.indexOfVariable(variableId))});
+        indicator.setValue(outcomeIndex, 1);
+        potentials[clique] = multiply(potential, indicator, queryResult);
+    }
+
+    /**
+     * Multiplies a clique potential by a table over a subset of its variables.
+     *
+     * @param potential   the clique potential
+     * @param table       the table over a subset of the clique variables
+     * @param queryResult the result that counts the operations
+     * @return the product, over the variables of the clique in the same order
+     */
+    private DenseFactor multiply(DenseFactor potential, DenseFactor table, QueryResult queryResult) {
+        DenseFactor product = FactorOperations.multiply(potential, table);
+        queryResult.incrementMultiplicationOperations(product.size());
+        return product;
+    }
+
+    /**
+     * Sums out every variable of a potential except the kept ones.
+     *
+     * @param potential   the potential
+     * @param keep        the variables to keep
+     * @param queryResult the result that counts the operations
+     * @return the marginal over the kept variables, in the order of the potential
+     */
+    private DenseFactor marginalize(DenseFactor potential, Variable[] keep, QueryResult queryResult) {
+        DenseFactor marginal = potential;
+        for (int position = marginal.getNumVariables() - 1; position >= 0; position--) {
+            int variableId = marginal.getScope()[position];
+            if (Arrays.stream(keep).noneMatch(variable -> variable.getId() == variableId)) {
+                int cardinality = marginal.getCardinality(position);
+                marginal = FactorOperations.sumOut(marginal, position);
+                queryResult.incrementAdditionOperations(marginal.size() * (cardinality - 1));
+            }
+        }
+        return marginal;
+    }
+}
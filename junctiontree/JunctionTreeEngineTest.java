@@ -0,0 +1,129 @@
+package junctiontree;
+
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import inference.QueryResult;
+import inference.VariableElimination;
+import inference.VariableEliminationQuery;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JunctionTreeEngineTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    // The alarm network next to an unconnected part X -> Y -> Z
+    private static final String DISCONNECTED_NETWORK = ALARM_NETWORK.replace("</NETWORK>", """
+            <VARIABLE><NAME>X</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>Y</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME><OUTCOME>U</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>Z</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>X</FOR><TABLE>0.35 0.65</TABLE></DEFINITION>
+            <DEFINITION><FOR>Y</FOR><GIVEN>X</GIVEN><TABLE>0.5 0.3 0.2 0.1 0.6 0.3</TABLE></DEFINITION>
+            <DEFINITION><FOR>Z</FOR><GIVEN>Y</GIVEN><TABLE>0.9 0.1 0.4 0.6 0.25 0.75</TABLE></DEFINITION>
+            </NETWORK>
+            """);
+
+    private Path directory;
+
+    @BeforeEach
+    public void setDirectory(@TempDir Path directory) {
+        this.directory = directory;
+    }
+
+    private BayesianNetwork parse(String xml) throws IOException {
+        Path networkFile = Files.createTempFile(directory, "network", ".xml");
+        Files.writeString(networkFile, xml);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        return parser.getBayesianNetwork().snapshot();
+    }
+
+    private static double eliminate(BayesianNetwork network, VariableEliminationQuery query) {
+        VariableElimination ve = new VariableElimination(network, query);
+        ve.executeQuery();
+        return ve.getQueryResult().getProbability();
+    }
+
+    // Answers every query on one engine, in order, and compares each answer with variable elimination
+    private static void assertMatchesVariableElimination(BayesianNetwork network, JunctionTreeEngine engine, String... lines) {
+        VariableEliminationQueryParser parser = new VariableEliminationQueryParser(network);
+        for (String line : lines) {
+            VariableEliminationQuery query = parser.parseQuery(line);
+            assertEquals(eliminate(network, query), engine.executeQuery(query).getProbability(), 1e-5, line);
+        }
+    }
+
+    @Test
+    public void testMarginalsMatchVariableElimination() throws IOException {
+        BayesianNetwork network = parse(ALARM_NETWORK);
+        JunctionTree junctionTree = new JunctionTreeCompiler().compile(network);
+
+        // No evidence
+        assertMatchesVariableElimination(network, new JunctionTreeEngine(junctionTree),
+                                         "P(B=T)", "P(E=F)", "P(A=T)", "P(J=T)", "P(M=F)");
+        // Single evidence, above, below and beside the query variable
+        assertMatchesVariableElimination(network, new JunctionTreeEngine(junctionTree),
+                                         "P(B=T|J=T)", "P(J=T|B=T)", "P(E=T|B=F)", "P(M=T|J=F)");
+        // Multiple evidence
+        assertMatchesVariableElimination(network, new JunctionTreeEngine(junctionTree),
+                                         "P(B=T|J=T,M=T)", "P(E=T|J=T,M=F,B=F)", "P(A=F|B=T,E=T)", "P(J=T|E=T,M=T)");
+    }
+
+    @Test
+    public void testChangingTheEvidenceRecalibratesTheTree() throws IOException {
+        BayesianNetwork network = parse(ALARM_NETWORK);
+        JunctionTreeEngine engine = new JunctionTreeEngine(new JunctionTreeCompiler().compile(network));
+        VariableEliminationQueryParser parser = new VariableEliminationQueryParser(network);
+
+        assertMatchesVariableElimination(network, engine,
+                                         "P(B=T)", "P(B=T|J=T)", "P(E=T|J=T)", "P(B=T|J=T,M=T)",
+                                         "P(B=T|J=F,M=T)", "P(B=T)", "P(B=T|M=T,J=T)", "P(A=T|J=T,M=T)");
+
+        // A query with the evidence of the previous one only reads the calibrated tree
+        QueryResult calibrated = engine.executeQuery(parser.parseQuery("P(E=T|J=T,M=T)"));
+        QueryResult recalibrated = engine.executeQuery(parser.parseQuery("P(E=T|J=T)"));
+        assertTrue(calibrated.getMultiplicationOperations() == 0, calibrated.toString());
+        assertTrue(recalibrated.getMultiplicationOperations() > 0, recalibrated.toString());
+    }
+
+    @Test
+    public void testDisconnectedNetworkIsCompiledToAForest() throws IOException {
+        BayesianNetwork network = parse(DISCONNECTED_NETWORK);
+        JunctionTree junctionTree = new JunctionTreeCompiler().compile(network);
+
+        // The trees of the two parts are joined by an empty separator
+        int emptySeparators = 0;
+        for (int clique = 0; clique < junctionTree.getNumCliques(); clique++) {
+            if (junctionTree.getParent(clique) >= 0 && junctionTree.getSeparator(clique).length == 0) {
+                emptySeparators++;
+            }
+        }
+        assertEquals(1, emptySeparators);
+
+        assertMatchesVariableElimination(network, new JunctionTreeEngine(junctionTree),
+                                         "P(Y=U)", "P(Y=U|J=T)", "P(B=T|J=T,Z=F)", "P(X=T|Z=F)",
+                                         "P(Z=T|X=F,M=T)", "P(Y=T|Z=T,B=T)", "P(A=T)");
+    }
+}
@@ -0,0 +1,39 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter that only goes up, such as the number of queries answered.
+ * Any number of threads can increment it without contention.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder(); // The current value of the counter
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Increments the counter.
+     *
+     * @param amount the amount to add, not negative
+     */
+    public void increment(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A counter cannot be decremented");
+        }
+        value.add(amount);
+    }
+
+    /**
+     * Gets the value of the counter.
+     *
+     * @return the value
+     */
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,37 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A gauge holding a value that can go up and down, such as the largest factor built so far.
+ */
+public class Gauge {
+    private final AtomicLong value = new AtomicLong(); // The current value of the gauge
+
+    /**
+     * Sets the value of the gauge.
+     *
+     * @param newValue the new value
+     */
+    public void set(long newValue) {
+        value.set(newValue);
+    }
+
+    /**
+     * Raises the value of the gauge to the given value if it is higher, to track a peak.
+     *
+     * @param candidate the candidate value
+     */
+    public void updateMax(long candidate) {
+        value.accumulateAndGet(candidate, Math::max);
+    }
+
+    /**
+     * Gets the value of the gauge.
+     *
+     * @return the value
+     */
+    public long get() {
+        return value.get();
+    }
+}
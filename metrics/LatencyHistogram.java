@@ -0,0 +1,135 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with a bounded relative error, in the style of HdrHistogram.
+ * Values below 2^SUB_BUCKET_BITS nanoseconds have a bucket each. Above that, every power of two is split into
+ * 2^SUB_BUCKET_BITS linear sub-buckets, so a value is known within about 3% whatever its magnitude, and
+ * the buckets of all the powers of two up to 2^63 take a fixed array of a few thousand counts.
+ * Recording a value is lock-free and does not allocate.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5; // The number of bits of a value kept below its leading bit
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // The number of buckets of each power of two
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; // Enough buckets for any positive long
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS); // The number of values recorded in each bucket
+    private final LongAdder count = new LongAdder(); // The number of values recorded
+    private final LongAdder sum = new LongAdder(); // The sum of the values recorded
+    private final AtomicLong max = new AtomicLong(); // The largest value recorded
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of the latencies recorded.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest latency recorded.
+     *
+     * @return the largest latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets the latency below which the given fraction of the recorded latencies fall.
+     * The result is the highest value of the bucket holding the quantile, capped by the largest latency recorded.
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the latency in nanoseconds, or 0 if none was recorded
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Counts the recorded latencies below a power of two. Powers of two are bucket boundaries, so the count is exact.
+     *
+     * @param exponent the exponent of the power of two, at least SUB_BUCKET_BITS
+     * @return the number of latencies below 2^exponent nanoseconds
+     */
+    public long getCountBelowPowerOfTwo(int exponent) {
+        if (exponent < SUB_BUCKET_BITS || exponent > 63) {
+            throw new IllegalArgumentException("The exponent must be between " + SUB_BUCKET_BITS + " and 63");
+        }
+        int end = exponent == 63 ? NUM_BUCKETS : bucketOf(1L << exponent);
+        long below = 0;
+        for (int bucket = 0; bucket < end; bucket++) {
+            below += counts.get(bucket);
+        }
+        return below;
+    }
+
+    /**
+     * Finds the bucket of a value.
+     *
+     * @param value the value, not negative
+     * @return the index of the bucket
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the smallest value above a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the exclusive upper bound of the values of the bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width;
+    }
+}
@@ -0,0 +1,55 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (long value = 0; value < 1 << 16; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value < LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value >= LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)) - 1);
+    }
+
+    @Test
+    public void quantilesAreWithinTheRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000L, histogram.getMax());
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            double expected = quantile * 100_000_000L;
+            assertEquals(expected, histogram.getValueAtQuantile(quantile), expected / 32);
+        }
+        assertEquals(100_000_000L, histogram.getValueAtQuantile(1));
+        assertEquals(1, histogram.getCountBelowPowerOfTwo(10));
+        assertEquals(2, histogram.getCountBelowPowerOfTwo(11));
+    }
+
+    @Test
+    public void exportsPrometheusHistograms() {
+        MetricsRegistry registry = new MetricsRegistry();
+        QueryMetrics queryMetrics = new QueryMetrics(registry);
+        queryMetrics.recordQuery(QueryMetrics.BAYES_BALL, 3_000);
+        queryMetrics.recordQuery(QueryMetrics.BAYES_BALL, 5_000_000);
+        queryMetrics.recordIntermediateFactorSize(64);
+        queryMetrics.recordIntermediateFactorSize(16);
+
+        String text = new PrometheusExporter(registry).scrape();
+        assertTrue(text.contains("# TYPE bayesnet_query_latency_seconds histogram\n"));
+        assertTrue(text.contains("bayesnet_query_latency_seconds_bucket{engine=\"bayes_ball\",le=\"4.096E-6\"} 1\n"));
+        assertTrue(text.contains("bayesnet_query_latency_seconds_bucket{engine=\"bayes_ball\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("bayesnet_query_latency_seconds_count{engine=\"bayes_ball\"} 2\n"));
+        assertTrue(text.contains("bayesnet_queries_total{engine=\"bayes_ball\"} 2\n"));
+        assertTrue(text.contains("bayesnet_peak_intermediate_factor_entries 64\n"));
+    }
+}
@@ -0,0 +1,197 @@
+package metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * This class holds named metric families, each with one metric per set of label values.
+ * Asking for a metric that was already registered returns the same metric, so callers can look metrics up
+ * on every use or keep them. The registry is safe to use from many threads; see PrometheusExporter to export it.
+ */
+public class MetricsRegistry {
+    private final Map<String, Family> families = new ConcurrentHashMap<>(); // The metric families by name
+
+    /**
+     * The kind of the metrics of a family, named as in the Prometheus text format.
+     */
+    enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String prometheusName; // The name of the type in the Prometheus text format
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+
+        /**
+         * Gets the name of the type in the Prometheus text format.
+         *
+         * @return the name of the type
+         */
+        String getPrometheusName() {
+            return prometheusName;
+        }
+    }
+
+    /**
+     * A metric family: metrics of one type sharing a name and a help text, told apart by their labels.
+     */
+    static class Family {
+        private final String name; // The name of the family
+        private final String help; // The description of the family
+        private final Type type; // The type of the metrics of the family
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>(); // The metrics by their rendered labels, sorted for stable output
+
+        /**
+         * Constructor for Family.
+         *
+         * @param name the name of the family
+         * @param help the description of the family
+         * @param type the type of the metrics of the family
+         */
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        /**
+         * Gets the name of the family.
+         *
+         * @return the name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the description of the family.
+         *
+         * @return the description
+         */
+        String getHelp() {
+            return help;
+        }
+
+        /**
+         * Gets the type of the metrics of the family.
+         *
+         * @return the type
+         */
+        Type getType() {
+            return type;
+        }
+
+        /**
+         * Gets the metrics of the family by their labels, rendered as in the Prometheus text format without braces.
+         *
+         * @return the metrics, sorted by their labels
+         */
+        Map<String, Object> getMetrics() {
+            return metrics;
+        }
+    }
+
+    /**
+     * Gets or registers a counter.
+     *
+     * @param name   the name of the counter family
+     * @param help   the description of the family
+     * @param labels label names and values, alternating
+     * @return the counter
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) metric(name, help, Type.COUNTER, labels, Counter::new);
+    }
+
+    /**
+     * Gets or registers a gauge.
+     *
+     * @param name   the name of the gauge family
+     * @param help   the description of the family
+     * @param labels label names and values, alternating
+     * @return the gauge
+     */
+    public Gauge gauge(String name, String help, String... labels) {
+        return (Gauge) metric(name, help, Type.GAUGE, labels, Gauge::new);
+    }
+
+    /**
+     * Gets or registers a latency histogram. Its family is exported in seconds, so its name should end in _seconds.
+     *
+     * @param name   the name of the histogram family
+     * @param help   the description of the family
+     * @param labels label names and values, alternating
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) metric(name, help, Type.HISTOGRAM, labels, LatencyHistogram::new);
+    }
+
+    /**
+     * Gets the registered metric families.
+     *
+     * @return the families, in no particular order
+     */
+    Collection<Family> getFamilies() {
+        return families.values();
+    }
+
+    /**
+     * Gets or registers a metric of a family, registering the family first if needed.
+     *
+     * @param name    the name of the family
+     * @param help    the description of the family
+     * @param type    the type of the metrics of the family
+     * @param labels  label names and values, alternating
+     * @param factory creates the metric if it is not registered yet
+     * @return the metric
+     */
+    private Object metric(String name, String help, Type type, String[] labels, Supplier<Object> factory) {
+        if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) {
+            throw new IllegalArgumentException("Invalid metric name: " + name);
+        }
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.getType() != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.getType().getPrometheusName());
+        }
+        return family.getMetrics().computeIfAbsent(renderLabels(labels), key -> factory.get());
+    }
+
+    /**
+     * Renders label names and values as in the Prometheus text format, without the braces.
+     *
+     * @param labels label names and values, alternating
+     * @return the rendered labels, empty if there are none
+     */
+    private static String renderLabels(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (!labels[i].matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                throw new IllegalArgumentException("Invalid label name: " + labels[i]);
+            }
+            if (i > 0) {
+                rendered.append(',');
+            }
+            rendered.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                switch (c) {
+                    case '\\' -> rendered.append("\\\\");
+                    case '"' -> rendered.append("\\\"");
+                    case '\n' -> rendered.append("\\n");
+                    default -> rendered.append(c);
+                }
+            }
+            rendered.append('"');
+        }
+        return rendered.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class exports a metrics registry in the Prometheus text exposition format, either to a file that a
+ * node exporter textfile collector or a scraper can read, or from an HTTP endpoint on the loopback interface.
+ * Histograms are exported as Prometheus histograms with a bucket for every power of two of nanoseconds from about
+ * a microsecond to about a minute, and their HDR quantiles are exported alongside as a gauge family named
+ * after the histogram with a _quantile suffix.
+ */
+public class PrometheusExporter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8"; // The media type of the text format
+    public static final String METRICS_PATH = "/metrics"; // The path the HTTP endpoint serves the metrics on
+    private static final int MIN_BUCKET_EXPONENT = 10; // The first histogram bucket is 2^10 ns, about a microsecond
+    private static final int MAX_BUCKET_EXPONENT = 36; // The last finite histogram bucket is 2^36 ns, about 69 seconds
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999}; // The quantiles exported for every histogram
+    private static final double NANOS_PER_SECOND = 1e9; // Histograms record nanoseconds and export seconds
+
+    private final MetricsRegistry registry; // The registry to export
+    private HttpServer server; // The HTTP server of the endpoint, or null if it is not running
+
+    /**
+     * Constructor for PrometheusExporter.
+     *
+     * @param registry the registry to export
+     */
+    public PrometheusExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Writes the current values of the metrics in the Prometheus text format, with the families sorted by name.
+     *
+     * @param writer the writer
+     * @throws IOException if the writer fails
+     */
+    public void write(Writer writer) throws IOException {
+        List<MetricsRegistry.Family> families = registry.getFamilies().stream()
+                                                        .sorted(Comparator.comparing(MetricsRegistry.Family::getName))
+                                                        .toList();
+        for (MetricsRegistry.Family family : families) {
+            writeHeader(writer, family.getName(), family.getHelp(), family.getType().getPrometheusName());
+            for (Map.Entry<String, Object> entry : family.getMetrics().entrySet()) {
+                String labels = entry.getKey();
+                Object metric = entry.getValue();
+                if (metric instanceof Counter counter) {
+                    writeSample(writer, family.getName(), labels, Long.toString(counter.get()));
+                } else if (metric instanceof Gauge gauge) {
+                    writeSample(writer, family.getName(), labels, Long.toString(gauge.get()));
+                } else {
+                    writeHistogram(writer, family.getName(), labels, (LatencyHistogram) metric);
+                }
+            }
+            if (family.getType() == MetricsRegistry.Type.HISTOGRAM) {
+                writeQuantiles(writer, family);
+            }
+        }
+    }
+
+    /**
+     * Renders the current values of the metrics in the Prometheus text format.
+     *
+     * @return the metrics text
+     */
+    public String scrape() {
+        StringWriter writer = new StringWriter();
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // A StringWriter does not fail
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the metrics to a file. The text is written to a temporary file next to it first and moved over it,
+     * so a reader never sees a partly written file.
+     *
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeToFile(Path path) throws IOException {
+        Path absolutePath = path.toAbsolutePath();
+        Path temporaryPath = absolutePath.resolveSibling(absolutePath.getFileName() + ".tmp");
+        Files.writeString(temporaryPath, scrape(), StandardCharsets.UTF_8);
+        Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Starts serving the metrics on http://127.0.0.1:port/metrics. The server only listens on the loopback interface.
+     *
+     * @param port the port, or 0 to pick a free one
+     * @return the port the server listens on
+     * @throws IOException if the server cannot be started
+     */
+    public synchronized int start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The metrics endpoint is already running");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(METRICS_PATH, exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving the metrics, if the endpoint is running.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Writes the buckets, the sum and the count of a histogram.
+     *
+     * @param writer    the writer
+     * @param name      the name of the histogram family
+     * @param labels    the rendered labels of the histogram
+     * @param histogram the histogram
+     * @throws IOException if the writer fails
+     */
+    private static void writeHistogram(Writer writer, String name, String labels, LatencyHistogram histogram) throws IOException {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int exponent = MIN_BUCKET_EXPONENT; exponent <= MAX_BUCKET_EXPONENT; exponent++) {
+            String bound = Double.toString((1L << exponent) / NANOS_PER_SECOND);
+            writeSample(writer, name + "_bucket", labels + separator + "le=\"" + bound + "\"",
+                        Long.toString(histogram.getCountBelowPowerOfTwo(exponent)));
+        }
+        long count = histogram.getCount();
+        writeSample(writer, name + "_bucket", labels + separator + "le=\"+Inf\"", Long.toString(count));
+        writeSample(writer, name + "_sum", labels, Double.toString(histogram.getSum() / NANOS_PER_SECOND));
+        writeSample(writer, name + "_count", labels, Long.toString(count));
+    }
+
+    /**
+     * Writes the quantiles of the histograms of a family as a gauge family.
+     *
+     * @param writer the writer
+     * @param family the histogram family
+     * @throws IOException if the writer fails
+     */
+    private static void writeQuantiles(Writer writer, MetricsRegistry.Family family) throws IOException {
+        String name = family.getName() + "_quantile";
+        writeHeader(writer, name, "Quantiles of " + family.getName(), "gauge");
+        for (Map.Entry<String, Object> entry : family.getMetrics().entrySet()) {
+            String labels = entry.getKey();
+            String separator = labels.isEmpty() ? "" : ",";
+            LatencyHistogram histogram = (LatencyHistogram) entry.getValue();
+            for (double quantile : QUANTILES) {
+                writeSample(writer, name, labels + separator + "quantile=\"" + quantile + "\"",
+                            Double.toString(histogram.getValueAtQuantile(quantile) / NANOS_PER_SECOND));
+            }
+        }
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a family.
+     *
+     * @param writer the writer
+     * @param name   the name of the family
+     * @param help   the description of the family
+     * @param type   the Prometheus type of the family
+     * @throws IOException if the writer fails
+     */
+    private static void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+        writer.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    /**
+     * Writes one sample line.
+     *
+     * @param writer the writer
+     * @param name   the name of the sample
+     * @param labels the rendered labels, or an empty string
+     * @param value  the rendered value
+     * @throws IOException if the writer fails
+     */
+    private static void writeSample(Writer writer, String name, String labels, String value) throws IOException {
+        writer.write(labels.isEmpty() ? name + " " + value + "\n" : name + "{" + labels + "} " + value + "\n");
+    }
+}
@@ -0,0 +1,136 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of the query engines, registered in a metrics registry.
+ * Queries are told apart by the engine that answers them, in the engine label of every family:
+ * variable_elimination, junction_tree, likelihood_weighting or bayes_ball.
+ * The metrics of every engine are registered once, in the constructor, so recording a query only increments them.
+ */
+public class QueryMetrics {
+    public static final String VARIABLE_ELIMINATION = "variable_elimination"; // Engine label of probabilistic queries answered by variable elimination
+    public static final String JUNCTION_TREE = "junction_tree"; // Engine label of probabilistic queries answered from a junction tree
+    public static final String LIKELIHOOD_WEIGHTING = "likelihood_weighting"; // Engine label of probabilistic queries answered by sampling
+    public static final String BAYES_BALL = "bayes_ball"; // Engine label of independence queries
+
+    private final Map<String, EngineMetrics> engines; // The metrics of every engine, by engine label
+    private final Counter cacheHits; // The number of probabilistic queries answered from the query result cache
+    private final Gauge peakIntermediateFactorSize; // The number of entries of the largest factor product built by any query
+
+    /**
+     * Constructor for QueryMetrics.
+     *
+     * @param registry the registry to keep the metrics in
+     */
+    public QueryMetrics(MetricsRegistry registry) {
+        this.engines = Map.of(VARIABLE_ELIMINATION, new EngineMetrics(registry, VARIABLE_ELIMINATION),
+                              JUNCTION_TREE, new EngineMetrics(registry, JUNCTION_TREE),
+                              LIKELIHOOD_WEIGHTING, new EngineMetrics(registry, LIKELIHOOD_WEIGHTING),
+                              BAYES_BALL, new EngineMetrics(registry, BAYES_BALL));
+        this.cacheHits = registry.counter("bayesnet_query_cache_hits_total",
+                                          "Probabilistic queries answered from the query result cache");
+        this.peakIntermediateFactorSize = registry.gauge("bayesnet_peak_intermediate_factor_entries",
+                                                         "Entries of the largest factor product built by variable elimination");
+    }
+
+    /**
+     * Records an answered query.
+     *
+     * @param engine the engine that answered the query
+     * @param nanos  the latency of the query in nanoseconds, including parsing of its result but not of its line
+     */
+    public void recordQuery(String engine, long nanos) {
+        EngineMetrics metrics = engine(engine);
+        metrics.queries.increment();
+        metrics.latency.record(nanos);
+    }
+
+    /**
+     * Records a query that failed with an exception.
+     *
+     * @param engine the engine that ran the query
+     */
+    public void recordFailure(String engine) {
+        engine(engine).failures.increment();
+    }
+
+    /**
+     * Records a query that was not executed because it was predicted to build too large a factor.
+     *
+     * @param engine the engine that would have answered the query
+     */
+    public void recordRejection(String engine) {
+        engine(engine).rejections.increment();
+    }
+
+    /**
+     * Records the arithmetic of a probabilistic query that was computed rather than found in the cache.
+     *
+     * @param engine          the engine that computed the query
+     * @param multiplications the number of multiplications
+     * @param additions       the number of additions
+     */
+    public void recordOperations(String engine, long multiplications, long additions) {
+        EngineMetrics metrics = engine(engine);
+        metrics.multiplications.increment(multiplications);
+        metrics.additions.increment(additions);
+    }
+
+    /**
+     * Records the largest factor product built by a query.
+     *
+     * @param entries the number of entries of the product
+     */
+    public void recordIntermediateFactorSize(long entries) {
+        peakIntermediateFactorSize.updateMax(entries);
+    }
+
+    /**
+     * Records a probabilistic query answered from the query result cache.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Gets the metrics of an engine.
+     *
+     * @param engine the engine label
+     * @return the metrics of the engine
+     */
+    private EngineMetrics engine(String engine) {
+        EngineMetrics metrics = engines.get(engine);
+        if (metrics == null) {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        return metrics;
+    }
+
+    /**
+     * The metrics of one engine, registered with its engine label.
+     */
+    private static class EngineMetrics {
+        private final Counter queries; // The number of queries answered
+        private final LatencyHistogram latency; // The latency of the queries answered
+        private final Counter failures; // The number of queries that failed with an exception
+        private final Counter rejections; // The number of queries rejected for their predicted cost
+        private final Counter multiplications; // The multiplications performed by the queries
+        private final Counter additions; // The additions performed by the queries
+
+        /**
+         * Constructor for EngineMetrics.
+         *
+         * @param registry the registry to register the metrics in
+         * @param engine   the engine label
+         */
+        EngineMetrics(MetricsRegistry registry, String engine) {
+            this.queries = registry.counter("bayesnet_queries_total", "Queries answered", "engine", engine);
+            this.latency = registry.histogram("bayesnet_query_latency_seconds", "Latency of the queries", "engine", engine);
+            this.failures = registry.counter("bayesnet_query_failures_total", "Queries that failed with an exception", "engine", engine);
+            this.rejections = registry.counter("bayesnet_query_rejections_total", "Queries rejected for their predicted cost", "engine", engine);
+            this.multiplications = registry.counter("bayesnet_multiplications_total", "Multiplications performed by the queries", "engine", engine);
+            this.additions = registry.counter("bayesnet_additions_total", "Additions performed by the queries", "engine", engine);
+        }
+    }
+}
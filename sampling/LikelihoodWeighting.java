@@ -0,0 +1,268 @@
+package sampling;
+
+import inference.QueryResult;
+import inference.VariableEliminationQuery;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class answers probabilistic queries approximately by likelihood weighting.
+ * Every sample draws the query variable and its ancestors in topological order from their CPTs, fixes the evidence
+ * variables to their observed outcomes, and is weighted by the probability of the evidence given its parents.
+ * The estimate is the weight of the samples where the query variable has the queried outcome over the total weight.
+ * The samples are drawn in chunks, each with its own SplittableRandom stream split from the seed in chunk order,
+ * and the chunks run on a fork-join pool. The chunk sums are added in chunk order, so the estimate only depends
+ * on the seed and the settings, not on the number of threads.
+ * A sampler can be shared by threads once it is configured.
+ */
+public class LikelihoodWeighting {
+    public static final int CHUNK_SIZE = 4096; // Number of samples drawn by one task from one random stream
+    public static final int CHUNKS_PER_ROUND = 16; // Number of chunks drawn between two checks of the stopping rule
+
+    private final SamplingModel model; // The compiled network
+    private ForkJoinPool pool; // Pool the chunks run on, or null to run them on the calling thread
+    private long sampleCount = 100_000; // Number of samples, or the most samples with a stopping rule
+    private double targetHalfWidth; // Half-width of the confidence interval that stops the sampling, or 0 to draw every sample
+    private double confidenceLevel = 0.95; // Confidence level of the interval
+    private long seed; // Seed of the random streams
+
+    /**
+     * A fork-join task that draws one chunk of samples and sums their weights.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SamplingModel model; // The compiled network
+        private final int[] order; // The ids of the variables to sample, in topological order
+        private final int[] evidence; // The observed outcome of every variable by id, or -1 for an unobserved variable
+        private final int queryVariableId; // The id of the query variable
+        private final int queryOutcome; // The index of the queried outcome
+        private final int samples; // Number of samples of the chunk
+        private final SplittableRandom random; // The random stream of the chunk
+        private final boolean weightRowSums; // True if a drawn outcome is weighted by the sum of its CPT row
+        private final double[] sums = new double[4]; // Sums of w, w x, w^2 and w^2 x, where x is 1 if the sample matches the query
+
+        /**
+         * Constructor for ChunkTask.
+         *
+         * @param model           the compiled network
+         * @param order           the ids of the variables to sample, in topological order
+         * @param evidence        the observed outcome of every variable by id, or -1
+         * @param queryVariableId the id of the query variable
+         * @param queryOutcome    the index of the queried outcome
+         * @param samples         the number of samples of the chunk
+         * @param random          the random stream of the chunk
+         */
+        ChunkTask(SamplingModel model, int[] order, int[] evidence, int queryVariableId, int queryOutcome, int samples, SplittableRandom random) {
+            this.model = model;
+            this.order = order;
+            this.evidence = evidence;
+            this.queryVariableId = queryVariableId;
+            this.queryOutcome = queryOutcome;
+            this.samples = samples;
+            this.random = random;
+            this.weightRowSums = !model.isNormalized();
+        }
+
+        @Override
+        protected void compute() {
+            int[] states = new int[model.getNumVariables()]; // Reused by every sample of the chunk
+            for (int sample = 0; sample < samples; sample++) {
+                double weight = 1;
+                for (int id : order) {
+                    int rowStart = model.rowStart(id, states);
+                    int observed = evidence[id];
+                    if (observed >= 0) {
+                        states[id] = observed;
+                        weight *= model.probability(id, rowStart, observed);
+                    } else {
+                        states[id] = model.draw(id, rowStart, random.nextDouble());
+                        if (weightRowSums) {
+                            weight *= model.rowSum(id, rowStart);
+                        }
+                    }
+                }
+                double squaredWeight = weight * weight;
+                sums[0] += weight;
+                sums[2] += squaredWeight;
+                if (states[queryVariableId] == queryOutcome) {
+                    sums[1] += weight;
+                    sums[3] += squaredWeight;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for LikelihoodWeighting.
+     *
+     * @param model the compiled network
+     */
+    public LikelihoodWeighting(SamplingModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Sets the fork-join pool the chunks of samples run on.
+     *
+     * @param pool the pool, or null to draw every sample on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of samples drawn for a query, or the most samples drawn when a stopping rule is set.
+     *
+     * @param sampleCount the number of samples
+     */
+    public void setSampleCount(long sampleCount) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("The number of samples must be positive");
+        }
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * Sets the stopping rule: the sampling stops once the confidence interval of the estimate is narrow enough,
+     * checked every CHUNKS_PER_ROUND chunks, or after the set number of samples.
+     *
+     * @param targetHalfWidth the half-width of the confidence interval that stops the sampling, or 0 to draw every sample
+     * @param confidenceLevel the confidence level of the interval, between 0 and 1
+     */
+    public void setStoppingRule(double targetHalfWidth, double confidenceLevel) {
+        if (confidenceLevel <= 0 || confidenceLevel >= 1) {
+            throw new IllegalArgumentException("The confidence level must be between 0 and 1");
+        }
+        this.targetHalfWidth = targetHalfWidth;
+        this.confidenceLevel = confidenceLevel;
+    }
+
+    /**
+     * Sets the seed of the random streams. Every query starts from the seed.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Executes a query. The elimination order of the query is not needed.
+     * The result has the format of variable elimination: the multiplications are the products of the weights
+     * of the samples, and the additions are the sums of the weights.
+     * If every sample has a weight of zero the error is reported and the probability is 0, as variable elimination
+     * outputs it for evidence of probability zero, so the other queries of a batch still run.
+     *
+     * @param query the query to execute
+     * @return the result of the query
+     */
+    public QueryResult executeQuery(VariableEliminationQuery query) {
+        QueryResult queryResult = new QueryResult();
+        try {
+            SamplingEstimate estimate = estimate(query);
+            long samples = estimate.getSampleCount();
+            queryResult.incrementMultiplicationOperations((int) Math.min(Integer.MAX_VALUE, samples * query.getEvidenceIds().length));
+            queryResult.incrementAdditionOperations((int) Math.min(Integer.MAX_VALUE, 2 * samples));
+            queryResult.setProbability(estimate.getProbability());
+        } catch (IllegalStateException e) {
+            System.err.println("Error during likelihood weighting: " + e.getMessage());
+        }
+        return queryResult;
+    }
+
+    /**
+     * Estimates the probability of a query with its confidence interval.
+     *
+     * @param query the query
+     * @return the estimate
+     * @throws IllegalStateException if every sample has a weight of zero, which happens when the evidence is impossible
+     */
+    public SamplingEstimate estimate(VariableEliminationQuery query) {
+        int queryVariableId = query.getQueryVariableId();
+        int[] evidenceIds = query.getEvidenceIds();
+        int[] evidenceOutcomes = query.getEvidenceOutcomeIndexes();
+        int[] evidence = new int[model.getNumVariables()];
+        Arrays.fill(evidence, -1);
+        for (int i = 0; i < evidenceIds.length; i++) {
+            evidence[evidenceIds[i]] = evidenceOutcomes[i];
+        }
+        int[] order = model.getSamplingOrder(queryVariableId, evidenceIds);
+        double z = zScore(confidenceLevel);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        double[] totals = new double[4];
+        long drawn = 0;
+        while (drawn < sampleCount) {
+            int numChunks = (int) Math.min(CHUNKS_PER_ROUND, (sampleCount - drawn + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            ChunkTask[] tasks = new ChunkTask[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                int samples = (int) Math.min(CHUNK_SIZE, sampleCount - drawn);
+                tasks[i] = new ChunkTask(model, order, evidence, queryVariableId, query.getQueryOutcomeIndex(), samples, root.split());
+                drawn += samples;
+            }
+            if (pool == null) {
+                for (ChunkTask task : tasks) {
+                    task.compute();
+                }
+            } else {
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            }
+            for (ChunkTask task : tasks) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += task.sums[i];
+                }
+            }
+            if (targetHalfWidth > 0 && totals[0] > 0 && halfWidth(totals, z) <= targetHalfWidth) {
+                break;
+            }
+        }
+
+        if (totals[0] == 0) {
+            throw new IllegalStateException("Every sample has a weight of zero, the evidence may be impossible");
+        }
+        return new SamplingEstimate(totals[1] / totals[0], halfWidth(totals, z), drawn, totals[0] * totals[0] / totals[2]);
+    }
+
+    /**
+     * Computes the half-width of the confidence interval of the ratio estimate, with the delta method:
+     * the variance is the sum of w^2 (x - p)^2 over the square of the sum of the weights.
+     *
+     * @param totals the sums of w, w x, w^2 and w^2 x
+     * @param z      the standard normal quantile of the confidence level
+     * @return the half-width
+     */
+    private static double halfWidth(double[] totals, double z) {
+        double p = totals[1] / totals[0];
+        double variance = ((1 - 2 * p) * totals[3] + p * p * totals[2]) / (totals[0] * totals[0]);
+        return z * Math.sqrt(Math.max(0, variance));
+    }
+
+    /**
+     * Computes the standard normal quantile of a two-sided confidence level, with Acklam's rational approximation
+     * of the inverse normal distribution, which has a relative error below 1.2e-9.
+     *
+     * @param confidenceLevel the confidence level, between 0 and 1
+     * @return the quantile, about 1.96 for a level of 0.95
+     */
+    static double zScore(double confidenceLevel) {
+        double p = 1 - (1 - confidenceLevel) / 2;
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00};
+        if (p <= 1 - 0.02425) {
+            double q = p - 0.5;
+            double r = q * q;
+            return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                    / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+        }
+        double q = Math.sqrt(-2 * Math.log(1 - p));
+        return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+    }
+}
@@ -0,0 +1,137 @@
+package sampling;
+
+import batch.BatchQueryExecutor;
+import core.BayesianNetwork;
+import core.BayesianNetworkParser;
+import inference.QueryResult;
+import inference.VariableElimination;
+import inference.VariableEliminationQuery;
+import inference.VariableEliminationQueryParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LikelihoodWeightingTest {
+
+    private static final String ALARM_NETWORK = """
+            <NETWORK>
+            <VARIABLE><NAME>B</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>E</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>A</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>J</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <VARIABLE><NAME>M</NAME><OUTCOME>T</OUTCOME><OUTCOME>F</OUTCOME></VARIABLE>
+            <DEFINITION><FOR>B</FOR><TABLE>0.2 0.8</TABLE></DEFINITION>
+            <DEFINITION><FOR>E</FOR><TABLE>0.1 0.9</TABLE></DEFINITION>
+            <DEFINITION><FOR>A</FOR><GIVEN>B</GIVEN><GIVEN>E</GIVEN><TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE></DEFINITION>
+            <DEFINITION><FOR>J</FOR><GIVEN>A</GIVEN><TABLE>0.9 0.1 0.05 0.95</TABLE></DEFINITION>
+            <DEFINITION><FOR>M</FOR><GIVEN>A</GIVEN><TABLE>0.7 0.3 0.01 0.99</TABLE></DEFINITION>
+            </NETWORK>
+            """;
+
+    private Path directory;
+    private BayesianNetwork network;
+
+    @BeforeEach
+    public void parseAlarmNetwork(@TempDir Path directory) throws IOException {
+        this.directory = directory;
+        network = parse(ALARM_NETWORK);
+    }
+
+    private BayesianNetwork parse(String xml) throws IOException {
+        Path networkFile = Files.createTempFile(directory, "network", ".xml");
+        Files.writeString(networkFile, xml);
+        BayesianNetworkParser parser = new BayesianNetworkParser();
+        parser.parseBayesianNetwork(networkFile.toString());
+        return parser.getBayesianNetwork().snapshot();
+    }
+
+    private VariableEliminationQuery query(String line) {
+        return new VariableEliminationQueryParser(network).parseQuery(line);
+    }
+
+    @Test
+    public void testEstimateIsWithinItsConfidenceInterval() {
+        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+        sampler.setSampleCount(200_000);
+        for (String line : new String[]{"P(B=T|J=T,M=T) A-E", "P(J=T|B=F) A-E-M", "P(E=T|A=T) B-J-M"}) {
+            VariableElimination ve = new VariableElimination(network, query(line));
+            ve.executeQuery();
+            SamplingEstimate estimate = sampler.estimate(query(line));
+            assertEquals(ve.getQueryResult().getProbability(), estimate.getProbability(), 2 * estimate.getHalfWidth() + 1e-5, line);
+        }
+    }
+
+    @Test
+    public void testEstimateDoesNotDependOnTheNumberOfThreads() {
+        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+        sampler.setSampleCount(50_000);
+        sampler.setSeed(11);
+        QueryResult serial = sampler.executeQuery(query("P(B=T|J=T,M=T) A-E"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            sampler.setPool(pool);
+            assertEquals(serial.toString(), sampler.executeQuery(query("P(B=T|J=T,M=T) A-E")).toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStoppingRuleStopsEarly() {
+        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+        sampler.setSampleCount(10_000_000);
+        sampler.setStoppingRule(0.01, 0.95);
+        SamplingEstimate estimate = sampler.estimate(query("P(J=T|B=F) A-E-M"));
+
+        assertTrue(estimate.getHalfWidth() <= 0.01);
+        assertTrue(estimate.getSampleCount() < 10_000_000);
+        assertEquals(1.959964, LikelihoodWeighting.zScore(0.95), 1e-6);
+    }
+
+    @Test
+    public void testImpossibleEvidenceFailsOnlyItsQuery() throws IOException {
+        // J is never true
+        network = parse(ALARM_NETWORK.replace("<TABLE>0.9 0.1 0.05 0.95</TABLE>", "<TABLE>0 1 0 1</TABLE>"));
+        LikelihoodWeighting sampler = new LikelihoodWeighting(new SamplingModel(network));
+        sampler.setSampleCount(10_000);
+
+        assertThrows(IllegalStateException.class, () -> sampler.estimate(query("P(B=T|J=T) A-E")));
+        assertEquals("0.00000,0,0", sampler.executeQuery(query("P(B=T|J=T) A-E")).toString());
+
+        BatchQueryExecutor executor = new BatchQueryExecutor(network, null, null);
+        executor.setSampler(sampler);
+        List<String> outputs = executor.executeAll(List.of("P(B=T|J=T) A-E", "P(B=T|M=T) A-E-J"), 2);
+        assertTrue(outputs.get(0).startsWith("0.00000,"));
+        assertFalse(outputs.get(1).startsWith("0.00000,"));
+    }
+
+    @Test
+    public void testRowsThatDoNotSumToOneAreReadLikeVariableEliminationReadsThem() throws IOException {
+        network = parse(ALARM_NETWORK.replace("<TABLE>0.95 0.05 0.94 0.06 0.29 0.71 0.01 0.99</TABLE>",
+                                              "<TABLE>1.9 0.1 0.47 0.03 0.29 0.71 0.02 1.98</TABLE>")
+                                     .replace("<TABLE>0.7 0.3 0.01 0.99</TABLE>", "<TABLE>0.35 0.15 0.01 0.99</TABLE>"));
+        SamplingModel model = new SamplingModel(network);
+        LikelihoodWeighting sampler = new LikelihoodWeighting(model);
+        sampler.setSampleCount(400_000);
+
+        assertFalse(model.isNormalized());
+        for (String line : new String[]{"P(B=T|J=T,M=T) A-E", "P(J=T|B=F) A-E-M", "P(E=T|A=T) B-J-M"}) {
+            VariableElimination ve = new VariableElimination(network, query(line));
+            ve.executeQuery();
+            SamplingEstimate estimate = sampler.estimate(query(line));
+            assertEquals(ve.getQueryResult().getProbability(), estimate.getProbability(), 2 * estimate.getHalfWidth() + 1e-5, line);
+        }
+    }
+}
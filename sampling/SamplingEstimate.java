@@ -0,0 +1,73 @@
+package sampling;
+
+/**
+ * This class holds the estimate of a probability by likelihood weighting, with its precision.
+ */
+public class SamplingEstimate {
+    private final double probability; // The estimated probability
+    private final double halfWidth; // Half the width of the confidence interval around the probability
+    private final long sampleCount; // Number of samples drawn
+    private final double effectiveSampleSize; // Number of unweighted samples with the same variance
+
+    /**
+     * Constructor for SamplingEstimate.
+     *
+     * @param probability         the estimated probability
+     * @param halfWidth           half the width of the confidence interval
+     * @param sampleCount         the number of samples drawn
+     * @param effectiveSampleSize the effective sample size of the weighted samples
+     */
+    public SamplingEstimate(double probability, double halfWidth, long sampleCount, double effectiveSampleSize) {
+        this.probability = probability;
+        this.halfWidth = halfWidth;
+        this.sampleCount = sampleCount;
+        this.effectiveSampleSize = effectiveSampleSize;
+    }
+
+    /**
+     * Gets the estimated probability.
+     *
+     * @return the probability
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * Gets half the width of the confidence interval around the probability, at the confidence level of the sampler.
+     *
+     * @return the half-width
+     */
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    /**
+     * Gets the number of samples drawn.
+     *
+     * @return the number of samples
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Gets the effective sample size, the square of the sum of the weights over the sum of their squares.
+     * It is much lower than the number of samples when the evidence is unlikely.
+     *
+     * @return the effective sample size
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    @Override
+    public String toString() {
+        return "SamplingEstimate{" +
+                "probability=" + probability +
+                ", halfWidth=" + halfWidth +
+                ", sampleCount=" + sampleCount +
+                ", effectiveSampleSize=" + effectiveSampleSize +
+                '}';
+    }
+}
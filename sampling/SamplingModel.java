@@ -0,0 +1,217 @@
+package sampling;
+
+import core.BayesianNetwork;
+import core.NetworkGraph;
+import inference.DenseFactor;
+import inference.Factor;
+import inference.Variable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class is the form of a Bayesian Network that forward sampling reads: the variables in topological order,
+ * and the CPT of every variable flattened to one row per assignment of its parents.
+ * Each row is kept twice, as conditional probabilities to weight evidence and as a cumulative distribution to draw
+ * an outcome, so drawing a sample only reads arrays and never allocates.
+ * The CPTs are read as they are, like the exact engines read them: a row that does not sum to 1 is drawn from in
+ * its normalized form, and the sample is weighted by the sum of the row, so the estimate converges to the answer
+ * of variable elimination on the same network.
+ * The model is built once for a network snapshot and is read by any number of threads.
+ */
+public class SamplingModel {
+    private static final double NORMALIZATION_TOLERANCE = 1e-9; // Largest distance from 1 of the sum of a row that counts as normalized
+    private final NetworkGraph graph; // The graph of the network, indexed by variable id
+    private final int[] cardinalities; // Number of outcomes of each variable
+    private final int[][] parents; // The ids of the parents of each variable, in the order of its row index
+    private final int[][] parentStrides; // Distance between the rows of consecutive outcomes of each parent
+    private final double[][] conditionals; // P(variable | parents) of each variable, row after row
+    private final double[][] cumulatives; // The cumulative distribution of each row of each variable
+    private final double[][] rowSums; // The sum of each row of each variable, or null for a variable whose rows all sum to 1
+    private boolean normalized = true; // True if every row of every CPT sums to 1
+
+    /**
+     * Constructor for SamplingModel.
+     *
+     * @param network the Bayesian Network, every variable of which must have a CPT
+     */
+    public SamplingModel(BayesianNetwork network) {
+        this.graph = network.getGraph();
+        int numVariables = network.getRegistry().size();
+        this.cardinalities = new int[numVariables];
+        this.parents = new int[numVariables][];
+        this.parentStrides = new int[numVariables][];
+        this.conditionals = new double[numVariables][];
+        this.cumulatives = new double[numVariables][];
+        this.rowSums = new double[numVariables][];
+
+        for (Factor factor : network.getFactorList()) {
+            compileCpt(factor.getParentVariable(), factor.getTable());
+        }
+        for (int id = 0; id < numVariables; id++) {
+            if (conditionals[id] == null) {
+                throw new IllegalArgumentException("Variable " + network.getRegistry().getVariable(id).getName() + " has no CPT");
+            }
+        }
+    }
+
+    /**
+     * Flattens the CPT of a variable into rows of conditional and cumulative probabilities.
+     * The conditional probabilities are the values of the CPT, and the cumulative distribution is normalized by the
+     * sum of the row, which is kept for the rows that do not sum to 1.
+     *
+     * @param variable the variable of the CPT
+     * @param table    the CPT, over the variable and its parents in any order
+     */
+    private void compileCpt(Variable variable, DenseFactor table) {
+        int id = variable.getId();
+        int cardinality = variable.getCardinality();
+        int childPosition = table.indexOfVariable(id);
+        int[] cptParents = new int[table.getNumVariables() - 1];
+        int[] tableStrides = new int[cptParents.length];
+        int[] rowStrides = new int[cptParents.length];
+        int[] parentCardinalities = new int[cptParents.length];
+        int numRows = 1;
+        for (int position = table.getNumVariables() - 1, parent = cptParents.length - 1; position >= 0; position--) {
+            if (position != childPosition) {
+                cptParents[parent] = table.getScope()[position];
+                tableStrides[parent] = table.getStride(position);
+                rowStrides[parent] = numRows;
+                parentCardinalities[parent] = table.getCardinality(position);
+                numRows *= parentCardinalities[parent];
+                parent--;
+            }
+        }
+
+        double[] conditional = new double[numRows * cardinality];
+        double[] cumulative = new double[numRows * cardinality];
+        double[] sums = new double[numRows];
+        boolean variableNormalized = true;
+        for (int row = 0; row < numRows; row++) {
+            // Decode the row into the outcome of each parent to find it in the table
+            int tableIndex = 0;
+            for (int parent = 0; parent < cptParents.length; parent++) {
+                tableIndex += row / rowStrides[parent] % parentCardinalities[parent] * tableStrides[parent];
+            }
+            double rowSum = 0;
+            for (int outcome = 0; outcome < cardinality; outcome++) {
+                double value = table.getValue(tableIndex + outcome * table.getStride(childPosition));
+                conditional[row * cardinality + outcome] = value;
+                rowSum += value;
+            }
+            sums[row] = rowSum;
+            variableNormalized &= Math.abs(rowSum - 1) <= NORMALIZATION_TOLERANCE;
+            double accumulated = 0;
+            for (int outcome = 0; outcome < cardinality; outcome++) {
+                int index = row * cardinality + outcome;
+                // A row with no probability is drawn from uniformly, and its weight of zero discards the sample
+                accumulated += rowSum == 0 ? 1.0 / cardinality : conditional[index] / rowSum;
+                cumulative[index] = accumulated;
+            }
+            cumulative[row * cardinality + cardinality - 1] = 1; // Rounding must not leave a draw without an outcome
+        }
+
+        cardinalities[id] = cardinality;
+        parents[id] = cptParents;
+        parentStrides[id] = rowStrides;
+        conditionals[id] = conditional;
+        cumulatives[id] = cumulative;
+        if (!variableNormalized) {
+            rowSums[id] = sums;
+            normalized = false;
+        }
+    }
+
+    /**
+     * Orders the variables a query has to sample: the query variable, the evidence and their ancestors,
+     * parents before children. The other variables are barren and do not change the weights of the samples.
+     *
+     * @param queryVariableId the id of the query variable
+     * @param evidenceIds     the ids of the evidence variables
+     * @return the ids of the variables to sample, in topological order
+     */
+    public int[] getSamplingOrder(int queryVariableId, int[] evidenceIds) {
+        int[] relevant = new int[evidenceIds.length + 1];
+        relevant[0] = queryVariableId;
+        System.arraycopy(evidenceIds, 0, relevant, 1, evidenceIds.length);
+        BitSet ancestralSet = graph.getAncestralSet(relevant);
+        return Arrays.stream(graph.getTopologicalOrder()).filter(ancestralSet::get).toArray();
+    }
+
+    /**
+     * Checks if every row of every CPT sums to 1, within rounding. Otherwise the samples are also weighted by the
+     * sums of the rows they draw from, see {@link #rowSum(int, int)}.
+     *
+     * @return true if every CPT is normalized
+     */
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    /**
+     * Gets the number of variables of the network.
+     *
+     * @return the number of variables
+     */
+    public int getNumVariables() {
+        return cardinalities.length;
+    }
+
+    /**
+     * Finds the CPT row of a variable for the current outcomes of its parents.
+     *
+     * @param id     the id of the variable
+     * @param states the current outcome of every variable, by id
+     * @return the index of the first entry of the row in the conditional and cumulative tables
+     */
+    int rowStart(int id, int[] states) {
+        int[] variableParents = parents[id];
+        int[] strides = parentStrides[id];
+        int row = 0;
+        for (int parent = 0; parent < variableParents.length; parent++) {
+            row += states[variableParents[parent]] * strides[parent];
+        }
+        return row * cardinalities[id];
+    }
+
+    /**
+     * Draws an outcome of a variable from a row of its CPT.
+     *
+     * @param id       the id of the variable
+     * @param rowStart the index of the first entry of the row
+     * @param uniform  a uniform draw in [0, 1)
+     * @return the index of the drawn outcome
+     */
+    int draw(int id, int rowStart, double uniform) {
+        double[] cumulative = cumulatives[id];
+        int outcome = 0;
+        while (uniform >= cumulative[rowStart + outcome]) {
+            outcome++;
+        }
+        return outcome;
+    }
+
+    /**
+     * Gets the sum of a row of the CPT of a variable, which weights an outcome drawn from it.
+     *
+     * @param id       the id of the variable
+     * @param rowStart the index of the first entry of the row
+     * @return the sum of the row, 1 if every row of the variable sums to 1
+     */
+    double rowSum(int id, int rowStart) {
+        double[] sums = rowSums[id];
+        return sums == null ? 1 : sums[rowStart / cardinalities[id]];
+    }
+
+    /**
+     * Gets the probability of an outcome of a variable in a row of its CPT.
+     *
+     * @param id       the id of the variable
+     * @param rowStart the index of the first entry of the row
+     * @param outcome  the index of the outcome
+     * @return the conditional probability
+     */
+    double probability(int id, int rowStart, int outcome) {
+        return conditionals[id][rowStart + outcome];
+    }
+}